@@ -1,11 +1,13 @@
 package client;
 
-import java.util.ArrayList;
-import java.util.List;
 import com.nedap.go.gui.GoGUIIntegrator;
 
+import protocol.BoardDelta;
+import protocol.Message;
 import protocol.MessageGenerator;
 import protocol.ProtocolMessages;
+import protocol.RunLength;
+import ruleimplementations.PositionHistory;
 
 /**
  * This class contains all methods that are shared among the different players.
@@ -26,15 +28,29 @@ public abstract class AbstractClient implements Client {
 	private String version;
 	public static final double KOMI = 0.5;
 	
-	// The board and all previous boards, represented as strings. 
-	private List<String> prevBoards;
+	// All previous boards, shared with the player to check the superko rule. 
+	private PositionHistory prevBoards;
 	
 	// Variables to keep track of game states.
 	private boolean gameEnded;
 	private boolean doublePass;
 	private boolean misunderstood;
+	private boolean playAgain;
+	
+	// Without a GUI and questions, for games against a server in the same JVM.
+	private boolean headless;
+	private int gamesToPlay;
 	
 	private String prevServerMessage;
+	
+	// The last message that was read into fields, when prevServerMessage is null.
+	private Message prevMessage = new Message();
+	
+	// The board that is currently shown in the GUI, null if the GUI shows an empty board.
+	private String shownBoard;
+	
+	// The board of the last message of the server, to which the changes in the next are applied.
+	private char[] lastBoard = new char[0];
 
 	/**
 	 * Constructor.
@@ -48,15 +64,40 @@ public abstract class AbstractClient implements Client {
 	/**
 	 * Start method.
 	 * 
+	 * Plays games until the player does not want to play another game.
+	 */
+	public void start() {
+		do {
+			playGame();
+		} while (playAgain);
+	}
+	
+	/**
+	 * Play games over a connection that needs no user input, such as a LocalServerHandler to a
+	 * server in the same JVM, without a GUI or questions to the user. Returns when the games 
+	 * are played, or when the server ended the connection.
+	 * 
+	 * @param connection, the handler of the connection to the server
+	 * @param numberOfGames, the number of games to play, at least 1
+	 */
+	public void playLocally(ServerHandler connection, int numberOfGames) {
+		serverHandler = connection;
+		headless = true;
+		gamesToPlay = numberOfGames;
+		start();
+	}
+	
+	/**
 	 * Creates a connection with a server and sends a handshake. Then keeps waiting for 
 	 * and handling server input until the game ends.
 	 */
-	public void start() {
+	private void playGame() {
 		
+		playAgain = false;
 		gameEnded = false;
 		doublePass = false;
 		misunderstood = false;
-		prevBoards = new ArrayList<String>();
+		prevBoards = new PositionHistory();
 		
 		serverHandler.createConnectionWithUserInput();
 		if (!serverHandler.getSuccessfulConnection()) {
@@ -76,7 +117,7 @@ public abstract class AbstractClient implements Client {
 		
 		/** Play the game. */
 		while (!gameEnded) {
-			String message = serverHandler.readLineFromServer();
+			Message message = serverHandler.readMessageFromServer();
 			if (message == null) {
 				return; //server has disconnected
 			}
@@ -117,7 +158,12 @@ public abstract class AbstractClient implements Client {
 					misunderstood = true;
 				}
 				clientTUI.showMessage("Server did not understand the message. Let's try again.");
-				handleServerMessage(prevServerMessage); //whether this works depends on server
+				//whether this works depends on server
+				if (prevServerMessage != null) {
+					handleServerMessage(prevServerMessage);
+				} else {
+					handleServerMessage(prevMessage);
+				}
 						//will only appear when a mismatch in communication, only for debugging
 				break;
 				
@@ -129,7 +175,7 @@ public abstract class AbstractClient implements Client {
 						"not comply with the protocol in the start game message. It did not " +
 						"contain the board and your color.", version));
 				} 
-				String board = components[1];
+				String board = readBoard(components[1]);
 				String assignedColor = components[2];
 				
 				startGame(board, assignedColor);
@@ -143,7 +189,7 @@ public abstract class AbstractClient implements Client {
 						"not comply with the protocol in the turn message. It did not contain " +
 						"the board and the opponent's move.", version));
 				}
-				board = components[1];
+				board = readBoard(components[1]);
 				String opponentsMove = components[2];
 				
 				doMove(board, opponentsMove);
@@ -159,6 +205,9 @@ public abstract class AbstractClient implements Client {
 				}
 				String validity = components[1];
 				String boardOrMessage = (components.length > 1) ? components[2] : null;
+				if (Character.toString(ProtocolMessages.VALID).equals(validity)) {
+					boardOrMessage = readBoard(boardOrMessage);
+				}
 				
 				getResult(validity, boardOrMessage, doublePass);
 				break;
@@ -189,6 +238,99 @@ public abstract class AbstractClient implements Client {
 		prevServerMessage = message;
 	}
 	
+	/**
+	 * Handles a message received from the server that was read into fields (see Message): the
+	 * board is copied or its changes are applied to the last board without parsing text. Other
+	 * messages are handled as text, see handleServerMessage(String).
+	 * 
+	 * @param message, a message received from the server, which is reused after the call
+	 */
+	public void handleServerMessage(Message message) {
+		if (!message.hasBoard()) {
+			handleServerMessage(message.toString());
+			return;
+		}
+		misunderstood = false;
+		String board = readBoard(message);
+		switch (message.getCommand()) {
+			case ProtocolMessages.GAME:
+				startGame(board, Character.toString(message.getColor()));
+				break;
+			case ProtocolMessages.TURN:
+				doMove(board, message.appendMoveTo(new StringBuilder(4)).toString());
+				break;
+			default:
+				getResult(Character.toString(ProtocolMessages.VALID), board, doublePass);
+				break;
+		}
+		prevMessage.copyFrom(message);
+		prevServerMessage = null;
+	}
+	
+	/**
+	 * Read the board of a message, see readBoard(String).
+	 * 
+	 * @param message, a message with a board
+	 * @return the whole board
+	 */
+	private String readBoard(Message message) {
+		if (!message.isBoardDelta()) {
+			if (lastBoard.length != message.getBoardLength()) {
+				lastBoard = new char[message.getBoardLength()];
+			}
+			message.copyBoardTo(lastBoard);
+			return new String(lastBoard);
+		}
+		// Like BoardDelta.apply, changes that do not fit on the board change nothing
+		boolean fits = true;
+		for (int change = 0; change < message.getNumberOfChanges(); change++) {
+			fits &= message.getChangedLocation(change) < lastBoard.length;
+		}
+		if (fits) {
+			for (int change = 0; change < message.getNumberOfChanges(); change++) {
+				lastBoard[message.getChangedLocation(change)] = message.getChangedStatus(change);
+			}
+		} else {
+			serverHandler.sendToGame(messageGenerator.errorMessage("Server response does not " 
+					+ "comply with the protocol: the changes " 
+					+ message.appendBoardTo(new StringBuilder()) + " do not fit on the board.", 
+					version));
+		}
+		return new String(lastBoard);
+	}
+	
+	/**
+	 * Read the board of a message, which is the whole board, its runs for a large board if the
+	 * handshake asked for them (see RunLength) or, in the version that allows it, the changes 
+	 * since the board of the previous message (see BoardDelta).
+	 * 
+	 * @param boardOrChanges, the board component of the message
+	 * @return the whole board
+	 */
+	private String readBoard(String boardOrChanges) {
+		if (RunLength.isRunLength(boardOrChanges)) {
+			char[] board = RunLength.read(boardOrChanges);
+			if (board != null) {
+				lastBoard = board;
+			} else {
+				serverHandler.sendToGame(messageGenerator.errorMessage("Server response does " 
+						+ "not comply with the protocol: the runs " + boardOrChanges + " are not "
+						+ "a board.", version));
+			}
+			return new String(lastBoard);
+		}
+		if (!BoardDelta.isDelta(boardOrChanges)) {
+			lastBoard = boardOrChanges.toCharArray();
+			return boardOrChanges;
+		}
+		if (!BoardDelta.apply(boardOrChanges, lastBoard)) {
+			serverHandler.sendToGame(messageGenerator.errorMessage("Server response does not " 
+					+ "comply with the protocol: the changes " + boardOrChanges + " do not fit " 
+					+ "on the board.", version));
+		}
+		return new String(lastBoard);
+	}
+	
 	/**
 	 * Start the game: let client know the board size and color and start the GUI.
 	 */
@@ -217,6 +359,7 @@ public abstract class AbstractClient implements Client {
 			serverHandler.sendToGame(errorMessage);
 		}
 		color = assignedColor.charAt(0);
+		lastBoard = board.toCharArray();
 		if (!(color == 'W' || color == 'B')) {
 			String errorMessage = messageGenerator.errorMessage("ProtocolException in start game "
 				+ "message: 'B' or 'W' expected as third command, but " + assignedColor 
@@ -239,11 +382,15 @@ public abstract class AbstractClient implements Client {
 				+ "Your color is " + clientsColor + ". Good luck!");
 		
 		// Start the GUI.
+		if (headless) {
+			return;
+		}
 		if (gogui == null) {
 			gogui = new GoGUIIntegrator(true, true, boardDimension);
 		}
 		gogui.startGUI();
 		gogui.setBoardSize(boardDimension);
+		shownBoard = null;
 	}
 	
 	// Ask the client for a move and send an appropriate message with the move to the server.
@@ -272,7 +419,7 @@ public abstract class AbstractClient implements Client {
 	 * @return
 	 */
 	public abstract String getMove(String theOpponentsMove, int theBoardDimension, 
-										String theBoard, char theColor, List<String> thePrevBoards);
+										String theBoard, char theColor, PositionHistory thePrevBoards);
 	
 	/**
 	 * Show the result, as received from the server, of the previous own move. 
@@ -338,28 +485,50 @@ public abstract class AbstractClient implements Client {
 				}
 				break;
 		}
-		boolean reply = clientTUI.getBoolean("Do you want to play another game?");
-		if (reply) {
-			start();
+		if (headless) {
+			gamesToPlay--;
+			playAgain = gamesToPlay > 0;
 		} else {
+			playAgain = clientTUI.getBoolean("Do you want to play another game?");
+		}
+		if (!playAgain) {
 			serverHandler.closeConnection();
 		}
 	}
 	
 	/**
 	 * Shows the current board state in the client's GUI.
+	 * 
+	 * Only the intersections that changed since the previously shown board are updated 
+	 * (the placed stone and the captured stones), instead of redrawing the whole board.
 	 */
 	public void showCurrentBoardState(String theBoard) {
-		gogui.clearBoard();
+		if (headless) {
+			return;
+		}
+		if (shownBoard == null || shownBoard.length() != theBoard.length()) {
+			gogui.clearBoard();
+			shownBoard = null;
+		}
 		
 		for (int c = 0; c < boardDimension * boardDimension; c++) {
 			char thisLocation = theBoard.charAt(c);
+			char shownLocation = (shownBoard == null) ? ProtocolMessages.UNOCCUPIED 
+															: shownBoard.charAt(c);
+			if (thisLocation == shownLocation) {
+				continue;
+			}
+			
+			//location = x + y * boardDimension
+			if (shownLocation != ProtocolMessages.UNOCCUPIED) {
+				gogui.removeStone(c % boardDimension, c / boardDimension);
+			}
 			if (thisLocation == ProtocolMessages.WHITE) {
-				//location = x + y * boardDimension
 				gogui.addStone(c % boardDimension, c / boardDimension, true);
 			} else if (thisLocation == ProtocolMessages.BLACK) {
 				gogui.addStone(c % boardDimension, c / boardDimension, false);
 			}
 		}
+		shownBoard = theBoard;
 	}
 }
@@ -1,6 +1,6 @@
 package client;
 
-import java.util.List;
+import ruleimplementations.PositionHistory;
 
 public interface Client {
 	
@@ -39,7 +39,7 @@ public interface Client {
 	 * @return a String, representing a move
 	 */
 	public abstract String getMove(String theOpponentsMove, int theBoardDimension, 
-										String theBoard, char theColor, List<String> thePrevBoards);
+										String theBoard, char theColor, PositionHistory thePrevBoards);
 	
 	/**
 	 * Shows the result of the player's last move.
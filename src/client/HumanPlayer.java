@@ -1,9 +1,8 @@
 package client;
 
-import java.util.List;
-
 import protocol.*;
 import ruleimplementations.MoveValidator;
+import ruleimplementations.PositionHistory;
 
 /**
  * A class representing a player that makes moves based on user input.
@@ -45,7 +44,7 @@ public class HumanPlayer extends AbstractClient {
 	
 	@Override
 	public String getMove(String opponentsMove, int boardDimension, 
-						String board, char color, List<String> prevBoards) {
+						String board, char color, PositionHistory prevBoards) {
 		
 		String move = "";
 		boolean validInput = false;
@@ -96,24 +95,10 @@ public class HumanPlayer extends AbstractClient {
 	/**
 	 * Shows an option for a valid move or tells the user it can only pass.
 	 */
-	public void showHint(String board, int boardDimension, char color, List<String> prevBoards) {
+	public void showHint(String board, int boardDimension, char color, PositionHistory prevBoards) {
 			
-		String move = "";
-		int location = 0;
-		boolean valid = false;
-		
-		for (int c = 0; c < board.length(); c++) {
-			if (board.charAt(c) == ProtocolMessages.UNOCCUPIED) {
-				location = c;
-				move = Integer.toString(c);
-			}
-			
-			valid = moveValidator.processMove(move, boardDimension, board, color, prevBoards);
-			if (valid) {
-				break;
-			} 
-		}
-		if (!valid) {
+		int location = moveValidator.legalMoves(board, color, prevBoards).nextSetBit(0);
+		if (location == -1) {
 			clientTUI.showMessage("No valid moves are left, you can only pass.");
 		} else {
 			clientTUI.showMessage("Check the board for a possible valid move "
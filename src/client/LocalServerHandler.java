@@ -0,0 +1,109 @@
+package client;
+
+import protocol.Message;
+import protocol.MessageDecoder;
+import server.LocalClientHandler;
+import server.Server;
+
+/**
+ * Handles the communication between a player and a server in the same JVM, without a socket:
+ * the lines of the player are handed to a LocalClientHandler of the server, and the messages of
+ * the server are taken from its queue. The messages are the same as over a socket.
+ */
+
+public class LocalServerHandler extends ServerHandler {
+
+	private Server server;
+	private LocalClientHandler handler;
+	private Message message = new Message();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param givenClientTUI, the TUI of the player
+	 * @param givenServer, the server in this JVM to connect to
+	 */
+	public LocalServerHandler(ClientTUI givenClientTUI, Server givenServer) {
+		super(givenClientTUI);
+		server = givenServer;
+	}
+
+	/**
+	 * Constructor for a player that is not asked anything, see AbstractClient.playLocally.
+	 *
+	 * @param givenServer, the server in this JVM to connect to
+	 */
+	public LocalServerHandler(Server givenServer) {
+		this(new ClientTUI(), givenServer);
+	}
+
+	/**
+	 * Connect to the server. A previous connection, of a game that has ended, is closed first.
+	 */
+	@Override
+	public void createConnectionWithUserInput() {
+		if (handler != null) {
+			handler.disconnect();
+		}
+		handler = server.connectLocally();
+	}
+
+	@Override
+	public boolean getSuccessfulConnection() {
+		return handler != null;
+	}
+
+	/**
+	 * Takes one message of the server, waiting for it if there is none yet.
+	 *
+	 * @return the message, or null if the connection ended
+	 */
+	@Override
+	public String readLineFromServer() {
+		String answer = null;
+		try {
+			answer = handler.takeMessage();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (answer == null) {
+			clientTUI.showMessage("\nServer disconnected. The connection will be closed.");
+			closeConnection();
+		}
+		return answer;
+	}
+
+	/**
+	 * Takes one message of the server and reads it into a Message that is reused by the next
+	 * call, see readLineFromServer.
+	 *
+	 * @return the message, or null if the connection ended
+	 */
+	@Override
+	public Message readMessageFromServer() {
+		String answer = readLineFromServer();
+		if (answer == null) {
+			return null;
+		}
+		MessageDecoder.decodeText(answer, message);
+		return message;
+	}
+
+	/**
+	 * Hands one line to the server, which handles it on the thread of this player.
+	 */
+	@Override
+	public void sendToGame(String message) {
+		handler.receive(message);
+	}
+
+	/**
+	 * Ends the connection to the server.
+	 */
+	@Override
+	public void closeConnection() {
+		if (handler != null) {
+			handler.disconnect();
+		}
+	}
+}
@@ -1,36 +1,57 @@
 package client;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import exceptions.ExitProgram;
 import exceptions.ProtocolException;
 import exceptions.ServerUnavailableException;
+import protocol.FrameCodec;
+import protocol.Message;
+import protocol.MessageReader;
 import protocol.MessageGenerator;
 import protocol.ProtocolMessages;
 
 /**
  * Handles the communication between a given player and the server it connected to.
+ * 
+ * If the server pings, a thread of this handler reads the messages of the server and answers
+ * the pings right away, also while the player thinks about a move. The other messages are kept
+ * until the player reads them.
+ * 
+ * The handler asks for binary frames in the handshake (see FrameCodec). If the server agrees,
+ * every message after the handshake reply is a frame, otherwise a line. The messages are read
+ * into a reusable Message (see MessageReader), so that a client can use their fields without
+ * parsing strings. It also asks for the boards of large games as runs (see RunLength), which
+ * are read into whole boards.
  */
 
 public class ServerHandler {
 	
-	// The socket and In- and OutputStreams.
-	private BufferedReader in;
-	private BufferedWriter out;
+	// The socket, the reader of the InputStream and the OutputStream.
+	private MessageReader in;
+	private OutputStream out;
 	private Socket sock;
 	
+	// Whether binary frames are asked for, and whether the server agreed.
+	private boolean askForFrames = true;
+	private volatile boolean frames;
+	
+	// Whether large boards are asked for as runs, and whether the server agreed.
+	private boolean askForRunLength = true;
+	private boolean runLength;
+	
 	// Version information
 	private String wantedVersion;
 	private String usedVersion;
 	
 	// The TUI of the connected client.
-	private ClientTUI clientTUI;
+	protected ClientTUI clientTUI;
 	
 	//The message generator
 	private MessageGenerator messageGenerator;
@@ -39,12 +60,22 @@ public class ServerHandler {
 	private boolean successfulConnection;
 	private boolean successfulHandshake;
 	
+	// The message that is read when the server does not ping.
+	private Message message = new Message();
+	
+	// The messages of the server read by the thread that answers pings, null without pings.
+	private BlockingQueue<Message> incoming;
+	
+	// Put in the incoming queue when the connection ended, compared by identity.
+	private static final Message DISCONNECTED = new Message();
+	private static final Message UNREACHABLE = new Message();
+	
 	/**
 	 * Constructor.
 	 */
 	public ServerHandler(ClientTUI givenClientTUI) {
 		clientTUI = givenClientTUI;
-		wantedVersion = "1.0";
+		wantedVersion = ProtocolMessages.DELTA_VERSION; //boards as changes, if the server can
 		messageGenerator = new MessageGenerator();
 	}
 	
@@ -60,6 +91,29 @@ public class ServerHandler {
 		return successfulHandshake;
 	}
 	
+	/**
+	 * Choose whether the next handshake asks for binary frames, which it does by default.
+	 */
+	public void setAskForFrames(boolean askForFrames) {
+		this.askForFrames = askForFrames;
+	}
+	
+	public boolean getFrames() {
+		return frames;
+	}
+	
+	/**
+	 * Choose whether the next handshake asks for large boards as runs (see RunLength), which 
+	 * it does by default. The boards are read the same either way.
+	 */
+	public void setAskForRunLength(boolean askForRunLength) {
+		this.askForRunLength = askForRunLength;
+	}
+	
+	public boolean getRunLength() {
+		return runLength;
+	}
+	
 	/**
 	 * Creates a connection to a server with the user-defined IP and port number. 
 	 * 
@@ -115,10 +169,9 @@ public class ServerHandler {
 		clientTUI.showMessage("Attempting to connect to " + addr + ":" 
 			+ port + "...");
 		sock = new Socket(addr, port); //this is the socket to the server
-		in = new BufferedReader(new InputStreamReader(
-				sock.getInputStream())); //data from the server to this socket
-		out = new BufferedWriter(new OutputStreamWriter(
-				sock.getOutputStream())); 
+		sock.setTcpNoDelay(true); //a move is one small message, which should not wait
+		in = new MessageReader(sock.getInputStream()); //data from the server to this socket
+		out = new BufferedOutputStream(sock.getOutputStream()); 
 		clientTUI.showMessage("You made a succesful connection!");
 		successfulConnection = true;
 	}
@@ -165,13 +218,18 @@ public class ServerHandler {
 	 * After sending, wait for response, which should be formatted as follows:
 	 * PROTOCOL.handshake + PROTOCOL.delimiter + finalVersion (string) 
 	 * optionally these at the end: PROTOCOL.delimiter + message (string)
+	 * and PROTOCOL.delimiter + PROTOCOL.ping, if the server will ping this client
 	 * 
 	 * @throws ProtocolException 
 	 */
 	
 	public void doHandshake(String nameClient, char wantedColor) {
 		
-		sendToGame(messageGenerator.clientHandshakeMessage(wantedVersion, nameClient, wantedColor));
+		incoming = null;
+		frames = false;
+		runLength = false;
+		sendToGame(messageGenerator.clientHandshakeMessage(wantedVersion, nameClient, wantedColor,
+				true, askForFrames, askForRunLength));
 		
 		String line = "";
 		line = readLineFromServer();
@@ -195,22 +253,90 @@ public class ServerHandler {
 					"according to version " + usedVersion + ".\n");
 		}
 		successfulHandshake = true;
+		
+		// The server confirms pings, frames and runs at the end of its reply
+		boolean pings = false;
+		for (int index = 3; index < serverResponse.length; index++) {
+			if (serverResponse[index].equals(Character.toString(ProtocolMessages.PING))) {
+				pings = true;
+			} else if (serverResponse[index].equals(Character.toString(ProtocolMessages.FRAMES))) {
+				frames = askForFrames;
+			} else if (serverResponse[index].equals(
+					Character.toString(ProtocolMessages.RUN_LENGTH))) {
+				runLength = askForRunLength;
+			}
+		}
+		if (pings) {
+			incoming = new LinkedBlockingQueue<Message>();
+			Thread reader = new Thread(this::readLinesAndAnswerPings, "server reader");
+			reader.setDaemon(true);
+			reader.start();
+		}
+	}
+	
+	/**
+	 * Read the messages of the server until the connection ends, answer the pings and keep
+	 * a copy of the other messages for readMessageFromServer.
+	 */
+	private void readLinesAndAnswerPings() {
+		BlockingQueue<Message> messages = incoming;
+		MessageReader reader = in;
+		Message received = new Message();
+		try {
+			while (reader.read(received, frames)) {
+				if (!received.isRaw() && received.getCommand() == ProtocolMessages.PING) {
+					sendToGame(messageGenerator.pongMessage());
+				} else {
+					Message copy = new Message();
+					copy.copyFrom(received);
+					messages.add(copy);
+				}
+			}
+			messages.add(DISCONNECTED);
+		} catch (IOException e) {
+			messages.add(UNREACHABLE);
+		}
 	}
 	
 	/**
 	 * Reads and returns one line from the server.
 	 * 
-	 * @return the line sent by the server.
-	 * @throws ServerUnavailableException if IO errors occur.
+	 * @return the line sent by the server, or null if the connection ended
 	 */
 	public String readLineFromServer() {
-		String answer = null;
+		Message answer = readMessageFromServer();
+		return (answer == null) ? null : answer.toString();
+	}
+	
+	/**
+	 * Reads one message from the server, into a Message that is reused by the next call when
+	 * the server does not ping.
+	 * 
+	 * @return the message sent by the server, or null if the connection ended
+	 */
+	public Message readMessageFromServer() {
+		Message answer = null;
 		
-		if (in != null) {
+		if (incoming != null) {
 			try {
-				answer = in.readLine();
-				
-				if (answer == null) {
+				answer = incoming.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				answer = UNREACHABLE;
+			}
+			if (answer == DISCONNECTED || answer == UNREACHABLE) {
+				incoming.add(answer);
+				clientTUI.showMessage(answer == DISCONNECTED 
+						? "\nServer disconnected. The connection will be closed."
+						: "\nServer cannot be reached. The connection will be closed.");
+				closeConnection();
+				answer = null;
+			}
+		} else if (in != null) {
+			try {
+				if (in.read(message, frames)) {
+					answer = message;
+				} else {
 					clientTUI.showMessage("\nServer disconnected. The connection will be closed.");
 					closeConnection();
 				}
@@ -225,15 +351,18 @@ public class ServerHandler {
 	}
 	
 	/**
-	 * Sends one line to the server.
+	 * Sends one message to the server.
 	 * 
 	 * @return the line sent by the server.
 	 * @throws ServerUnavailableException if IO errors occur.
 	 */
-	public void sendToGame(String message) {
+	public synchronized void sendToGame(String message) {
 		try {
-			out.write(message);
-			out.newLine();
+			if (frames) {
+				FrameCodec.writeFrame(message, out);
+			} else {
+				FrameCodec.writeLine(message, out);
+			}
 			out.flush();
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -1,10 +1,9 @@
 package client;
 
-import java.util.List;
-
 import protocol.ProtocolMessages;
 import ruleimplementations.BoardState;
 import ruleimplementations.MoveValidator;
+import ruleimplementations.PositionHistory;
 import ruleimplementations.ScoreCalculator;
 
 /**
@@ -70,37 +69,26 @@ public class Smart1ComputerPlayer extends AbstractClient {
 	
 	@Override
 	public String getMove(String opponentsMove, int boardDimension, 
-			String board, char color, List<String> prevBoards) {
-		
-		String move = "";
-		boolean valid = false;
+			String board, char color, PositionHistory prevBoards) {
 		
-		boolean opponentCanDoAMove = canOpponentDoAMove(move, boardDimension, 
+		boolean opponentCanDoAMove = canOpponentDoAMove(opponentsMove, boardDimension, 
 																		board, color, prevBoards);
 		char winner = boardState.highestScore(board);
 		
 		if (!opponentCanDoAMove && winner == color) {
 			return Character.toString(ProtocolMessages.PASS);
 		}
-				
-		for (int c = 0; c < board.length(); c++) {
-			if (board.charAt(c) == ProtocolMessages.UNOCCUPIED) {
-				move = Integer.toString(c);
-			}
-			valid = moveValidator.processMove(move, boardDimension, board, color, prevBoards);
-			if (valid) {
-				return move;
-			} 
+		
+		int location = moveValidator.legalMoves(board, color, prevBoards).nextSetBit(0);
+		if (location != -1) {
+			return Integer.toString(location);
 		}
 		return Character.toString(ProtocolMessages.PASS);
 	}
 	
 	public boolean canOpponentDoAMove(String opponentsMove, int boardDimension, 
-			String board, char color, List<String> prevBoards) {
+			String board, char color, PositionHistory prevBoards) {
 		
-		boolean valid = true;
-		boolean opponentCanDoAMove = true;
-		String move = "";
 		char opponentsColor = 'x';
 		if (color == ProtocolMessages.BLACK) {
 			opponentsColor = ProtocolMessages.WHITE;
@@ -108,23 +96,6 @@ public class Smart1ComputerPlayer extends AbstractClient {
 			opponentsColor = ProtocolMessages.BLACK;
 		}
 		
-		//go through board from top left to bottom right
-		for (int c = 0; c < board.length(); c++) {
-			if (board.charAt(c) == ProtocolMessages.UNOCCUPIED) {
-				move = Integer.toString(c);
-			}
-			
-			valid = moveValidator.processMove(move, boardDimension, board, 
-															opponentsColor, prevBoards);
-			if (valid) {
-				break;
-			} 
-		}
-		//if no valid moves found
-		if (!valid) {
-			opponentCanDoAMove = false;
-		}
-		
-		return opponentCanDoAMove;
+		return !moveValidator.legalMoves(board, opponentsColor, prevBoards).isEmpty();
 	}
 }
@@ -1,12 +1,13 @@
 package client;
 
-import java.util.List;
+import java.util.BitSet;
 
 import protocol.ProtocolMessages;
 import ruleimplementations.MoveValidator;
+import ruleimplementations.PositionHistory;
 import ruleimplementations.ScoreCalculator;
 import ruleimplementations.BoardState;
-import ruleimplementations.BoardUpdater;
+import ruleimplementations.IncrementalScorer;
 
 /**
  * A computer player that can play Go. 
@@ -27,9 +28,13 @@ public class Smart2ComputerPlayer extends AbstractClient {
 
 	private MoveValidator moveValidator = new MoveValidator();
 	private ScoreCalculator scoreCalculator = new ScoreCalculator();
-	private BoardUpdater boardUpdater = new BoardUpdater();
 	private BoardState boardState = new BoardState(scoreCalculator);
 	
+	// The scores of the last board that moves were tried on, and a copy to try a move on
+	private String scoredBoard;
+	private IncrementalScorer currentScores;
+	private IncrementalScorer scoresAfterMove;
+	
 	/**
 	 * Constructor.
 	 */
@@ -72,7 +77,7 @@ public class Smart2ComputerPlayer extends AbstractClient {
 	
 	@Override
 	public String getMove(String opponentsMove, int boardDimension, 
-			String board, char color, List<String> prevBoards) {
+			String board, char color, PositionHistory prevBoards) {
 		
 		boolean opponentCanDoAMove = canOpponentDoAMove(boardDimension, board, color, prevBoards);
 		char winner = boardState.highestScore(board);
@@ -80,19 +85,12 @@ public class Smart2ComputerPlayer extends AbstractClient {
 			return Character.toString(ProtocolMessages.PASS);
 		}
 		
-		String move = "";
-		boolean valid = false;		
-		for (int c = 0; c < board.length(); c++) {
-			if (board.charAt(c) == ProtocolMessages.UNOCCUPIED) {
-				move = Integer.toString(c);
+		BitSet legalMoves = moveValidator.legalMoves(board, color, prevBoards);
+		for (int c = legalMoves.nextSetBit(0); c != -1; c = legalMoves.nextSetBit(c + 1)) {
+			boolean suicideMove = doesMoveReduceOwnScore(c, board, color);
+			if (!suicideMove) {
+				return Integer.toString(c);
 			}
-			valid = moveValidator.processMove(move, boardDimension, board, color, prevBoards);
-			if (valid) {
-				boolean suicideMove = doesMoveReduceOwnScore(c, board, color);
-				if (!suicideMove) {
-					return move;
-				}
-			} 
 		}
 		return Character.toString(ProtocolMessages.PASS);
 	}
@@ -107,11 +105,8 @@ public class Smart2ComputerPlayer extends AbstractClient {
 	 * @return true when the opponent can still do a move, false if it cannot
 	 */
 	public boolean canOpponentDoAMove(int boardDimension, 
-			String board, char color, List<String> prevBoards) {
+			String board, char color, PositionHistory prevBoards) {
 		
-		boolean valid = true;
-		boolean opponentCanDoAMove = true;
-		String move = "";
 		char opponentsColor = 'x';
 		if (color == ProtocolMessages.BLACK) {
 			opponentsColor = ProtocolMessages.WHITE;
@@ -119,23 +114,7 @@ public class Smart2ComputerPlayer extends AbstractClient {
 			opponentsColor = ProtocolMessages.BLACK;
 		}
 		
-		for (int c = 0; c < board.length(); c++) {
-			if (board.charAt(c) == ProtocolMessages.UNOCCUPIED) {
-				move = Integer.toString(c);
-			}
-			
-			valid = moveValidator.processMove(move, boardDimension, board, 
-															opponentsColor, prevBoards);
-			if (valid) {
-				break;
-			} 
-		}
-		//if no valid moves found
-		if (!valid) {
-			opponentCanDoAMove = false;
-		}
-		
-		return opponentCanDoAMove;
+		return !moveValidator.legalMoves(board, opponentsColor, prevBoards).isEmpty();
 	}
 	
 	/**
@@ -149,15 +128,22 @@ public class Smart2ComputerPlayer extends AbstractClient {
 	 */
 	public boolean doesMoveReduceOwnScore(int move, String board, char color) {
 		
-		scoreCalculator.calculateScores(board);
-		double scoreBlack = scoreCalculator.getScoreBlack();
-		double scoreWhite = scoreCalculator.getScoreWhite();
+		if (!board.equals(scoredBoard)) {
+			int boardDimension = (int) Math.sqrt(board.length());
+			if (currentScores == null || currentScores.getBoardDimension() != boardDimension) {
+				currentScores = new IncrementalScorer(boardDimension);
+				scoresAfterMove = new IncrementalScorer(boardDimension);
+			}
+			currentScores.load(board);
+			scoredBoard = board;
+		}
+		double scoreBlack = currentScores.getScoreBlack();
+		double scoreWhite = currentScores.getScoreWhite();
 		
-		String newBoard = board.substring(0, move) + color + board.substring(move + 1);
-		newBoard = boardUpdater.determineNewBoard(newBoard, color);
-		scoreCalculator.calculateScores(newBoard);
-		double scoreBlackNew = scoreCalculator.getScoreBlack();
-		double scoreWhiteNew = scoreCalculator.getScoreWhite();
+		scoresAfterMove.copyFrom(currentScores);
+		scoresAfterMove.placeStone(move, color);
+		double scoreBlackNew = scoresAfterMove.getScoreBlack();
+		double scoreWhiteNew = scoresAfterMove.getScoreWhite();
 		
 		if (color == ProtocolMessages.BLACK) {
 			if (scoreWhite == scoreWhiteNew && scoreBlack > scoreBlackNew) {
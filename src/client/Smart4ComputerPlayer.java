@@ -1,12 +1,15 @@
 package client;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import protocol.ProtocolMessages;
 import ruleimplementations.BoardState;
-import ruleimplementations.BoardUpdater;
+import ruleimplementations.BoardTopology;
+import ruleimplementations.IncrementalScorer;
 import ruleimplementations.MoveValidator;
+import ruleimplementations.PositionHistory;
 import ruleimplementations.ScoreCalculator;
 
 /**
@@ -25,9 +28,16 @@ public class Smart4ComputerPlayer extends AbstractClient {
 
 	private MoveValidator moveValidator = new MoveValidator();
 	private ScoreCalculator scoreCalculator = new ScoreCalculator();
-	private BoardUpdater boardUpdater = new BoardUpdater();
 	private BoardState boardState = new BoardState(scoreCalculator);
 	
+	// The scores of the last board that moves were tried on, and a copy to try a move on
+	private String scoredBoard;
+	private IncrementalScorer currentScores;
+	private IncrementalScorer scoresAfterMove;
+	
+	// The neighbors of every location on the board of the current game
+	private BoardTopology topology;
+	
 	/**
 	 * Constructor.
 	 */
@@ -73,7 +83,7 @@ public class Smart4ComputerPlayer extends AbstractClient {
 	 */
 	@Override
 	public String getMove(String opponentsMove, int boardDimension, 
-			String board, char color, List<String> prevBoards) {
+			String board, char color, PositionHistory prevBoards) {
 		
 		boolean opponentCanDoAMove = canOpponentDoAMove(boardDimension, board, color, prevBoards);
 		boolean opponentPassed = opponentsMove.equals(Character.toString(ProtocolMessages.PASS));
@@ -82,6 +92,7 @@ public class Smart4ComputerPlayer extends AbstractClient {
 			return Character.toString(ProtocolMessages.PASS);
 		}
 		
+		BitSet legalMoves = moveValidator.legalMoves(board, color, prevBoards);
 		boolean noMovesLeft = false;
 		List<String> possibleLocations = new ArrayList<String>();
 		//fill up left five columns, then move on
@@ -91,7 +102,8 @@ public class Smart4ComputerPlayer extends AbstractClient {
 			for (int x = xmin; x <= xmax; x++) {
 				for (int y = 0; y <= boardDimension - 1; y++) {
 					int location = x + y * boardDimension;
-					if (isValidMove(board, boardDimension, color, prevBoards, location)) {
+					if (legalMoves.get(location) 
+							&& !doesMoveReduceOwnScore(location, board, color, boardDimension)) {
 						if (!neighborsAllOwnColor(board, boardDimension, color, location)) {
 							possibleLocations.add(Integer.toString(location));
 						}
@@ -123,36 +135,12 @@ public class Smart4ComputerPlayer extends AbstractClient {
 	
 	public boolean neighborsAllOwnColor(String board, int boardDimension, 
 															char color, int location) {
-		boolean neighborOnBoard;
-		int locationToTheLeft = location - 1;
-		neighborOnBoard = boardState.checkNextLocationBoard(locationToTheLeft, location, 
-																			boardDimension);
-		if (neighborOnBoard) {
-			if (board.charAt(locationToTheLeft) != color) {
-				return false;
-			}
-		}
-		int locationToTheRight = location + 1;
-		neighborOnBoard = boardState.checkNextLocationBoard(locationToTheRight, location, 
-																			boardDimension);
-		if (neighborOnBoard) {
-			if (board.charAt(locationToTheRight) != color) {
-				return false;
-			}
+		if (topology == null || topology.getBoardDimension() != boardDimension) {
+			topology = BoardTopology.forDimension(boardDimension);
 		}
-		int locationAbove = location - boardDimension;
-		neighborOnBoard = boardState.checkNextLocationBoard(locationAbove, location, 
-																			boardDimension);
-		if (neighborOnBoard) {
-			if (board.charAt(locationAbove) != color) {
-				return false;
-			}
-		}
-		int locationBelow = location + boardDimension;
-		neighborOnBoard = boardState.checkNextLocationBoard(locationBelow, location, 
-																			boardDimension);
-		if (neighborOnBoard) {
-			if (board.charAt(locationBelow) != color) {
+		int degree = topology.getDegree(location);
+		for (int n = 0; n < degree; n++) {
+			if (board.charAt(topology.getNeighbor(location, n)) != color) {
 				return false;
 			}
 		}
@@ -160,29 +148,6 @@ public class Smart4ComputerPlayer extends AbstractClient {
 	}
 	
 	
-	/**
-	 * Check whether a move is a valid move.
-	 * 
-	 * @return true if valid and it does not only reduce own score
-	 */
-	public boolean isValidMove(String board, int boardDimension, char color, 
-														List<String> prevBoards, int c) {
-		String move = "";
-		boolean valid;
-		
-		if (board.charAt(c) == ProtocolMessages.UNOCCUPIED) {
-			move = Integer.toString(c);
-		}
-		valid = moveValidator.processMove(move, boardDimension, board, color, prevBoards);
-		if (valid) {
-			boolean suicideMove = doesMoveReduceOwnScore(c, board, color, boardDimension);
-			if (!suicideMove) {
-				return true;
-			}
-		} 
-		return false;
-	}
-	
 	/**
 	 * Checks whether the opponent can do a move.
 	 * 
@@ -190,10 +155,7 @@ public class Smart4ComputerPlayer extends AbstractClient {
 	 */
 	
 	public boolean canOpponentDoAMove(int boardDimension, String board, char color, 
-																List<String> prevBoards) {
-		boolean valid = true;
-		boolean opponentCanDoAMove = true;
-		String move = "";
+																PositionHistory prevBoards) {
 		char opponentsColor = 'x';
 		if (color == ProtocolMessages.BLACK) {
 			opponentsColor = ProtocolMessages.WHITE;
@@ -201,24 +163,7 @@ public class Smart4ComputerPlayer extends AbstractClient {
 			opponentsColor = ProtocolMessages.BLACK;
 		}
 		
-		//go through board from top left to bottom right to find a valid move
-		for (int c = 0; c < board.length(); c++) {
-			if (board.charAt(c) == ProtocolMessages.UNOCCUPIED) {
-				move = Integer.toString(c);
-			}
-			
-			valid = moveValidator.processMove(move, boardDimension, board, 
-															opponentsColor, prevBoards);
-			if (valid) {
-				break;
-			} 
-		}
-		//if no valid moves found
-		if (!valid) {
-			opponentCanDoAMove = false;
-		}
-		
-		return opponentCanDoAMove;
+		return !moveValidator.legalMoves(board, opponentsColor, prevBoards).isEmpty();
 	}
 	
 	/**
@@ -232,15 +177,21 @@ public class Smart4ComputerPlayer extends AbstractClient {
 	 */
 	public boolean doesMoveReduceOwnScore(int move, String board, char color, int boardDimension) {
 		
-		scoreCalculator.calculateScores(board);
-		double scoreBlack = scoreCalculator.getScoreBlack();
-		double scoreWhite = scoreCalculator.getScoreWhite();
+		if (!board.equals(scoredBoard)) {
+			if (currentScores == null || currentScores.getBoardDimension() != boardDimension) {
+				currentScores = new IncrementalScorer(boardDimension);
+				scoresAfterMove = new IncrementalScorer(boardDimension);
+			}
+			currentScores.load(board);
+			scoredBoard = board;
+		}
+		double scoreBlack = currentScores.getScoreBlack();
+		double scoreWhite = currentScores.getScoreWhite();
 		
-		String newBoard = board.substring(0, move) + color + board.substring(move + 1);
-		newBoard = boardUpdater.determineNewBoard(newBoard, color);
-		scoreCalculator.calculateScores(newBoard);
-		double scoreBlackNew = scoreCalculator.getScoreBlack();
-		double scoreWhiteNew = scoreCalculator.getScoreWhite();
+		scoresAfterMove.copyFrom(currentScores);
+		scoresAfterMove.placeStone(move, color);
+		double scoreBlackNew = scoresAfterMove.getScoreBlack();
+		double scoreWhiteNew = scoresAfterMove.getScoreWhite();
 		
 		if (color == ProtocolMessages.BLACK) {
 			if (scoreWhite == scoreWhiteNew && scoreBlack > scoreBlackNew) {
@@ -1,9 +1,8 @@
 package client;
 
-import java.util.List;
-
 import protocol.ProtocolMessages;
 import ruleimplementations.MoveValidator;
+import ruleimplementations.PositionHistory;
 
 /**
  * A computer player that can play Go. 
@@ -55,25 +54,12 @@ public class StupidNonRandomComputerPlayer extends AbstractClient {
 	 * @param prevBoards, a list of all already seen previous board states
 	 */
 	public String getMove(String opponentsMove, int boardDimension, 
-			String board, char color, List<String> prevBoards) {
-		
-		String move = "";
-		boolean valid = false;
+			String board, char color, PositionHistory prevBoards) {
 		
-		for (int c = 0; c < board.length(); c++) {
-			if (board.charAt(c) == ProtocolMessages.UNOCCUPIED) {
-
-				move = Integer.toString(c);
-			}
-			
-			valid = moveValidator.processMove(move, boardDimension, board, color, prevBoards);
-			if (valid) {
-				break;
-			} 
-		}
-		if (!valid) {
-			move = Character.toString(ProtocolMessages.PASS);
+		int location = moveValidator.legalMoves(board, color, prevBoards).nextSetBit(0);
+		if (location == -1) {
+			return Character.toString(ProtocolMessages.PASS);
 		}
-		return move;
+		return Integer.toString(location);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package protocol;
+
+/**
+ * The changes of a board, as sent instead of the whole board in the turn and result messages
+ * of ProtocolMessages.DELTA_VERSION: ProtocolMessages.DELTA, followed by one entry per changed
+ * location, which is the new occupation status of the location and then the location, e.g.
+ * '+B12U13U14' for a black stone on 12 that captured the stones on 13 and 14. A pass changes
+ * nothing and is sent as '+'.
+ *
+ * Every message with a board carries one move: a turn message the move of the opponent, a result
+ * message the own move. So the changes always apply to the board of the previous message. Every
+ * RESYNC_INTERVAL messages the whole board is sent instead, so that a client that went wrong
+ * does not stay wrong. A whole board has no digits, so the two cannot be mixed up.
+ */
+
+public final class BoardDelta {
+
+	/** Every so many messages with a board, a player gets the whole board. */
+	public static final int RESYNC_INTERVAL = 32;
+
+	private BoardDelta() {
+	}
+
+	/**
+	 * Write one changed location to the end of the changes of a board.
+	 *
+	 * @param changes, the buffer that starts with ProtocolMessages.DELTA
+	 * @param status, the new occupation status of the location
+	 * @param location, the location
+	 * @return the buffer
+	 */
+	public static StringBuilder appendChange(StringBuilder changes, char status, int location) {
+		return changes.append(status).append(location);
+	}
+
+	/**
+	 * @return whether the board of a message is written as changes instead of a whole board
+	 */
+	public static boolean isDelta(CharSequence board) {
+		return board.length() > 0 && board.charAt(0) == ProtocolMessages.DELTA;
+	}
+
+	/**
+	 * Apply the changes of a board to the previous board. Nothing is changed if the changes are
+	 * not well-formed or do not fit on the board.
+	 *
+	 * @param changes, the changes, starting with ProtocolMessages.DELTA
+	 * @param board, the previous board, one character per location, which is updated
+	 * @return true if the changes were applied, false if they are not valid
+	 */
+	public static boolean apply(CharSequence changes, char[] board) {
+		if (!isDelta(changes) || !check(changes, board.length)) {
+			return false;
+		}
+		int index = 1;
+		while (index < changes.length()) {
+			char status = changes.charAt(index++);
+			int location = 0;
+			while (index < changes.length() && isDigit(changes.charAt(index))) {
+				location = location * 10 + (changes.charAt(index++) - '0');
+			}
+			board[location] = status;
+		}
+		return true;
+	}
+
+	/**
+	 * Check that every entry is an occupation status followed by a location on the board.
+	 */
+	private static boolean check(CharSequence changes, int numberOfLocations) {
+		int index = 1;
+		while (index < changes.length()) {
+			char status = changes.charAt(index++);
+			if (status != ProtocolMessages.BLACK && status != ProtocolMessages.WHITE
+					&& status != ProtocolMessages.UNOCCUPIED) {
+				return false;
+			}
+			int start = index;
+			long location = 0;
+			while (index < changes.length() && isDigit(changes.charAt(index))) {
+				location = Math.min(location * 10 + (changes.charAt(index++) - '0'),
+						numberOfLocations);
+			}
+			if (index == start || location >= numberOfLocations) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isDigit(char character) {
+		return character >= '0' && character <= '9';
+	}
+}
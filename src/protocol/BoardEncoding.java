@@ -0,0 +1,24 @@
+package protocol;
+
+/**
+ * How the boards in the turn and result messages to a player are written, which depends on the
+ * protocol version that was agreed on in the handshake.
+ */
+
+public enum BoardEncoding {
+	/** The whole board, one character per location. */
+	FULL,
+	/** The changes since the previous board that the player got, see BoardDelta. */
+	DELTA;
+
+	/**
+	 * @param version, the version that the server and the client agreed on
+	 * @return the encoding of the boards of that version
+	 */
+	public static BoardEncoding forVersion(String version) {
+		if (ProtocolMessages.DELTA_VERSION.equals(version)) {
+			return DELTA;
+		}
+		return FULL;
+	}
+}
@@ -0,0 +1,63 @@
+package protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The bytes of a message or of a board that are being encoded, in an array that is reused: the
+ * bytes are read from the array without copying, and reset keeps the array. So a buffer that is
+ * large enough can be encoded into again and again without allocating.
+ */
+
+final class ByteBuilder extends ByteArrayOutputStream {
+
+	/**
+	 * Constructor.
+	 *
+	 * @param size, the initial size of the array, in bytes
+	 */
+	ByteBuilder(int size) {
+		super(size);
+	}
+
+	/**
+	 * @return the array of the bytes, of which the first size() are set
+	 */
+	byte[] array() {
+		return buf;
+	}
+
+	/**
+	 * Write text in UTF-8. Text of which every character is ASCII, like the boards and the
+	 * moves of the protocol, is written without creating objects.
+	 *
+	 * @param text, the text
+	 */
+	void writeText(CharSequence text) {
+		for (int index = 0; index < text.length(); index++) {
+			if (text.charAt(index) > 0x7f) {
+				byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+				write(bytes, 0, bytes.length);
+				return;
+			}
+		}
+		for (int index = 0; index < text.length(); index++) {
+			write(text.charAt(index));
+		}
+	}
+
+	/**
+	 * Write a number that is not negative in decimal digits, the way Integer.toString does.
+	 *
+	 * @param number, the number
+	 */
+	void writeNumber(int number) {
+		int divisor = 1;
+		while (number / divisor >= 10) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			write('0' + (number / divisor) % 10);
+		}
+	}
+}
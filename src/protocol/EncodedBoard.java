@@ -0,0 +1,136 @@
+package protocol;
+
+/**
+ * The board after one move, encoded for the messages that embed it (see EncodedMessage): as
+ * text and as the board of a frame (see FrameCodec), whole, as the changes of the move (see
+ * BoardDelta) or as runs (see RunLength). Each form is encoded the first time it is needed and
+ * then shared, read-only, by every message and every recipient of that move, so the cost of
+ * encoding a move does not grow with the number of recipients.
+ *
+ * A game keeps one EncodedBoard around its own buffers and resets it after every move. The
+ * forms are encoded into two sets of buffers, which are large enough for any board of its
+ * size and are used in turn: the bytes that were handed out for a move stay the same until
+ * the board has been reset twice, and a move does not create objects once both sets exist.
+ */
+
+public final class EncodedBoard {
+
+	/** The forms of the board. */
+	static final int WHOLE = 0;
+	static final int CHANGES = 1;
+	static final int RUNS = 2;
+
+	private final CharSequence board;
+	private final CharSequence changes;
+
+	/** The buffers of the forms, by form and then text or binary, and then by set. */
+	private final ByteBuilder[][] buffers = new ByteBuilder[6][2];
+
+	/** Whether a form was encoded into the buffers of the current set. */
+	private final boolean[] encoded = new boolean[6];
+
+	/** Whether a form that was encoded has no binary form. */
+	private final boolean[] noBinaryForm = new boolean[6];
+
+	/** The set of buffers that the forms of this move are encoded into, 0 or 1. */
+	private int set;
+
+	/**
+	 * Constructor. The board and its changes are not copied: they are read when a form is
+	 * encoded, so reset has to be called whenever they change.
+	 *
+	 * @param board, the whole board
+	 * @param changes, the changes of the last move, starting with ProtocolMessages.DELTA
+	 */
+	public EncodedBoard(CharSequence board, CharSequence changes) {
+		this.board = board;
+		this.changes = changes;
+	}
+
+	/**
+	 * Constructor for a board without a last move, such as the board of a start game message.
+	 *
+	 * @param board, the whole board
+	 */
+	public EncodedBoard(CharSequence board) {
+		this(board, Character.toString(ProtocolMessages.DELTA));
+	}
+
+	/**
+	 * Forget the forms that were encoded, after the board or its changes changed. The next
+	 * forms are encoded into the other set of buffers, as messages that were sent before may
+	 * still share the bytes of this set.
+	 */
+	public synchronized void reset() {
+		set = 1 - set;
+		for (int index = 0; index < encoded.length; index++) {
+			encoded[index] = false;
+		}
+	}
+
+	/**
+	 * Whether the whole board is sent as runs to a client that asked for them: if the board is
+	 * large (see RunLength.isLarge) and its runs are shorter than the whole board.
+	 *
+	 * @param frames, whether the board is sent in a frame instead of a line
+	 */
+	public boolean prefersRuns(boolean frames) {
+		if (!RunLength.isLarge(board.length())) {
+			return false;
+		}
+		ByteBuilder runs = bytes(RUNS, frames);
+		ByteBuilder whole = bytes(WHOLE, frames);
+		return runs != null && (whole == null || runs.size() < whole.size());
+	}
+
+	/**
+	 * @param form, WHOLE, CHANGES or RUNS
+	 * @param binary, whether the form in a frame is wanted instead of the text
+	 * @return the shared bytes of the form, which must not be changed, or null if it has no
+	 *         binary form
+	 */
+	synchronized ByteBuilder bytes(int form, boolean binary) {
+		int index = form * 2 + (binary ? 1 : 0);
+		if (buffers[index][set] == null) {
+			buffers[index][set] = new ByteBuilder(capacity(form, binary));
+		}
+		ByteBuilder bytes = buffers[index][set];
+		if (!encoded[index]) {
+			bytes.reset();
+			noBinaryForm[index] = binary ? !encodeBinary(form, bytes) : !encodeText(form, bytes);
+			encoded[index] = true;
+		}
+		return noBinaryForm[index] ? null : bytes;
+	}
+
+	/**
+	 * @return the most bytes a form of the board can take, for the changes or runs of a board
+	 *         of which every location is different, so the buffers never grow
+	 */
+	int capacity(int form, boolean binary) {
+		int numberOfLocations = board.length();
+		if (form == WHOLE) {
+			return (binary ? numberOfLocations / 4 : numberOfLocations) + 16;
+		}
+		// Per location a status and digits, or a varint of at most five bytes
+		int digits = Integer.toString(numberOfLocations).length();
+		return numberOfLocations * (binary ? 5 : 1 + digits) + 16;
+	}
+
+	private boolean encodeText(int form, ByteBuilder bytes) {
+		if (form == RUNS) {
+			RunLength.write(board, bytes);
+		} else {
+			bytes.writeText((form == CHANGES) ? changes : board);
+		}
+		return true;
+	}
+
+	/**
+	 * @return false if the board has no binary form
+	 */
+	private boolean encodeBinary(int form, ByteBuilder bytes) {
+		return (form == RUNS) ? FrameCodec.writeRuns(board, bytes)
+				: FrameCodec.writeBoard((form == CHANGES) ? changes : board, bytes);
+	}
+}
@@ -0,0 +1,238 @@
+package protocol;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A start game message, a turn message or the result message of a valid move, built around an
+ * EncodedBoard: the bytes of the board are copied into the message, not encoded again. The line
+ * and the frame of the message, with the whole board or, for a client that asked for them, its
+ * runs (see RunLength), are built the first time they are needed and then shared, read-only, by
+ * every recipient that gets this message. The recipients copy the bytes while the message is
+ * sent: like the forms of the board, the lines and frames are built into two sets of buffers
+ * that are used in turn, so they only stay the same until the message has been reset twice.
+ */
+
+public final class EncodedMessage {
+
+	private final char command;
+	private final EncodedBoard board;
+	private boolean delta;
+
+	/**
+	 * The component after the board: the move of a turn message as it is written in its text,
+	 * empty before the first move, the color of a start game message, null for a result message.
+	 * It is read when the message is encoded, like the board.
+	 */
+	private final CharSequence after;
+
+	/** The buffers of the lines and frames, by runs and then frame, and then by set. */
+	private final ByteBuilder[][] buffers = new ByteBuilder[4][2];
+
+	/** Whether a line or frame was built into the buffers of the current set. */
+	private final boolean[] encoded = new boolean[4];
+
+	/** The payload of a frame while it is built, before its length is known. */
+	private ByteBuilder payload;
+
+	/** The set of buffers that the lines and frames are built into, 0 or 1. */
+	private int set;
+
+	private EncodedMessage(char command, EncodedBoard board, boolean delta, CharSequence after) {
+		this.command = command;
+		this.board = board;
+		this.delta = delta;
+		this.after = after;
+	}
+
+	/**
+	 * A start game message, see GeneratorInterface.startGameMessage.
+	 *
+	 * @param board, the board at the start of the game
+	 * @param color, the color of the player that gets the message
+	 */
+	public static EncodedMessage startGame(EncodedBoard board, char color) {
+		return new EncodedMessage(ProtocolMessages.GAME, board, false, Character.toString(color));
+	}
+
+	/**
+	 * A turn message, see GeneratorInterface.doTurnMessage.
+	 *
+	 * @param board, the board after the move of the opponent
+	 * @param delta, whether the message has the changes of the move instead of the whole board
+	 * @param opponentsMove, the move of the opponent, or null or empty before the first move
+	 */
+	public static EncodedMessage turn(EncodedBoard board, boolean delta,
+			CharSequence opponentsMove) {
+		return new EncodedMessage(ProtocolMessages.TURN, board, delta,
+				(opponentsMove == null) ? "" : opponentsMove);
+	}
+
+	/**
+	 * The result message of a valid move, see GeneratorInterface.resultMessage.
+	 *
+	 * @param board, the board after the move
+	 * @param delta, whether the message has the changes of the move instead of the whole board
+	 */
+	public static EncodedMessage result(EncodedBoard board, boolean delta) {
+		return new EncodedMessage(ProtocolMessages.RESULT, board, delta, null);
+	}
+
+	/**
+	 * Make this the message of the board after the next move, or of the board in the other
+	 * form: the lines and frames that were built are forgotten, as the forms of the board are
+	 * by EncodedBoard.reset, and the next ones are built into the other set of buffers. So a
+	 * game can send every move with the same messages.
+	 *
+	 * @param newDelta, whether the message has the changes of the move instead of the whole board
+	 * @return this message
+	 */
+	public synchronized EncodedMessage reset(boolean newDelta) {
+		delta = newDelta;
+		set = 1 - set;
+		for (int index = 0; index < encoded.length; index++) {
+			encoded[index] = false;
+		}
+		return this;
+	}
+
+	/**
+	 * @param frames, whether the frame is wanted instead of the line
+	 * @param runLength, whether the client asked for large boards as runs
+	 * @return the bytes of the message, read-only
+	 */
+	public ByteBuffer bytes(boolean frames, boolean runLength) {
+		ByteBuilder bytes = encoded(frames, runLength);
+		return ByteBuffer.wrap(bytes.array(), 0, bytes.size()).asReadOnlyBuffer();
+	}
+
+	/**
+	 * @param frames, whether the frame is wanted instead of the line
+	 * @param runLength, whether the client asked for large boards as runs
+	 * @return the number of bytes of the line or the frame of the message
+	 */
+	public int length(boolean frames, boolean runLength) {
+		return encoded(frames, runLength).size();
+	}
+
+	/**
+	 * Copy the line or the frame of the message to a buffer, without creating objects.
+	 *
+	 * @param out, the buffer, with at least length(frames, runLength) bytes remaining
+	 * @param frames, whether the frame is wanted instead of the line
+	 * @param runLength, whether the client asked for large boards as runs
+	 */
+	public void writeTo(ByteBuffer out, boolean frames, boolean runLength) {
+		ByteBuilder bytes = encoded(frames, runLength);
+		out.put(bytes.array(), 0, bytes.size());
+	}
+
+	/**
+	 * Write the line or the frame of the message.
+	 *
+	 * @param out, the stream of the connection
+	 * @param frames, whether the frame is wanted instead of the line
+	 * @param runLength, whether the client asked for large boards as runs
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void writeTo(OutputStream out, boolean frames, boolean runLength) throws IOException {
+		ByteBuilder bytes = encoded(frames, runLength);
+		out.write(bytes.array(), 0, bytes.size());
+	}
+
+	/**
+	 * @return the text of the message with the whole board, as MessageGenerator writes it
+	 */
+	@Override
+	public String toString() {
+		ByteBuilder bytes = encoded(false, false);
+		return new String(bytes.array(), 0, bytes.size() - 1, StandardCharsets.UTF_8);
+	}
+
+	private synchronized ByteBuilder encoded(boolean frames, boolean runLength) {
+		boolean runs = runLength && !delta && board.prefersRuns(frames);
+		int index = (runs ? 2 : 0) + (frames ? 1 : 0);
+		int form = runs ? EncodedBoard.RUNS : (delta ? EncodedBoard.CHANGES : EncodedBoard.WHOLE);
+		if (buffers[index][set] == null) {
+			buffers[index][set] = new ByteBuilder(capacity(form));
+		}
+		ByteBuilder bytes = buffers[index][set];
+		if (!encoded[index]) {
+			bytes.reset();
+			if (frames) {
+				encodeFrame(form, bytes);
+			} else {
+				encodeLine(form, bytes);
+				bytes.write('\n');
+			}
+			encoded[index] = true;
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return the bytes the line or frame of the message takes at most with a form of the
+	 *         board, and the command, the delimiters and a move or color
+	 */
+	private int capacity(int form) {
+		return Math.max(board.capacity(form, false), board.capacity(form, true)) + 32;
+	}
+
+	/**
+	 * Write the text of the message, without the end of the line.
+	 */
+	private void encodeLine(int form, ByteBuilder bytes) {
+		bytes.write(command);
+		bytes.write(ProtocolMessages.DELIMITER.charAt(0));
+		if (command == ProtocolMessages.RESULT) {
+			bytes.write(ProtocolMessages.VALID);
+			bytes.write(ProtocolMessages.DELIMITER.charAt(0));
+		}
+		ByteBuilder boardBytes = board.bytes(form, false);
+		bytes.write(boardBytes.array(), 0, boardBytes.size());
+		if (after != null) {
+			bytes.write(ProtocolMessages.DELIMITER.charAt(0));
+			bytes.writeText(afterText());
+		}
+	}
+
+	private void encodeFrame(int form, ByteBuilder bytes) {
+		if (payload == null) {
+			payload = new ByteBuilder(capacity(form));
+		}
+		payload.reset();
+		ByteBuilder boardBytes = board.bytes(form, true);
+		payload.write(command);
+		if (command == ProtocolMessages.RESULT) {
+			payload.write(ProtocolMessages.VALID);
+		}
+		if (boardBytes != null) {
+			payload.write(boardBytes.array(), 0, boardBytes.size());
+		}
+		boolean binary = boardBytes != null;
+		if (binary && command == ProtocolMessages.TURN) {
+			binary = FrameCodec.writeMove(afterText(), true, payload);
+		} else if (binary && command == ProtocolMessages.GAME) {
+			binary = after.length() == 1 && after.charAt(0) <= 0x7f;
+			payload.write(after.charAt(0));
+		}
+		if (!binary) {
+			// Sent as text, like FrameCodec does for a message without a binary form
+			payload.reset();
+			payload.write(FrameCodec.TEXT);
+			encodeLine(form, payload);
+		}
+		FrameCodec.writeVarint(payload.size(), bytes);
+		bytes.write(payload.array(), 0, payload.size());
+	}
+
+	/**
+	 * @return the component after the board as it is written, "null" for a turn message before
+	 *         the first move
+	 */
+	private CharSequence afterText() {
+		return (command == ProtocolMessages.TURN && after.length() == 0) ? "null" : after;
+	}
+}
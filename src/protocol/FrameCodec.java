@@ -0,0 +1,350 @@
+package protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the messages of the protocol on a connection, as lines of text or, when the client
+ * asks for ProtocolMessages.FRAMES in its handshake and the server confirms it, as binary
+ * frames. The handshake and its reply are always lines, every message after the reply is a
+ * frame. Used by the server and by ServerHandler; both read the lines and frames with
+ * MessageDecoder, so both sides agree on the bytes.
+ *
+ * A frame is the length of its payload as a varint, followed by the payload. The first byte of
+ * the payload is the opcode: the command character of the message for the messages that have
+ * a binary form (G, T, R and M), or TEXT for any other message, which follows in UTF-8.
+ * - A board is a tag byte followed by either the whole board, PACKED: the number of locations
+ *   as a varint and then four locations per byte, two bits each (U = 0, B = 1, W = 2, from the
+ *   lowest bits); or the changes of a BoardDelta, CHANGES: the number of changes as a varint
+ *   and then per change the location times four plus the code of its status, as a varint;
+ *   or the runs of a RunLength, RUNS: the number of runs as a varint and then per run its
+ *   length times four plus the code of its status, as a varint.
+ * - A move is a varint: 0 for no move ("null"), 1 for a pass and the location plus 2 otherwise.
+ * - G: board, color. T: board, move. M: move.
+ *   R: 'V' and a board, or 'I' and the explanation in UTF-8.
+ * A message is only written in its binary form if it is read back as exactly the same text,
+ * otherwise it is sent as TEXT. So a 19 by 19 board takes 95 bytes instead of 361, and a move
+ * two or three.
+ *
+ * Varints are written seven bits per byte, lowest bits first, with the highest bit set on
+ * every byte but the last.
+ */
+
+public final class FrameCodec {
+
+	/** The longest line or frame payload that is read (see MessageDecoder), in bytes. */
+	public static final int MAX_LENGTH = 64 * 1024;
+
+	/** The opcode of a message that is sent as text. */
+	public static final byte TEXT = 0;
+
+	/** The tags of the two ways to write a board. */
+	private static final byte PACKED = 0;
+	private static final byte CHANGES = 1;
+	private static final byte RUNS = 2;
+
+	/** The moves that are no location. */
+	private static final int NO_MOVE = 0;
+	private static final int PASS_MOVE = 1;
+	private static final int FIRST_LOCATION = 2;
+
+	private static final String DELIMITER = ProtocolMessages.DELIMITER;
+
+	private FrameCodec() {
+	}
+
+	// ------------------ Lines --------------------------
+
+	/**
+	 * Write a message as a line.
+	 */
+	public static void writeLine(String message, OutputStream out) throws IOException {
+		out.write(message.getBytes(StandardCharsets.UTF_8));
+		out.write('\n');
+	}
+
+	// ------------------ Frames --------------------------
+
+	/**
+	 * Write a message as a frame.
+	 */
+	public static void writeFrame(String message, OutputStream out) throws IOException {
+		out.write(encode(message));
+	}
+
+	/**
+	 * Write a message as a frame: the length of the payload, followed by the payload.
+	 *
+	 * @param message, a message of the protocol
+	 * @return the bytes of the frame
+	 */
+	public static byte[] encode(String message) {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(message.length() / 3 + 8);
+		if (!encodeBinary(message, payload)) {
+			payload.reset();
+			payload.write(TEXT);
+			byte[] text = message.getBytes(StandardCharsets.UTF_8);
+			payload.write(text, 0, text.length);
+		}
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.size() + 3);
+		writeVarint(payload.size(), frame);
+		frame.write(payload.toByteArray(), 0, payload.size());
+		return frame.toByteArray();
+	}
+
+	// ------------------ Encoding --------------------------
+
+	/**
+	 * Write the binary form of a message, if it has one.
+	 *
+	 * @return false if the message has to be sent as text
+	 */
+	private static boolean encodeBinary(String message, ByteArrayOutputStream payload) {
+		if (message.length() < 3 || message.charAt(1) != DELIMITER.charAt(0)) {
+			return false;
+		}
+		String[] components = message.split(DELIMITER, -1);
+		switch (message.charAt(0)) {
+			case ProtocolMessages.GAME:
+				if (components.length != 3 || components[2].length() != 1
+						|| components[2].charAt(0) > 0x7f) {
+					return false;
+				}
+				payload.write(ProtocolMessages.GAME);
+				if (!writeBoard(components[1], payload)) {
+					return false;
+				}
+				payload.write(components[2].charAt(0));
+				return true;
+			case ProtocolMessages.TURN:
+				if (components.length != 3) {
+					return false;
+				}
+				payload.write(ProtocolMessages.TURN);
+				return writeBoard(components[1], payload)
+						&& writeMove(components[2], true, payload);
+			case ProtocolMessages.MOVE:
+				if (components.length != 2) {
+					return false;
+				}
+				payload.write(ProtocolMessages.MOVE);
+				return writeMove(components[1], false, payload);
+			case ProtocolMessages.RESULT:
+				if (components.length < 3 || components[1].length() != 1) {
+					return false;
+				}
+				payload.write(ProtocolMessages.RESULT);
+				if (components[1].charAt(0) == ProtocolMessages.VALID && components.length == 3) {
+					payload.write(ProtocolMessages.VALID);
+					return writeBoard(components[2], payload);
+				} else if (components[1].charAt(0) == ProtocolMessages.INVALID) {
+					payload.write(ProtocolMessages.INVALID);
+					byte[] text = message.substring(4).getBytes(StandardCharsets.UTF_8);
+					payload.write(text, 0, text.length);
+					return true;
+				}
+				return false;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Write a whole board, the changes of a board or the runs of a board. Nothing is created
+	 * for a whole board or changes, so a board can be encoded into a reused buffer.
+	 *
+	 * @return false if the board has no binary form
+	 */
+	static boolean writeBoard(CharSequence board, ByteArrayOutputStream payload) {
+		if (BoardDelta.isDelta(board)) {
+			return writeChanges(board, payload);
+		}
+		if (RunLength.isRunLength(board)) {
+			char[] wholeBoard = RunLength.read(board);
+			if (wholeBoard == null) {
+				return false;
+			}
+			return writeRuns(CharBuffer.wrap(wholeBoard), payload);
+		}
+		if (board.length() == 0) {
+			return false;
+		}
+		payload.write(PACKED);
+		writeVarint(board.length(), payload);
+		int packed = 0;
+		for (int location = 0; location < board.length(); location++) {
+			int code = codeOf(board.charAt(location));
+			if (code == -1) {
+				return false;
+			}
+			packed |= code << ((location % 4) * 2);
+			if (location % 4 == 3) {
+				payload.write(packed);
+				packed = 0;
+			}
+		}
+		if (board.length() % 4 != 0) {
+			payload.write(packed);
+		}
+		return true;
+	}
+
+	/**
+	 * Write the changes of a board, see BoardDelta. The changes are read twice, to count and
+	 * check them and to write them, so that no buffer is needed for the entries.
+	 *
+	 * @return false if the changes are not well-formed
+	 */
+	private static boolean writeChanges(CharSequence changes, ByteArrayOutputStream payload) {
+		int numberOfChanges = writeChangeEntries(changes, null);
+		if (numberOfChanges == -1) {
+			return false;
+		}
+		payload.write(CHANGES);
+		writeVarint(numberOfChanges, payload);
+		writeChangeEntries(changes, payload);
+		return true;
+	}
+
+	/**
+	 * Write the entries of the changes of a board, or only count them.
+	 *
+	 * @param entries, the buffer to write the entries to, or null to only count them
+	 * @return the number of changes, or -1 if the changes are not well-formed
+	 */
+	private static int writeChangeEntries(CharSequence changes, ByteArrayOutputStream entries) {
+		int numberOfChanges = 0;
+		int index = 1;
+		while (index < changes.length()) {
+			int code = codeOf(changes.charAt(index++));
+			int start = index;
+			while (index < changes.length() && isDigit(changes.charAt(index))) {
+				index++;
+			}
+			int location = parseCanonical(changes, start, index);
+			if (code == -1 || location == -1 || location > (Integer.MAX_VALUE >> 2)) {
+				return -1;
+			}
+			if (entries != null) {
+				writeVarint(location * 4 + code, entries);
+			}
+			numberOfChanges++;
+		}
+		return numberOfChanges;
+	}
+
+	/**
+	 * Write a whole board as runs, see RunLength. Like the changes, the runs are counted
+	 * before they are written.
+	 *
+	 * @return false if the board is empty or not only occupation statuses
+	 */
+	static boolean writeRuns(CharSequence board, ByteArrayOutputStream payload) {
+		int numberOfRuns = writeRunEntries(board, null);
+		if (numberOfRuns <= 0) {
+			return false;
+		}
+		payload.write(RUNS);
+		writeVarint(numberOfRuns, payload);
+		writeRunEntries(board, payload);
+		return true;
+	}
+
+	/**
+	 * Write the entries of the runs of a board, or only count them.
+	 *
+	 * @param entries, the buffer to write the entries to, or null to only count them
+	 * @return the number of runs, or -1 if the board is not only occupation statuses
+	 */
+	private static int writeRunEntries(CharSequence board, ByteArrayOutputStream entries) {
+		int numberOfRuns = 0;
+		int location = 0;
+		while (location < board.length()) {
+			int code = codeOf(board.charAt(location));
+			int length = RunLength.runLength(board, location);
+			if (code == -1 || length > (Integer.MAX_VALUE >> 2)) {
+				return -1;
+			}
+			if (entries != null) {
+				writeVarint(length * 4 + code, entries);
+			}
+			numberOfRuns++;
+			location += length;
+		}
+		return numberOfRuns;
+	}
+
+	/**
+	 * Write a move.
+	 *
+	 * @param noMoveAllowed, whether "null" is a valid move, as in a turn message
+	 * @return false if the move has no binary form
+	 */
+	static boolean writeMove(CharSequence move, boolean noMoveAllowed,
+			ByteArrayOutputStream payload) {
+		if (noMoveAllowed && "null".contentEquals(move)) {
+			writeVarint(NO_MOVE, payload);
+			return true;
+		}
+		if (move.length() == 1 && move.charAt(0) == ProtocolMessages.PASS) {
+			writeVarint(PASS_MOVE, payload);
+			return true;
+		}
+		int location = parseCanonical(move, 0, move.length());
+		if (location == -1 || location > Integer.MAX_VALUE - FIRST_LOCATION) {
+			return false;
+		}
+		writeVarint(location + FIRST_LOCATION, payload);
+		return true;
+	}
+
+	// ------------------ Helpers --------------------------
+
+	static void writeVarint(int value, ByteArrayOutputStream out) {
+		while ((value & ~0x7f) != 0) {
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static int codeOf(char status) {
+		switch (status) {
+			case ProtocolMessages.UNOCCUPIED:
+				return 0;
+			case ProtocolMessages.BLACK:
+				return 1;
+			case ProtocolMessages.WHITE:
+				return 2;
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * Read a number that is written the way Integer.toString writes it, so that it is written
+	 * back the same: digits without leading zeros.
+	 *
+	 * @return the number, or -1 if the characters are not such a number or it is too large
+	 */
+	private static int parseCanonical(CharSequence text, int start, int end) {
+		if (start == end || end - start > 9 || (text.charAt(start) == '0' && end - start > 1)) {
+			return -1;
+		}
+		int number = 0;
+		for (int index = start; index < end; index++) {
+			if (!isDigit(text.charAt(index))) {
+				return -1;
+			}
+			number = number * 10 + (text.charAt(index) - '0');
+		}
+		return number;
+	}
+
+	private static boolean isDigit(char character) {
+		return character >= '0' && character <= '9';
+	}
+}
@@ -15,11 +15,24 @@ public interface GeneratorInterface {
 	public String clientHandshakeMessage(String wantedVersion, String nameClient, 
 			char wantedColor);
 	
+	public String clientHandshakeMessage(String wantedVersion, String nameClient, 
+			char wantedColor, boolean heartbeat);
+	
+	public String clientHandshakeMessage(String wantedVersion, String nameClient, 
+			char wantedColor, boolean heartbeat, boolean frames);
+	
+	public String clientHandshakeMessage(String wantedVersion, String nameClient, 
+			char wantedColor, boolean heartbeat, boolean frames, boolean runLength);
+	
+	public String pongMessage();
+	
 	public String moveMessage(String move);
 	
 	/**
 	 * Messages sent by the server only.
 	 */
+	public String pingMessage();
+	
 	public String startGameMessage(String board, char color);
 	
 	public String startGameMessagePart1();
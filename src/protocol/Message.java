@@ -0,0 +1,333 @@
+package protocol;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * A message of the protocol, read by MessageDecoder into fields instead of a string: the
+ * command, and the board, move, color and validity for the messages that have them. One object
+ * is reused for every message of a connection, and its arrays only grow, so reading the moves,
+ * turns and results of a game creates no objects.
+ *
+ * The messages that have no fields here, such as the handshake or an error, or that do not have
+ * the exact form that toString would write back, are kept as text (isRaw).
+ */
+
+public final class Message {
+
+	/** The move of a turn message before the first move of the game ("null"). */
+	public static final int NO_MOVE = -1;
+
+	/** The move of a pass. */
+	public static final int PASS = -2;
+
+	private char command;
+
+	/** The text of the message, if it is not read into fields. */
+	private String raw;
+
+	/**
+	 * The whole board, or the changes of the board if boardIsDelta (see BoardDelta). A board
+	 * that was received as runs (see RunLength) is kept whole.
+	 */
+	private char[] board = new char[0];
+	private int boardLength;
+	private boolean boardIsDelta;
+	private boolean boardIsRunLength;
+	private int[] changedLocations = new int[0];
+	private char[] changedStatus = new char[0];
+	private int numberOfChanges;
+
+	private int move;
+	private char color;
+	private char validity;
+
+	/** Of an end of game message: the reason, the winner and the scores. */
+	private char reason;
+	private char winner;
+	private String scoreBlack;
+	private String scoreWhite;
+
+	public char getCommand() {
+		return command;
+	}
+
+	/**
+	 * @return whether the message is kept as text instead of read into fields
+	 */
+	public boolean isRaw() {
+		return raw != null;
+	}
+
+	/**
+	 * @return whether the message has a board: a start game message, a turn message, or the
+	 *         result message of a valid move
+	 */
+	public boolean hasBoard() {
+		return raw == null && (command == ProtocolMessages.GAME || command == ProtocolMessages.TURN
+				|| (command == ProtocolMessages.RESULT && validity == ProtocolMessages.VALID));
+	}
+
+	public boolean isBoardDelta() {
+		return boardIsDelta;
+	}
+
+	/**
+	 * @return whether the whole board was received as runs, as toString writes it again
+	 */
+	public boolean isBoardRunLength() {
+		return boardIsRunLength;
+	}
+
+	/**
+	 * @return the length of the whole board, 0 if the board is written as changes
+	 */
+	public int getBoardLength() {
+		return boardLength;
+	}
+
+	/**
+	 * @return the occupation status of a location of the whole board
+	 */
+	public char getBoard(int location) {
+		return board[location];
+	}
+
+	/**
+	 * Copy the whole board into an array of the same length.
+	 */
+	public void copyBoardTo(char[] target) {
+		System.arraycopy(board, 0, target, 0, boardLength);
+	}
+
+	public int getNumberOfChanges() {
+		return numberOfChanges;
+	}
+
+	public int getChangedLocation(int change) {
+		return changedLocations[change];
+	}
+
+	public char getChangedStatus(int change) {
+		return changedStatus[change];
+	}
+
+	/**
+	 * @return the location of the move, or NO_MOVE or PASS
+	 */
+	public int getMove() {
+		return move;
+	}
+
+	public char getColor() {
+		return color;
+	}
+
+	public char getValidity() {
+		return validity;
+	}
+
+	public char getReason() {
+		return reason;
+	}
+
+	public char getWinner() {
+		return winner;
+	}
+
+	public String getScoreBlack() {
+		return scoreBlack;
+	}
+
+	public String getScoreWhite() {
+		return scoreWhite;
+	}
+
+	// ------------------ Written by MessageDecoder --------------------------
+
+	/**
+	 * Start a message that is read into fields.
+	 */
+	void start(char theCommand) {
+		command = theCommand;
+		raw = null;
+		boardLength = 0;
+		boardIsDelta = false;
+		boardIsRunLength = false;
+		numberOfChanges = 0;
+		move = NO_MOVE;
+	}
+
+	/**
+	 * Keep a message as text.
+	 */
+	public void setRaw(String text) {
+		command = text.isEmpty() ? 0 : text.charAt(0);
+		raw = text;
+	}
+
+	/**
+	 * Make room for a whole board of a number of locations and start it.
+	 */
+	void startBoard(int length) {
+		if (board.length < length) {
+			board = new char[Math.max(length, board.length * 2)];
+		}
+		boardLength = 0;
+		boardIsDelta = false;
+		boardIsRunLength = false;
+	}
+
+	/**
+	 * Start a whole board that is received as runs.
+	 */
+	void startRuns() {
+		startBoard(0);
+		boardIsRunLength = true;
+	}
+
+	/**
+	 * Add a run of locations with the same status to the whole board.
+	 */
+	void addRun(char status, int length) {
+		if (boardLength + length > board.length) {
+			board = Arrays.copyOf(board, Math.max(boardLength + length, board.length * 2));
+		}
+		Arrays.fill(board, boardLength, boardLength + length, status);
+		boardLength += length;
+	}
+
+	void addToBoard(char status) {
+		if (boardLength == board.length) {
+			board = Arrays.copyOf(board, Math.max(16, board.length * 2));
+		}
+		board[boardLength++] = status;
+	}
+
+	void startChanges() {
+		boardIsDelta = true;
+		boardIsRunLength = false;
+		boardLength = 0;
+		numberOfChanges = 0;
+	}
+
+	void addChange(char status, int location) {
+		if (numberOfChanges == changedLocations.length) {
+			int length = Math.max(8, changedLocations.length * 2);
+			changedLocations = Arrays.copyOf(changedLocations, length);
+			changedStatus = Arrays.copyOf(changedStatus, length);
+		}
+		changedStatus[numberOfChanges] = status;
+		changedLocations[numberOfChanges++] = location;
+	}
+
+	void setMove(int theMove) {
+		move = theMove;
+	}
+
+	void setColor(char theColor) {
+		color = theColor;
+	}
+
+	void setValidity(char theValidity) {
+		validity = theValidity;
+	}
+
+	void setEnd(char theReason, char theWinner, String theScoreBlack, String theScoreWhite) {
+		reason = theReason;
+		winner = theWinner;
+		scoreBlack = theScoreBlack;
+		scoreWhite = theScoreWhite;
+	}
+
+	// ------------------ Copying and writing --------------------------
+
+	/**
+	 * Make this message a copy of an other one, reusing the arrays of this message.
+	 */
+	public void copyFrom(Message other) {
+		if (other == this) {
+			return;
+		}
+		command = other.command;
+		raw = other.raw;
+		startBoard(other.boardLength);
+		System.arraycopy(other.board, 0, board, 0, other.boardLength);
+		boardLength = other.boardLength;
+		boardIsDelta = other.boardIsDelta;
+		boardIsRunLength = other.boardIsRunLength;
+		numberOfChanges = 0;
+		for (int change = 0; change < other.numberOfChanges; change++) {
+			addChange(other.changedStatus[change], other.changedLocations[change]);
+		}
+		move = other.move;
+		color = other.color;
+		validity = other.validity;
+		reason = other.reason;
+		winner = other.winner;
+		scoreBlack = other.scoreBlack;
+		scoreWhite = other.scoreWhite;
+	}
+
+	/**
+	 * Write the board of the message as it is written in the text of the message.
+	 */
+	public StringBuilder appendBoardTo(StringBuilder text) {
+		if (boardIsRunLength) {
+			return RunLength.append(CharBuffer.wrap(board, 0, boardLength), text);
+		}
+		if (!boardIsDelta) {
+			return text.append(board, 0, boardLength);
+		}
+		text.append(ProtocolMessages.DELTA);
+		for (int change = 0; change < numberOfChanges; change++) {
+			BoardDelta.appendChange(text, changedStatus[change], changedLocations[change]);
+		}
+		return text;
+	}
+
+	/**
+	 * Write the move of the message as it is written in the text of the message.
+	 */
+	public StringBuilder appendMoveTo(StringBuilder text) {
+		if (move == NO_MOVE) {
+			return text.append("null");
+		} else if (move == PASS) {
+			return text.append(ProtocolMessages.PASS);
+		}
+		return text.append(move);
+	}
+
+	/**
+	 * @return the text of the message, exactly as it was received
+	 */
+	@Override
+	public String toString() {
+		if (raw != null) {
+			return raw;
+		}
+		StringBuilder text = new StringBuilder(boardLength + 16).append(command);
+		String delimiter = ProtocolMessages.DELIMITER;
+		switch (command) {
+			case ProtocolMessages.GAME:
+				appendBoardTo(text.append(delimiter)).append(delimiter).append(color);
+				break;
+			case ProtocolMessages.TURN:
+				appendMoveTo(appendBoardTo(text.append(delimiter)).append(delimiter));
+				break;
+			case ProtocolMessages.RESULT:
+				appendBoardTo(text.append(delimiter).append(validity).append(delimiter));
+				break;
+			case ProtocolMessages.MOVE:
+				appendMoveTo(text.append(delimiter));
+				break;
+			case ProtocolMessages.END:
+				text.append(delimiter).append(reason).append(delimiter).append(winner)
+						.append(delimiter).append(scoreBlack).append(delimiter).append(scoreWhite);
+				break;
+			default:
+				break;
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,479 @@
+package protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the messages of the protocol from the bytes of a connection into a reusable Message,
+ * without creating strings: the command, boards, moves, colors and validities are read straight
+ * from the buffer into the fields of the message. Lines and frames (see FrameCodec) are read
+ * the same way, so the messages of both directions of GeneratorInterface have one reader.
+ *
+ * The bytes are read with absolute gets, so the buffer can be a direct buffer or wrap an array,
+ * and only its position moves, past the message that was read.
+ */
+
+public final class MessageDecoder {
+
+	private static final byte DELIMITER = (byte) ProtocolMessages.DELIMITER.charAt(0);
+
+	private MessageDecoder() {
+	}
+
+	/**
+	 * Read a line, if the buffer has a whole line.
+	 *
+	 * @param buffer, the received bytes, from its position to its limit
+	 * @param message, the message to read the line into
+	 * @return true if a line was read and the position of the buffer moved past it, false if the
+	 *         line is not complete yet
+	 * @throws IOException if the line is longer than FrameCodec.MAX_LENGTH
+	 */
+	public static boolean decodeLine(ByteBuffer buffer, Message message) throws IOException {
+		int start = buffer.position();
+		int end = -1;
+		for (int index = start; index < buffer.limit(); index++) {
+			if (buffer.get(index) == '\n') {
+				end = index;
+				break;
+			}
+		}
+		if (end == -1) {
+			if (buffer.remaining() > FrameCodec.MAX_LENGTH) {
+				throw new IOException("A line of more than " + FrameCodec.MAX_LENGTH
+						+ " bytes was received.");
+			}
+			return false;
+		}
+		buffer.position(end + 1);
+		if (end > start && buffer.get(end - 1) == '\r') {
+			end--;
+		}
+		decodeText(buffer, start, end, message);
+		return true;
+	}
+
+	/**
+	 * Read a frame, if the buffer has a whole frame.
+	 *
+	 * @param buffer, the received bytes, from its position to its limit
+	 * @param message, the message to read the frame into
+	 * @return true if a frame was read and the position of the buffer moved past it, false if
+	 *         the frame is not complete yet
+	 * @throws IOException if the frame is not valid or longer than FrameCodec.MAX_LENGTH
+	 */
+	public static boolean decodeFrame(ByteBuffer buffer, Message message) throws IOException {
+		int index = buffer.position();
+		int length = 0;
+		for (int shift = 0; true; shift += 7) {
+			if (index == buffer.limit()) {
+				return false;
+			}
+			if (shift > 21) {
+				throw new IOException("The length of a frame is not valid.");
+			}
+			byte b = buffer.get(index++);
+			length |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+		}
+		if (length > FrameCodec.MAX_LENGTH) {
+			throw new IOException("A frame of more than " + FrameCodec.MAX_LENGTH
+					+ " bytes was received.");
+		}
+		if (buffer.limit() - index < length) {
+			return false;
+		}
+		buffer.position(index + length);
+		decodePayload(buffer, index, index + length, message);
+		return true;
+	}
+
+	/**
+	 * Read the text of a message, for a message that was received as a string.
+	 *
+	 * @param text, the message without a line break
+	 * @param message, the message to read the text into
+	 */
+	public static void decodeText(String text, Message message) {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		decodeText(ByteBuffer.wrap(bytes), 0, bytes.length, message);
+	}
+
+	// ------------------ Text --------------------------
+
+	/**
+	 * Read the text of a message into fields if it has fields and exactly the form that
+	 * Message.toString writes, otherwise keep it as text.
+	 */
+	private static void decodeText(ByteBuffer buffer, int start, int end, Message message) {
+		if (end - start == 1 && buffer.get(start) > 0) {
+			// A command without components, such as a quit, a ping or a pong
+			message.start((char) buffer.get(start));
+			return;
+		}
+		if (end - start > 2 && buffer.get(start + 1) == DELIMITER
+				&& decodeFields(buffer, start, end, message)) {
+			return;
+		}
+		message.setRaw(text(buffer, start, end));
+	}
+
+	/**
+	 * @return false if the message has no fields or not their exact form
+	 */
+	private static boolean decodeFields(ByteBuffer buffer, int start, int end, Message message) {
+		char command = (char) buffer.get(start);
+		int index = start + 2;
+		message.start(command);
+		switch (command) {
+			case ProtocolMessages.GAME:
+				index = textBoard(buffer, index, end, message);
+				if (index == -1 || end - index != 2 || buffer.get(index) != DELIMITER
+						|| buffer.get(index + 1) <= 0) {
+					return false;
+				}
+				message.setColor((char) buffer.get(index + 1));
+				return true;
+			case ProtocolMessages.TURN:
+				index = textBoard(buffer, index, end, message);
+				if (index == -1 || index == end || buffer.get(index) != DELIMITER) {
+					return false;
+				}
+				return textMove(buffer, index + 1, end, true, message);
+			case ProtocolMessages.RESULT:
+				if (end - index < 3 || buffer.get(index) != ProtocolMessages.VALID
+						|| buffer.get(index + 1) != DELIMITER) {
+					return false;
+				}
+				message.setValidity(ProtocolMessages.VALID);
+				return textBoard(buffer, index + 2, end, message) == end;
+			case ProtocolMessages.MOVE:
+				return textMove(buffer, index, end, false, message);
+			case ProtocolMessages.END:
+				// Reason and winner are one character, the scores are kept as text
+				if (end - index < 6 || buffer.get(index) <= 0 || buffer.get(index + 2) <= 0
+						|| buffer.get(index + 1) != DELIMITER
+						|| buffer.get(index + 3) != DELIMITER) {
+					return false;
+				}
+				int endOfScoreBlack = indexOf(buffer, index + 4, end, DELIMITER);
+				if (endOfScoreBlack == -1
+						|| indexOf(buffer, endOfScoreBlack + 1, end, DELIMITER) != -1) {
+					return false;
+				}
+				message.setEnd((char) buffer.get(index), (char) buffer.get(index + 2),
+						text(buffer, index + 4, endOfScoreBlack),
+						text(buffer, endOfScoreBlack + 1, end));
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Read a whole board, the changes of a board or the runs of a board.
+	 *
+	 * @return the index after the board, or -1 if it is not a board
+	 */
+	private static int textBoard(ByteBuffer buffer, int index, int end, Message message) {
+		if (index < end && buffer.get(index) == ProtocolMessages.RUN_LENGTH) {
+			return textRuns(buffer, index + 1, end, message);
+		}
+		if (index < end && buffer.get(index) == ProtocolMessages.DELTA) {
+			message.startChanges();
+			index++;
+			while (index < end && buffer.get(index) != DELIMITER) {
+				char status = (char) buffer.get(index++);
+				int endOfLocation = index;
+				while (endOfLocation < end && isDigit(buffer.get(endOfLocation))) {
+					endOfLocation++;
+				}
+				int location = canonicalNumber(buffer, index, endOfLocation);
+				if (!isStatus(status) || location == -1) {
+					return -1;
+				}
+				message.addChange(status, location);
+				index = endOfLocation;
+			}
+			return index;
+		}
+		int endOfBoard = indexOf(buffer, index, end, DELIMITER);
+		if (endOfBoard == -1) {
+			endOfBoard = end;
+		}
+		if (endOfBoard == index) {
+			return -1;
+		}
+		message.startBoard(endOfBoard - index);
+		for (; index < endOfBoard; index++) {
+			char status = (char) buffer.get(index);
+			if (!isStatus(status)) {
+				return -1;
+			}
+			message.addToBoard(status);
+		}
+		return index;
+	}
+
+	/**
+	 * Read the runs of a board, which are kept as the whole board (see RunLength).
+	 *
+	 * @return the index after the runs, or -1 if they are not written as RunLength writes them
+	 */
+	private static int textRuns(ByteBuffer buffer, int index, int end, Message message) {
+		message.startRuns();
+		char previousStatus = 0;
+		while (index < end && buffer.get(index) != DELIMITER) {
+			char status = (char) buffer.get(index++);
+			int endOfLength = index;
+			while (endOfLength < end && isDigit(buffer.get(endOfLength))) {
+				endOfLength++;
+			}
+			int length = (endOfLength == index) ? 1 : canonicalNumber(buffer, index, endOfLength);
+			if (!isStatus(status) || status == previousStatus || (endOfLength > index && length < 2)
+					|| length > RunLength.MAX_LOCATIONS - message.getBoardLength()) {
+				return -1;
+			}
+			message.addRun(status, length);
+			previousStatus = status;
+			index = endOfLength;
+		}
+		return (previousStatus == 0) ? -1 : index;
+	}
+
+	/**
+	 * Read a move that ends the message.
+	 *
+	 * @param noMoveAllowed, whether "null" is a valid move, as in a turn message
+	 * @return false if it is not a move in the form that Message writes
+	 */
+	private static boolean textMove(ByteBuffer buffer, int index, int end, boolean noMoveAllowed,
+			Message message) {
+		if (end - index == 1 && buffer.get(index) == ProtocolMessages.PASS) {
+			message.setMove(Message.PASS);
+			return true;
+		}
+		if (noMoveAllowed && end - index == 4 && buffer.get(index) == 'n'
+				&& buffer.get(index + 1) == 'u' && buffer.get(index + 2) == 'l'
+				&& buffer.get(index + 3) == 'l') {
+			message.setMove(Message.NO_MOVE);
+			return true;
+		}
+		int location = canonicalNumber(buffer, index, end);
+		if (location == -1) {
+			return false;
+		}
+		message.setMove(location);
+		return true;
+	}
+
+	// ------------------ Frames --------------------------
+
+	/**
+	 * Read the payload of a frame, see FrameCodec.
+	 */
+	private static void decodePayload(ByteBuffer buffer, int start, int end, Message message)
+			throws IOException {
+		if (start == end) {
+			throw new IOException("A frame without an opcode was received.");
+		}
+		byte opcode = buffer.get(start);
+		if (opcode == FrameCodec.TEXT) {
+			decodeText(buffer, start + 1, end, message);
+			return;
+		}
+		Cursor cursor = new Cursor(buffer, start + 1, end);
+		message.start((char) opcode);
+		switch (opcode) {
+			case ProtocolMessages.GAME:
+				binaryBoard(cursor, message);
+				message.setColor((char) cursor.readByte());
+				break;
+			case ProtocolMessages.TURN:
+				binaryBoard(cursor, message);
+				binaryMove(cursor, message);
+				break;
+			case ProtocolMessages.MOVE:
+				binaryMove(cursor, message);
+				break;
+			case ProtocolMessages.RESULT:
+				byte validity = cursor.readByte();
+				if (validity == ProtocolMessages.VALID) {
+					message.setValidity(ProtocolMessages.VALID);
+					binaryBoard(cursor, message);
+				} else {
+					// Kept as text, like the explanation of an invalid move in a line
+					message.setRaw(ProtocolMessages.RESULT + ProtocolMessages.DELIMITER
+							+ (char) validity + ProtocolMessages.DELIMITER
+							+ text(buffer, cursor.index, end));
+					return;
+				}
+				break;
+			default:
+				throw new IOException("A frame with the unknown opcode " + opcode
+						+ " was received.");
+		}
+		if (cursor.index != end) {
+			throw new IOException("A frame was longer than its message.");
+		}
+	}
+
+	private static void binaryBoard(Cursor cursor, Message message) throws IOException {
+		byte tag = cursor.readByte();
+		if (tag == 0) {
+			int numberOfLocations = cursor.readVarint();
+			if (numberOfLocations > FrameCodec.MAX_LENGTH * 4) {
+				throw new IOException("A board in a frame is too large.");
+			}
+			message.startBoard(numberOfLocations);
+			int packed = 0;
+			for (int location = 0; location < numberOfLocations; location++) {
+				if (location % 4 == 0) {
+					packed = cursor.readByte();
+				}
+				message.addToBoard(statusOf((packed >> ((location % 4) * 2)) & 3));
+			}
+		} else if (tag == 1) {
+			int numberOfChanges = cursor.readVarint();
+			message.startChanges();
+			for (int change = 0; change < numberOfChanges; change++) {
+				int entry = cursor.readVarint();
+				message.addChange(statusOf(entry & 3), entry >>> 2);
+			}
+		} else if (tag == 2) {
+			int numberOfRuns = cursor.readVarint();
+			message.startRuns();
+			int previousCode = -1;
+			for (int run = 0; run < numberOfRuns; run++) {
+				int entry = cursor.readVarint();
+				int length = entry >>> 2;
+				if (length == 0 || (entry & 3) == previousCode
+						|| length > RunLength.MAX_LOCATIONS - message.getBoardLength()) {
+					throw new IOException("The runs of a board in a frame are not valid.");
+				}
+				message.addRun(statusOf(entry & 3), length);
+				previousCode = entry & 3;
+			}
+			if (numberOfRuns == 0) {
+				throw new IOException("The runs of a board in a frame are not valid.");
+			}
+		} else {
+			throw new IOException("A board in a frame has the unknown tag " + tag + ".");
+		}
+	}
+
+	private static void binaryMove(Cursor cursor, Message message) throws IOException {
+		int move = cursor.readVarint();
+		if (move == 0) {
+			message.setMove(Message.NO_MOVE);
+		} else if (move == 1) {
+			message.setMove(Message.PASS);
+		} else {
+			message.setMove(move - 2);
+		}
+	}
+
+	/**
+	 * Reads the fields of a payload. Only used within one call, so it does not outlive it.
+	 */
+	private static final class Cursor {
+		private ByteBuffer buffer;
+		private int index;
+		private int end;
+
+		private Cursor(ByteBuffer buffer, int index, int end) {
+			this.buffer = buffer;
+			this.index = index;
+			this.end = end;
+		}
+
+		private byte readByte() throws IOException {
+			if (index == end) {
+				throw new IOException("A frame ended within its message.");
+			}
+			return buffer.get(index++);
+		}
+
+		private int readVarint() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				byte b = readByte();
+				value |= (b & 0x7f) << shift;
+				if ((b & 0x80) == 0) {
+					if (value < 0) {
+						throw new IOException("A number in a frame is not valid.");
+					}
+					return value;
+				}
+			}
+			throw new IOException("A number in a frame is not valid.");
+		}
+	}
+
+	// ------------------ Helpers --------------------------
+
+	private static char statusOf(int code) throws IOException {
+		switch (code) {
+			case 0:
+				return ProtocolMessages.UNOCCUPIED;
+			case 1:
+				return ProtocolMessages.BLACK;
+			case 2:
+				return ProtocolMessages.WHITE;
+			default:
+				throw new IOException("A location in a frame has an unknown status.");
+		}
+	}
+
+	private static boolean isStatus(char status) {
+		return status == ProtocolMessages.UNOCCUPIED || status == ProtocolMessages.BLACK
+				|| status == ProtocolMessages.WHITE;
+	}
+
+	private static boolean isDigit(byte character) {
+		return character >= '0' && character <= '9';
+	}
+
+	/**
+	 * Read a number written the way Integer.toString writes it: digits without leading zeros.
+	 *
+	 * @return the number, or -1 if the bytes are not such a number or it is too large
+	 */
+	private static int canonicalNumber(ByteBuffer buffer, int start, int end) {
+		if (start == end || end - start > 9 || (buffer.get(start) == '0' && end - start > 1)) {
+			return -1;
+		}
+		int number = 0;
+		for (int index = start; index < end; index++) {
+			if (!isDigit(buffer.get(index))) {
+				return -1;
+			}
+			number = number * 10 + (buffer.get(index) - '0');
+		}
+		return number;
+	}
+
+	private static int indexOf(ByteBuffer buffer, int start, int end, byte b) {
+		for (int index = start; index < end; index++) {
+			if (buffer.get(index) == b) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	private static String text(ByteBuffer buffer, int start, int end) {
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + start, end - start,
+					StandardCharsets.UTF_8);
+		}
+		byte[] bytes = new byte[end - start];
+		for (int index = start; index < end; index++) {
+			bytes[index - start] = buffer.get(index);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -24,6 +24,42 @@ public class MessageGenerator implements GeneratorInterface {
 		return handshakeToServer;
 	}
 	
+	public String clientHandshakeMessage(String wantedVersion, String nameClient, 
+													char wantedColor, boolean heartbeat) {
+		String handshakeToServer = clientHandshakeMessage(wantedVersion, nameClient, wantedColor);
+		if (heartbeat) {
+			handshakeToServer = handshakeToServer + ProtocolMessages.DELIMITER 
+					+ ProtocolMessages.PING;
+		}
+		return handshakeToServer;
+	}
+	
+	public String clientHandshakeMessage(String wantedVersion, String nameClient, 
+									char wantedColor, boolean heartbeat, boolean frames) {
+		String handshakeToServer = clientHandshakeMessage(wantedVersion, nameClient, wantedColor, 
+				heartbeat);
+		if (frames) {
+			handshakeToServer = handshakeToServer + ProtocolMessages.DELIMITER 
+					+ ProtocolMessages.FRAMES;
+		}
+		return handshakeToServer;
+	}
+	
+	public String clientHandshakeMessage(String wantedVersion, String nameClient, 
+					char wantedColor, boolean heartbeat, boolean frames, boolean runLength) {
+		String handshakeToServer = clientHandshakeMessage(wantedVersion, nameClient, wantedColor, 
+				heartbeat, frames);
+		if (runLength) {
+			handshakeToServer = handshakeToServer + ProtocolMessages.DELIMITER 
+					+ ProtocolMessages.RUN_LENGTH;
+		}
+		return handshakeToServer;
+	}
+	
+	public String pongMessage() {
+		return Character.toString(ProtocolMessages.PONG);
+	}
+	
 	public String moveMessage(String move) {
 		
 		String moveMessage = ProtocolMessages.MOVE + ProtocolMessages.DELIMITER + move;
@@ -43,6 +79,10 @@ public class MessageGenerator implements GeneratorInterface {
 		return handshakeToClient;
 	}
 	
+	public String pingMessage() {
+		return Character.toString(ProtocolMessages.PING);
+	}
+	
 	public String startGameMessage(String board, char color) {
 		String startMessage = ProtocolMessages.GAME + ProtocolMessages.DELIMITER
 				+ board + ProtocolMessages.DELIMITER + color;
@@ -64,22 +104,45 @@ public class MessageGenerator implements GeneratorInterface {
 	}
 	
 	public String doTurnMessage(String board, String opponentsMove) {
-		String turnMessage = ProtocolMessages.TURN + ProtocolMessages.DELIMITER + board + 
-				ProtocolMessages.DELIMITER + opponentsMove;
-		return turnMessage;
+		return appendDoTurnMessage(new StringBuilder(), board, opponentsMove).toString();
 	}
 	
 	public String resultMessage(boolean valid, String msg) {
-		String resultMessage = "";
-		
+		return appendResultMessage(new StringBuilder(), valid, msg).toString();
+	}
+	
+	/**
+	 * Write a turn message to the end of a buffer. A server that keeps one buffer per game can
+	 * build its messages without creating intermediate strings.
+	 * 
+	 * @param message, the buffer to which the message is appended
+	 * @param board, a string representation of the board
+	 * @param opponentsMove, the move the opponent did last
+	 * @return the buffer
+	 */
+	public StringBuilder appendDoTurnMessage(StringBuilder message, CharSequence board, 
+			CharSequence opponentsMove) {
+		return message.append(ProtocolMessages.TURN).append(ProtocolMessages.DELIMITER)
+				.append(board).append(ProtocolMessages.DELIMITER).append(opponentsMove);
+	}
+	
+	/**
+	 * Write a result message to the end of a buffer.
+	 * 
+	 * @param message, the buffer to which the message is appended
+	 * @param valid, whether the move was valid
+	 * @param msg, the board after a valid move or an explanation for an invalid move
+	 * @return the buffer
+	 */
+	public StringBuilder appendResultMessage(StringBuilder message, boolean valid, 
+			CharSequence msg) {
+		message.append(ProtocolMessages.RESULT).append(ProtocolMessages.DELIMITER);
 		if (valid) {
-			resultMessage = ProtocolMessages.RESULT + ProtocolMessages.DELIMITER
-					+ ProtocolMessages.VALID + ProtocolMessages.DELIMITER + msg;
+			message.append(ProtocolMessages.VALID);
 		} else {
-			resultMessage = ProtocolMessages.RESULT + ProtocolMessages.DELIMITER
-					+ ProtocolMessages.INVALID + ProtocolMessages.DELIMITER + msg;
+			message.append(ProtocolMessages.INVALID);
 		}
-		return resultMessage;
+		return message.append(ProtocolMessages.DELIMITER).append(msg);
 	}
 	
 	public String endGameMessage(char reasonGameEnd, char winner, 
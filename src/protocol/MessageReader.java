@@ -0,0 +1,61 @@
+package protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the messages of a blocking connection into a reusable Message (see MessageDecoder).
+ * The received bytes are kept in one buffer, which only grows, so reading messages creates no
+ * objects; and a line followed by frames, as after a handshake, is read from the same buffer.
+ */
+
+public final class MessageReader {
+
+	private InputStream in;
+
+	/** The received bytes that are not read yet, in read mode. */
+	private ByteBuffer buffer = ByteBuffer.allocate(512);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param in, the stream of the connection, which does not need to be buffered
+	 */
+	public MessageReader(InputStream in) {
+		this.in = in;
+		buffer.limit(0);
+	}
+
+	/**
+	 * Read the next message, waiting until it has arrived.
+	 *
+	 * @param message, the message to read into
+	 * @param frames, whether the message is a frame instead of a line
+	 * @return false if the connection was closed before the message was complete
+	 * @throws IOException if the connection broke, or the message is not valid or too long
+	 */
+	public boolean read(Message message, boolean frames) throws IOException {
+		while (true) {
+			if (buffer.hasRemaining() && (frames ? MessageDecoder.decodeFrame(buffer, message)
+					: MessageDecoder.decodeLine(buffer, message))) {
+				return true;
+			}
+			buffer.compact();
+			if (!buffer.hasRemaining()) {
+				ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+			int numberOfBytes = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(),
+					buffer.remaining());
+			if (numberOfBytes == -1) {
+				buffer.flip();
+				return false;
+			}
+			buffer.position(buffer.position() + numberOfBytes);
+			buffer.flip();
+		}
+	}
+}
@@ -8,6 +8,10 @@ public class ProtocolMessages {
 	// Version of this protocol.
 	public static final String VERSION = "1.0";
 	
+	// Version in which turn and result messages can carry the changes of the board instead of
+	// the whole board (see BoardDelta). A client that asks for an other version gets whole boards.
+	public static final String DELTA_VERSION = "1.1";
+	
 	// Delimiter used to separate arguments sent over the network.
 	public static final String DELIMITER = ";";
 	
@@ -23,6 +27,17 @@ public class ProtocolMessages {
 	public static final char RESULT = 'R'; //From server, to indicate the result of the move
 	public static final char END = 'E'; //From server, to indicate end of game
 	public static final char QUIT = 'Q'; //From player to server, to indicate (s)he wants to quit.
+	public static final char PING = 'A'; 
+		//From server, to ask whether the client is still there. Only sent to clients that added
+		//it as last component of their handshake, which the server confirms in the same way.
+	public static final char PONG = 'L'; //From player, the immediate answer to a ping
+	public static final char FRAMES = '#'; 
+		//From client, as one of the last components of its handshake, to ask for binary frames
+		//after the handshake (see FrameCodec), which the server confirms in the same way.
+	public static final char RUN_LENGTH = '*'; 
+		//From client, as one of the last components of its handshake, to ask for large boards
+		//as runs (see RunLength), which the server confirms in the same way. Also the first
+		//character of such a board in a start game, turn or result message, e.g. '*U40BU320'.
 	
 	
 	//Constants for clean information transfer
@@ -37,6 +52,9 @@ public class ProtocolMessages {
 	public static final char PASS = 'P'; //used to indicate a pass move
 	public static final char VALID = 'V'; 
 		//From server, to indicate that a move is valid (always sent after 'R;')
+	public static final char DELTA = '+'; 
+		//From server, first character of the changes of the board in a turn or result message
+		//(only in DELTA_VERSION), followed by the changed locations, e.g. '+B12U13U14'
 	public static final char INVALID = 'I'; 
 		//From server, to indicate that a move is invalid (always sent after 'R;')
 	public static final char FINISHED = 'F'; 
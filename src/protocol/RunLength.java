@@ -0,0 +1,154 @@
+package protocol;
+
+import java.util.Arrays;
+
+/**
+ * A whole board written as runs of locations with the same occupation status, as sent instead
+ * of the whole board to a client that asked for ProtocolMessages.RUN_LENGTH in its handshake:
+ * ProtocolMessages.RUN_LENGTH, followed by one entry per run, which is the status and then the
+ * length of the run if it is more than one, e.g. '*U40BU319W' for a board of 361 locations
+ * with a black stone on 40 and a white stone on 360. Two runs in a row never have the same
+ * status, so every board has exactly one such form.
+ *
+ * The runs are only sent for boards of at least MIN_DIMENSION by MIN_DIMENSION, and only when
+ * they are shorter than the whole board: early in a game on a large board, when most locations
+ * are unoccupied.
+ */
+
+public final class RunLength {
+
+	/** The smallest board dimension for which boards are sent as runs. */
+	public static final int MIN_DIMENSION = 19;
+
+	/** The most locations a board that is read can have, 512 by 512. */
+	public static final int MAX_LOCATIONS = 512 * 512;
+
+	private RunLength() {
+	}
+
+	/**
+	 * @return whether the board of a message is written as runs
+	 */
+	public static boolean isRunLength(CharSequence board) {
+		return board.length() > 0 && board.charAt(0) == ProtocolMessages.RUN_LENGTH;
+	}
+
+	/**
+	 * @return whether a board of a number of locations is large enough to be sent as runs
+	 */
+	public static boolean isLarge(int numberOfLocations) {
+		return numberOfLocations >= MIN_DIMENSION * MIN_DIMENSION;
+	}
+
+	/**
+	 * Write a whole board as runs.
+	 *
+	 * @param board, the whole board, one character per location
+	 * @param text, the buffer to which the runs are appended
+	 * @return the buffer
+	 */
+	public static StringBuilder append(CharSequence board, StringBuilder text) {
+		text.append(ProtocolMessages.RUN_LENGTH);
+		int location = 0;
+		while (location < board.length()) {
+			char status = board.charAt(location);
+			int length = runLength(board, location);
+			text.append(status);
+			if (length > 1) {
+				text.append(length);
+			}
+			location += length;
+		}
+		return text;
+	}
+
+	/**
+	 * Write a whole board as runs, as append does, in ASCII and without creating objects.
+	 *
+	 * @param board, the whole board, one character per location
+	 * @param bytes, the buffer to which the runs are written
+	 */
+	static void write(CharSequence board, ByteBuilder bytes) {
+		bytes.write(ProtocolMessages.RUN_LENGTH);
+		int location = 0;
+		while (location < board.length()) {
+			int length = runLength(board, location);
+			bytes.write(board.charAt(location));
+			if (length > 1) {
+				bytes.writeNumber(length);
+			}
+			location += length;
+		}
+	}
+
+	/**
+	 * @return the number of locations from a location on that have the same status
+	 */
+	static int runLength(CharSequence board, int location) {
+		int end = location + 1;
+		while (end < board.length() && board.charAt(end) == board.charAt(location)) {
+			end++;
+		}
+		return end - location;
+	}
+
+	/**
+	 * Read the runs of a whole board.
+	 *
+	 * @param runs, the runs, starting with ProtocolMessages.RUN_LENGTH
+	 * @return the whole board, or null if the runs are not written as append writes them or
+	 *         the board has more than MAX_LOCATIONS locations
+	 */
+	public static char[] read(CharSequence runs) {
+		if (!isRunLength(runs) || runs.length() == 1) {
+			return null;
+		}
+		char[] board = new char[Math.min(runs.length() * 16, MAX_LOCATIONS)];
+		int numberOfLocations = 0;
+		char previousStatus = 0;
+		int index = 1;
+		while (index < runs.length()) {
+			char status = runs.charAt(index++);
+			int start = index;
+			while (index < runs.length() && isDigit(runs.charAt(index))) {
+				index++;
+			}
+			int length = (start == index) ? 1 : parseLength(runs, start, index);
+			if (!isStatus(status) || status == previousStatus || length == -1
+					|| length > MAX_LOCATIONS - numberOfLocations) {
+				return null;
+			}
+			if (numberOfLocations + length > board.length) {
+				board = Arrays.copyOf(board, Math.min(Math.max(board.length * 2,
+						numberOfLocations + length), MAX_LOCATIONS));
+			}
+			Arrays.fill(board, numberOfLocations, numberOfLocations + length, status);
+			numberOfLocations += length;
+			previousStatus = status;
+		}
+		return Arrays.copyOf(board, numberOfLocations);
+	}
+
+	/**
+	 * @return the length of a run written as Integer.toString writes it, at least 2, or -1
+	 */
+	private static int parseLength(CharSequence runs, int start, int end) {
+		if (end - start > 9 || runs.charAt(start) == '0') {
+			return -1;
+		}
+		int length = 0;
+		for (int index = start; index < end; index++) {
+			length = length * 10 + (runs.charAt(index) - '0');
+		}
+		return (length < 2) ? -1 : length;
+	}
+
+	static boolean isStatus(char status) {
+		return status == ProtocolMessages.UNOCCUPIED || status == ProtocolMessages.BLACK
+				|| status == ProtocolMessages.WHITE;
+	}
+
+	private static boolean isDigit(char character) {
+		return character >= '0' && character <= '9';
+	}
+}
@@ -0,0 +1,296 @@
+package ruleimplementations;
+
+import protocol.ProtocolMessages;
+
+/**
+ * A packed representation of a GO board.
+ *
+ * The board is stored as two bitsets, one for the black stones and one for the white stones.
+ * Each bitset is an array of longs in which intersection i (i = x + y * boardDimension, the same
+ * numbering as the string representation of the board) is bit i % 64 of word i / 64.
+ *
+ * Groups and liberties are found with a FloodFill that is made once for the board, so
+ * removing captured groups does not create new objects. They used to be found by shifting
+ * whole bitsets one location or row and masking the edges of the board, but then every step
+ * of a group's diameter costs a pass over all words, which is slow for long groups on large
+ * boards; the fill only costs time for the locations it finds. The bitsets still give the
+ * status of a location and the number of stones of a color with a few word operations.
+ *
+ * The Zobrist hash of the board (see ZobristHash) is updated with every stone that is placed or 
+ * removed, so it is always available without looking at the whole board.
+ *
+ * The flood fill makes a Bitboard cheap to reuse, but also means that a Bitboard should only
+ * be used by one thread at a time.
+ */
+
+public class Bitboard {
+
+	private static final int WORD_SIZE = 64;
+
+	private final int boardDimension;
+	private final int numberOfIntersections;
+	private final int numberOfWords;
+
+	// The stones on the board
+	private final long[] black;
+	private final long[] white;
+
+	// Zobrist keys for this board size and the hash of the current stones
+	private final ZobristHash zobristHash;
+	private long hash;
+
+	// Finds the groups on this board
+	private final FloodFill floodFill;
+
+	/**
+	 * Constructor, creates an empty board.
+	 *
+	 * @param boardDimension, the size (length / height) of the board
+	 */
+	public Bitboard(int boardDimension) {
+		this.boardDimension = boardDimension;
+		numberOfIntersections = boardDimension * boardDimension;
+		numberOfWords = (numberOfIntersections + WORD_SIZE - 1) / WORD_SIZE;
+
+		black = new long[numberOfWords];
+		white = new long[numberOfWords];
+		zobristHash = ZobristHash.forDimension(boardDimension);
+
+		floodFill = new FloodFill(boardDimension);
+	}
+
+	/**
+	 * Constructor, creates a board with the stones of the given string representation.
+	 *
+	 * @param board, a string representation of the board
+	 */
+	public Bitboard(String board) {
+		this((int) Math.sqrt(board.length()));
+		load(board);
+	}
+
+	public int getBoardDimension() {
+		return boardDimension;
+	}
+
+	/**
+	 * Get the Zobrist hash of the stones that are currently on the board.
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Replace the stones on this board by the stones of the given string representation.
+	 *
+	 * @param board, a string representation of a board of the same size as this board
+	 */
+	public void load(String board) {
+		clear(black);
+		clear(white);
+		hash = 0L;
+		for (int location = 0; location < numberOfIntersections; location++) {
+			char color = board.charAt(location);
+			if (color == ProtocolMessages.BLACK) {
+				setBit(black, location);
+			} else if (color == ProtocolMessages.WHITE) {
+				setBit(white, location);
+			}
+			hash ^= zobristHash.key(location, color);
+		}
+	}
+
+	/**
+	 * Replace the stones on this board by the stones of another board of the same size.
+	 *
+	 * @param other, the board to copy
+	 */
+	public void copyFrom(Bitboard other) {
+		System.arraycopy(other.black, 0, black, 0, numberOfWords);
+		System.arraycopy(other.white, 0, white, 0, numberOfWords);
+		hash = other.hash;
+	}
+
+	/**
+	 * Get the occupation status of a location.
+	 *
+	 * @param location, an int indicating an intersection on the board
+	 * @return ProtocolMessages.BLACK, ProtocolMessages.WHITE or ProtocolMessages.UNOCCUPIED
+	 */
+	public char get(int location) {
+		if (isSet(black, location)) {
+			return ProtocolMessages.BLACK;
+		} else if (isSet(white, location)) {
+			return ProtocolMessages.WHITE;
+		}
+		return ProtocolMessages.UNOCCUPIED;
+	}
+
+	/**
+	 * Place a stone of the given color on a location, or empty the location when the color
+	 * is ProtocolMessages.UNOCCUPIED.
+	 *
+	 * @param location, an int indicating an intersection on the board
+	 * @param color, the new occupation status of the location
+	 */
+	public void set(int location, char color) {
+		hash ^= zobristHash.key(location, get(location)) ^ zobristHash.key(location, color);
+		clearBit(black, location);
+		clearBit(white, location);
+		if (color == ProtocolMessages.BLACK) {
+			setBit(black, location);
+		} else if (color == ProtocolMessages.WHITE) {
+			setBit(white, location);
+		}
+	}
+
+	/**
+	 * Count the stones of one color.
+	 *
+	 * @param color, ProtocolMessages.BLACK or ProtocolMessages.WHITE
+	 * @return the number of stones of that color on the board
+	 */
+	public int countStones(char color) {
+		long[] stones = stonesOf(color);
+		int count = 0;
+		for (int word = 0; word < numberOfWords; word++) {
+			count += Long.bitCount(stones[word]);
+		}
+		return count;
+	}
+
+	/**
+	 * Remove all groups of one color that do not have a liberty.
+	 *
+	 * @param color, the color of which captured groups are removed
+	 * @return the number of stones that were removed
+	 */
+	public int removeCapturedGroups(char color) {
+		long[] stones = stonesOf(color);
+		int removedStones = 0;
+
+		floodFill.beginScan();
+		for (int word = 0; word < numberOfWords; word++) {
+			long bits = stones[word];
+			while (bits != 0) {
+				int location = word * WORD_SIZE + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				if (floodFill.isVisited(location)) {
+					continue;
+				}
+				floodFill.fill(this, location);
+				if (!floodFill.borders(ProtocolMessages.UNOCCUPIED)) {
+					removedStones += removeFilledGroup(color, null, 0);
+				}
+			}
+		}
+		return removedStones;
+	}
+
+	/**
+	 * Remove the group of a stone if it does not have a liberty.
+	 *
+	 * @param location, a location with a stone
+	 * @param removed, array to which the locations of the removed stones are written
+	 * @param offset, the index in removed at which the first removed stone is written
+	 * @return the number of stones that were removed (0 if the group has a liberty)
+	 */
+	public int removeGroupIfCaptured(int location, int[] removed, int offset) {
+		floodFill.beginScan();
+		floodFill.fill(this, location);
+		if (floodFill.borders(ProtocolMessages.UNOCCUPIED)) {
+			return 0;
+		}
+		return removeFilledGroup(get(location), removed, offset);
+	}
+
+	/**
+	 * Check whether this board contains the same stones as the given string representation,
+	 * without creating a new string.
+	 *
+	 * @param board, a string representation of a board
+	 * @return true if every intersection has the same occupation status
+	 */
+	public boolean matches(String board) {
+		if (board == null || board.length() != numberOfIntersections) {
+			return false;
+		}
+		for (int location = 0; location < numberOfIntersections; location++) {
+			if (board.charAt(location) != get(location)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Write the string representation of this board to the end of a buffer, without creating
+	 * a new string.
+	 *
+	 * @param text, the buffer to which the board is appended
+	 */
+	public void appendTo(StringBuilder text) {
+		for (int location = 0; location < numberOfIntersections; location++) {
+			text.append(get(location));
+		}
+	}
+
+	/**
+	 * Create the string representation of this board.
+	 */
+	@Override
+	public String toString() {
+		char[] charArray = new char[numberOfIntersections];
+		for (int location = 0; location < numberOfIntersections; location++) {
+			charArray[location] = get(location);
+		}
+		return new String(charArray);
+	}
+
+	/**
+	 * Remove the stones of the group that was last filled by the flood fill.
+	 *
+	 * @param color, the color of the group
+	 * @param removed, array to which the locations of the removed stones are written, or null
+	 * @param offset, the index in removed at which the first removed stone is written
+	 * @return the number of stones that were removed
+	 */
+	private int removeFilledGroup(char color, int[] removed, int offset) {
+		long[] stones = stonesOf(color);
+		int numberRemoved = floodFill.getNumberOfLocations();
+		for (int index = 0; index < numberRemoved; index++) {
+			int stone = floodFill.getLocation(index);
+			clearBit(stones, stone);
+			hash ^= zobristHash.key(stone, color);
+			if (removed != null) {
+				removed[offset + index] = stone;
+			}
+		}
+		return numberRemoved;
+	}
+
+	private long[] stonesOf(char color) {
+		if (color == ProtocolMessages.BLACK) {
+			return black;
+		}
+		return white;
+	}
+
+	private void clear(long[] set) {
+		for (int word = 0; word < numberOfWords; word++) {
+			set[word] = 0;
+		}
+	}
+
+	private static boolean isSet(long[] set, int location) {
+		return (set[location / WORD_SIZE] & (1L << (location % WORD_SIZE))) != 0;
+	}
+
+	private static void setBit(long[] set, int location) {
+		set[location / WORD_SIZE] |= 1L << (location % WORD_SIZE);
+	}
+
+	private static void clearBit(long[] set, int location) {
+		set[location / WORD_SIZE] &= ~(1L << (location % WORD_SIZE));
+	}
+}
@@ -0,0 +1,130 @@
+package ruleimplementations;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The neighbors of every location on a board of one size.
+ *
+ * The neighbors (left, right, above, below, as far as they are on the board) of location i are
+ * stored at index 4 * i up to 4 * i + getDegree(i) of one flat array, so going through the
+ * neighbors of a location is a few array reads instead of calculating the x and y coordinates
+ * and checking the edges. Locations on the edge of the board have three neighbors, corners two.
+ *
+ * The tables only depend on the board size and are shared by all games of that size.
+ */
+
+public final class BoardTopology {
+
+	private static final int MAX_DEGREE = 4;
+	private static final ConcurrentMap<Integer, BoardTopology> TOPOLOGY_PER_DIMENSION =
+			new ConcurrentHashMap<Integer, BoardTopology>();
+
+	private final int boardDimension;
+	private final int numberOfIntersections;
+
+	private final int[] neighbors;
+	private final int[] degree;
+
+	private BoardTopology(int boardDimension) {
+		this.boardDimension = boardDimension;
+		numberOfIntersections = boardDimension * boardDimension;
+		neighbors = new int[numberOfIntersections * MAX_DEGREE];
+		degree = new int[numberOfIntersections];
+
+		for (int location = 0; location < numberOfIntersections; location++) {
+			int x = location % boardDimension;
+			if (x > 0) {
+				addNeighbor(location, location - 1);
+			}
+			if (x < boardDimension - 1) {
+				addNeighbor(location, location + 1);
+			}
+			if (location >= boardDimension) {
+				addNeighbor(location, location - boardDimension);
+			}
+			if (location + boardDimension < numberOfIntersections) {
+				addNeighbor(location, location + boardDimension);
+			}
+		}
+	}
+
+	/**
+	 * Get the topology of boards of the given size.
+	 *
+	 * @param boardDimension, the size (length / height) of the board
+	 */
+	public static BoardTopology forDimension(int boardDimension) {
+		return TOPOLOGY_PER_DIMENSION.computeIfAbsent(boardDimension, BoardTopology::new);
+	}
+
+	public int getBoardDimension() {
+		return boardDimension;
+	}
+
+	public int getNumberOfIntersections() {
+		return numberOfIntersections;
+	}
+
+	/**
+	 * Get the number of neighbors of a location.
+	 *
+	 * @param location, an int indicating an intersection on the board
+	 * @return 4 in the middle of the board, 3 on an edge, 2 in a corner
+	 */
+	public int getDegree(int location) {
+		return degree[location];
+	}
+
+	/**
+	 * Get a neighbor of a location.
+	 *
+	 * @param location, an int indicating an intersection on the board
+	 * @param index, a number from 0 to getDegree(location) - 1
+	 * @return the location of the neighbor
+	 */
+	public int getNeighbor(int location, int index) {
+		return neighbors[location * MAX_DEGREE + index];
+	}
+
+	/**
+	 * Check whether a location lies on the board.
+	 */
+	public boolean isOnBoard(int location) {
+		return location >= 0 && location < numberOfIntersections;
+	}
+
+	/**
+	 * Check whether a location lies on an edge of the board (corners included).
+	 */
+	public boolean isEdge(int location) {
+		return degree[location] < MAX_DEGREE;
+	}
+
+	/**
+	 * Check whether a location is one of the corners of the board.
+	 */
+	public boolean isCorner(int location) {
+		return degree[location] <= 2;
+	}
+
+	/**
+	 * Check whether two locations on the board are neighbors.
+	 *
+	 * @return true if the second location is directly left, right, above or below the first
+	 */
+	public boolean isNeighbor(int location, int otherLocation) {
+		int first = location * MAX_DEGREE;
+		for (int index = first; index < first + degree[location]; index++) {
+			if (neighbors[index] == otherLocation) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addNeighbor(int location, int neighbor) {
+		neighbors[location * MAX_DEGREE + degree[location]] = neighbor;
+		degree[location]++;
+	}
+}
@@ -1,183 +1,86 @@
 package ruleimplementations;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
 import protocol.ProtocolMessages;
 
 /**
  * Check whether stones need to be removed in a given GO board.
  * 
- * This procedure consists of four subsequent methods
- * 1. determineNewBoard. This will loop through all locations on the board
- * and will call (first for the not-current-player's color, then the current-player's-color):
- * 2. checkStonesOfOneColor. Goes through the board from top left to bottom right and identifies
- * stones of the currently-checked-color. Once such a stone is found, it calls:
- * 3. checkAllNeighbors. Adds the current location to the 'surroundedStones' group and gets all 
- * neighboring locations of the identified stone. For those location (if not checked already) it 
- * will call:
- * 4. checkColor. Checks the occupation status of a location to see if it is of the currently being 
- * looked-for color. If so, it is added to the surroundedStones' group and the neighbors of this 
- * location will be checked via a call to method number 3. If it is unoccupied, the boolean variable
- * 'surrounded' for this group is set to false. If it is of the opposing color, nothing happens.
+ * First the stones of the not-current-player's color are checked, then the stones of the 
+ * current player's color (capturing of a group goes before suicide). For each color, every
+ * group (connected stones of that color) without a liberty (a neighboring unoccupied location)
+ * is removed from the board.
+ * 
+ * The work is done on a Bitboard, see that class for how groups and liberties are found. The 
+ * String method is done by a RuleEngine, which keeps no state, so it can be called from any 
+ * thread. The other methods work on a given board.
  * 
- * Once a recursive call gets back to method number 2 with 'surrounded = true', all locations in
- * this group are set to unoccupied and the next location is checked. Once all locations on the
- * board are checked in method number 2, the procedure is repeated from starting from method 1, but
- * this time for the opposite color.
+ * When the placed stone is known, only the chains next to it need to be checked (see 
+ * CaptureResolver, which Position uses for the moves of a game). The removed stones are 
+ * reported, so that a caller can apply the changes instead of the new board.
  */
 
 public class BoardUpdater {
 	
-	private boolean surrounded;
-	private char opponentsColor = 'x';
-	private int boardDimension;
-	private String board;
-	
-	private ScoreCalculator scoreCalculator = new ScoreCalculator();
-	private BoardState boardState = new BoardState(scoreCalculator);
-	
-	//variable to keep track of places checked per group (cleared at end of group)
-	private List<Integer> checkedPlaces;
-	//variable to keep track of stones that are part of the currently checked group 
-	//(cleared at end of group)
-	private List<Integer> surroundedStones;
-	//variable to keep track of the stones of the currently checked color that have been checked 
-	//(cleared at the end of looking through this color)
-	private List<Integer> checkedStonesThisColor;
+	private final RuleEngine ruleEngine = new RuleEngine();
+	private CaptureResolver captureResolver = new CaptureResolver();
 	
 	/**
 	 * Determine which stones are captured and should be removed.
 	 * First check the not-current-player's color for captured stones,
 	 * as capturing of a group goes before suicide.
+	 * 
+	 * @param oldBoard, a string representation of the board after placing the stone
+	 * @param currentlyPlayersColor, the color of the player that placed the last stone
+	 * @return a string representation of the board after removing all captured stones
 	 */
 	
 	public String determineNewBoard(String oldBoard, char currentlyPlayersColor) {
-		board = oldBoard;
-		
-		boardDimension = (int) Math.sqrt(board.length());
-		
-		if (currentlyPlayersColor == ProtocolMessages.BLACK) {
-			opponentsColor = ProtocolMessages.WHITE;
-		} else {
-			opponentsColor = ProtocolMessages.BLACK;
-		}
-		
-		//check the opponent's stones for captured groups
-		checkedPlaces = new ArrayList<Integer>();
-		surroundedStones = new ArrayList<Integer>();
-		checkedStonesThisColor = new ArrayList<Integer>();
-		checkStonesOfOneColor(opponentsColor);
-		
-		//check current player's stones for captured groups (suicide is allowed)
-		checkedPlaces = new ArrayList<Integer>();
-		surroundedStones = new ArrayList<Integer>();
-		checkedStonesThisColor = new ArrayList<Integer>();
-		if (opponentsColor == ProtocolMessages.WHITE) {
-			checkStonesOfOneColor(ProtocolMessages.BLACK);
-		} else {
-			checkStonesOfOneColor(ProtocolMessages.WHITE);
-		}
-		
-		return board;
-		
+		return ruleEngine.removeCapturedStones(oldBoard, currentlyPlayersColor);
 	}
 	
 	/**
-	 * Check the stones of one color for captured groups.
-	 * 
-	 * If a stone of that color is found, surrounded is set to true and the neighboring locations
-	 * are checked for being surrounded or not. If after checking all the neighbors 'surrounded' is 
-	 * still true, the stones of the found captured group are changed to unoccupied. 
+	 * Remove all captured stones from a board, first those of the not-current-player's color,
+	 * then those of the current player (suicide is allowed).
 	 * 
-	 * @param currentlyCheckedColor
+	 * @param board, the board after placing the stone, is updated in place
+	 * @param currentlyPlayersColor, the color of the player that placed the last stone
 	 */
-	public void checkStonesOfOneColor(char currentlyCheckedColor) {
-		
-		for (int x = 0; x < boardDimension; x++) {
-			for (int y = 0; y < boardDimension; y++) {
-				int numberInStringRepresentation = x  + y * boardDimension;
-				
-				//if this location has been already seen as part of another group: go to next y
-				if (checkedStonesThisColor.contains(numberInStringRepresentation)) {
-					continue;
-				}
-				
-				//If there is a stone of the current color in this location, set surrounded to 
-				//true and check all neighbors
-				if (board.charAt(numberInStringRepresentation) == currentlyCheckedColor) {
-					surrounded = true;
-					surroundedStones.clear();
-					checkedPlaces.clear();
-					
-					checkAllNeighbors(numberInStringRepresentation, currentlyCheckedColor);
-				}
-				
-				//if surrounded is true at this point, the current group is surrounded
-				//and each of its stones should be removed.
-				if (surrounded == true) {
-					for (int location : surroundedStones) {
-						board = board.substring(0, location) + ProtocolMessages.UNOCCUPIED
-								 + board.substring(location + 1);
-					}
-				}
-			}
+	public void determineNewBoard(Bitboard board, char currentlyPlayersColor) {
+		char opponentsColor;
+		char ownColor;
+		if (currentlyPlayersColor == ProtocolMessages.BLACK) {
+			opponentsColor = ProtocolMessages.WHITE;
+			ownColor = ProtocolMessages.BLACK;
+		} else {
+			opponentsColor = ProtocolMessages.BLACK;
+			ownColor = ProtocolMessages.WHITE;
 		}
+		
+		board.removeCapturedGroups(opponentsColor);
+		board.removeCapturedGroups(ownColor);
 	}
 	
 	/**
-	 * Get a stone's direct neighbors and check the color of all neighbors.
+	 * Place a stone and remove the stones that are captured by it. Only the chains next to 
+	 * the stone are checked.
 	 * 
-	 * @param numberInStringRepresentation
+	 * @param board, the board before placing the stone, is updated in place
+	 * @param location, an unoccupied location on the board
+	 * @param currentlyPlayersColor, the color of the player that places the stone
+	 * @return the number of removed stones, see getRemovedStone for their locations
 	 */
-	public void checkAllNeighbors(int numberInStringRepresentation, char currentlyCheckedColor) {
-		
-		surroundedStones.add(numberInStringRepresentation);
-		checkedStonesThisColor.add(numberInStringRepresentation);
-		
-		int locationToTheLeft = numberInStringRepresentation - 1;
-		int locationToTheRight = numberInStringRepresentation + 1;
-		int locationAbove = numberInStringRepresentation - boardDimension;
-		int locationBelow = numberInStringRepresentation + boardDimension;
-		List<Integer> possibleDirectNeighbors = Arrays.asList(locationToTheLeft, locationToTheRight,
-															locationAbove, locationBelow);
-		List<Integer> locationsToCheck = new ArrayList<Integer>();
-		
-		for (int neighbor : possibleDirectNeighbors) {
-			boolean neighborOnBoard = boardState.checkNextLocationBoard(neighbor, 
-													numberInStringRepresentation, boardDimension);
-			if (neighborOnBoard) {
-				locationsToCheck.add(neighbor);
-			}
-		}
-		
-		for (int location : locationsToCheck) {
-			if (!checkedPlaces.contains(location)) {
-				checkColor(location, currentlyCheckedColor);
-			}
-		}
+	public int determineNewBoard(Bitboard board, int location, char currentlyPlayersColor) {
+		return captureResolver.placeStone(board, location, currentlyPlayersColor);
 	}
 	
 	/**
-	 * Check the occupation status of a location (unoccupied, black or white).
+	 * Get a stone that was removed by the last stone placed with 
+	 * determineNewBoard(Bitboard, int, char).
 	 * 
-	 * If the stone is
-	 * - of the currently checked color: add to group, check all neighboring locations
-	 * - of the opponent's color: do nothing (next location will be called in 'checkAllNeighbors()')
-	 * - unoccupied: set surrounded to false (next location will be called in 'checkAllNeighbors()')
-	 * 
-	 * @param toBeCheckedLocation, the location whose occupation status is checked
-	 * @param currentlyCheckedColor, the color of which captured groups are being sought
+	 * @param index, a number from 0 to the number of removed stones - 1
+	 * @return the location of the removed stone
 	 */
-	public void checkColor(int toBeCheckedLocation, char currentlyCheckedColor) {
-		checkedPlaces.add(toBeCheckedLocation);
-		
-		if (board.charAt(toBeCheckedLocation) == currentlyCheckedColor) {
-			surroundedStones.add(toBeCheckedLocation);
-			checkAllNeighbors(toBeCheckedLocation, currentlyCheckedColor);
-		} else if (board.charAt(toBeCheckedLocation) == ProtocolMessages.UNOCCUPIED) {
-			surrounded = false;
-		} 
+	public int getRemovedStone(int index) {
+		return captureResolver.getRemovedStone(index);
 	}
 }
@@ -0,0 +1,79 @@
+package ruleimplementations;
+
+import protocol.ProtocolMessages;
+
+/**
+ * Places a stone on a board and removes the stones that are captured by it.
+ * 
+ * Only the chains that can be captured by the move are checked: the (at most four) chains of 
+ * the opponent next to the placed stone and, after those are removed, the chain of the placed 
+ * stone itself (suicide). The removed stones are remembered, so that a caller can update its 
+ * own copy of the board (or the GUI) with only the changes.
+ * 
+ * For every board that is reached by playing according to the rules, the result is the same 
+ * as checking all chains with BoardUpdater.determineNewBoard(Bitboard, char).
+ */
+
+public class CaptureResolver {
+	
+	// The neighbors on boards of the size of the last board
+	private BoardTopology topology;
+	
+	// The removed stones of the last move
+	private int[] removedStones = new int[0];
+	private int numberOfRemovedStones;
+	
+	/**
+	 * Place a stone and remove the captured chains, first those of the opponent, then the
+	 * chain of the stone itself.
+	 * 
+	 * @param board, the board before the move, is updated in place
+	 * @param location, an unoccupied location on the board
+	 * @param color, the color of the player placing the stone
+	 * @return the number of stones that were removed
+	 */
+	public int placeStone(Bitboard board, int location, char color) {
+		int boardDimension = board.getBoardDimension();
+		if (topology == null || topology.getBoardDimension() != boardDimension) {
+			topology = BoardTopology.forDimension(boardDimension);
+			removedStones = new int[boardDimension * boardDimension];
+		}
+		numberOfRemovedStones = 0;
+		
+		board.set(location, color);
+		
+		int degree = topology.getDegree(location);
+		for (int n = 0; n < degree; n++) {
+			captureOpponent(board, topology.getNeighbor(location, n), color);
+		}
+		
+		numberOfRemovedStones += board.removeGroupIfCaptured(location, removedStones, 
+																	numberOfRemovedStones);
+		return numberOfRemovedStones;
+	}
+	
+	/**
+	 * Get the number of stones removed by the last move.
+	 */
+	public int getNumberOfRemovedStones() {
+		return numberOfRemovedStones;
+	}
+	
+	/**
+	 * Get one of the stones removed by the last move.
+	 * 
+	 * @param index, a number from 0 to getNumberOfRemovedStones() - 1
+	 * @return the location of the removed stone
+	 */
+	public int getRemovedStone(int index) {
+		return removedStones[index];
+	}
+	
+	private void captureOpponent(Bitboard board, int neighbor, char color) {
+		char neighborsColor = board.get(neighbor);
+		if (neighborsColor != color && neighborsColor != ProtocolMessages.UNOCCUPIED) {
+			numberOfRemovedStones += board.removeGroupIfCaptured(neighbor, removedStones, 
+																	numberOfRemovedStones);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package ruleimplementations;
+
+import protocol.ProtocolMessages;
+
+/**
+ * Finds connected areas of the same occupation status on a board: groups of stones of one
+ * color, or empty areas. Used for finding captured groups and for finding the empty areas that
+ * count as score.
+ *
+ * The fill does not use recursion. Locations that still need their neighbors checked are kept
+ * in a preallocated array, which at the end of a fill holds all locations of the area. Visited
+ * locations are marked with the number of the current scan instead of being cleared, so that
+ * starting a new scan costs nothing. A FloodFill is made once per board size and can then be
+ * used for any number of fills without creating new objects.
+ *
+ * All fills between two calls to beginScan share their visited marks, so that a scan through
+ * the whole board fills every area only once.
+ */
+
+public class FloodFill {
+
+	private final int boardDimension;
+	private final int numberOfIntersections;
+	private final BoardTopology topology;
+
+	// The locations of the current area, in the order in which they were found
+	private final int[] locations;
+	private int numberOfLocations;
+
+	// The scan in which each location was last visited, and the number of the current scan
+	private final int[] visitedInScan;
+	private int scan;
+
+	// What was found next to the current area
+	private boolean bordersBlack;
+	private boolean bordersWhite;
+	private boolean bordersUnoccupied;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param boardDimension, the size (length / height) of the boards that will be filled
+	 */
+	public FloodFill(int boardDimension) {
+		this.boardDimension = boardDimension;
+		numberOfIntersections = boardDimension * boardDimension;
+		topology = BoardTopology.forDimension(boardDimension);
+		locations = new int[numberOfIntersections];
+		visitedInScan = new int[numberOfIntersections];
+		scan = 1;
+	}
+
+	public int getBoardDimension() {
+		return boardDimension;
+	}
+
+	/**
+	 * Start a new scan: all locations become unvisited.
+	 */
+	public void beginScan() {
+		scan++;
+		if (scan == Integer.MAX_VALUE) {
+			for (int location = 0; location < numberOfIntersections; location++) {
+				visitedInScan[location] = 0;
+			}
+			scan = 1;
+		}
+	}
+
+	/**
+	 * Check whether a location is part of an area that was filled in the current scan.
+	 */
+	public boolean isVisited(int location) {
+		return visitedInScan[location] == scan;
+	}
+
+	/**
+	 * Find the area of connected locations with the same occupation status as the start
+	 * location. The locations of the area are marked as visited for the current scan.
+	 *
+	 * @param board, the board to fill
+	 * @param start, a location that was not yet visited in the current scan
+	 * @return the number of locations in the area
+	 */
+	public int fill(Bitboard board, int start) {
+		char color = board.get(start);
+		bordersBlack = false;
+		bordersWhite = false;
+		bordersUnoccupied = false;
+
+		numberOfLocations = 0;
+		visit(board, start, color);
+
+		// every location in the array up to next has had its neighbors checked
+		int next = 0;
+		while (next < numberOfLocations) {
+			int location = locations[next];
+			next++;
+
+			int degree = topology.getDegree(location);
+			for (int n = 0; n < degree; n++) {
+				visit(board, topology.getNeighbor(location, n), color);
+			}
+		}
+		return numberOfLocations;
+	}
+
+	/**
+	 * Get the number of locations in the last filled area.
+	 */
+	public int getNumberOfLocations() {
+		return numberOfLocations;
+	}
+
+	/**
+	 * Get a location of the last filled area.
+	 *
+	 * @param index, a number from 0 to getNumberOfLocations() - 1
+	 */
+	public int getLocation(int index) {
+		return locations[index];
+	}
+
+	/**
+	 * Check whether the last filled area is next to a location with the given status.
+	 *
+	 * @param color, ProtocolMessages.BLACK, .WHITE or .UNOCCUPIED
+	 * @return true if a neighbor of the area has that status (a group of stones that borders
+	 * 		ProtocolMessages.UNOCCUPIED has a liberty)
+	 */
+	public boolean borders(char color) {
+		if (color == ProtocolMessages.BLACK) {
+			return bordersBlack;
+		} else if (color == ProtocolMessages.WHITE) {
+			return bordersWhite;
+		}
+		return bordersUnoccupied;
+	}
+
+	/**
+	 * Add a location to the area if it has the color of the area, otherwise remember what
+	 * borders the area.
+	 */
+	private void visit(Bitboard board, int location, char color) {
+		if (visitedInScan[location] == scan) {
+			return;
+		}
+		char locationsColor = board.get(location);
+		if (locationsColor == color) {
+			visitedInScan[location] = scan;
+			locations[numberOfLocations] = location;
+			numberOfLocations++;
+		} else if (locationsColor == ProtocolMessages.BLACK) {
+			bordersBlack = true;
+		} else if (locationsColor == ProtocolMessages.WHITE) {
+			bordersWhite = true;
+		} else {
+			bordersUnoccupied = true;
+		}
+	}
+}
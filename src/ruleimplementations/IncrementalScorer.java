@@ -0,0 +1,273 @@
+package ruleimplementations;
+
+import protocol.ProtocolMessages;
+
+/**
+ * Keeps the scores of a board up to date while stones are placed, so that the scores can be
+ * asked for without looking at the whole board. The scores are the same as those of
+ * ScoreCalculator.
+ *
+ * The number of stones of each color is counted as stones are placed and captured. Every empty
+ * area is labeled with one of its locations, and the size of the area and the player that
+ * surrounds it are stored under that label. Placing a stone only changes the borders of the
+ * area it is placed in and of the areas next to the captured stones, so only those areas are
+ * filled again; the rest of the board keeps its labels.
+ */
+
+public class IncrementalScorer {
+
+	private static final double KOMI = 0.5;
+
+	// The label of a location with a stone
+	private static final int NO_AREA = -1;
+
+	private final int boardDimension;
+	private final int numberOfIntersections;
+	private final BoardTopology topology;
+
+	private final Bitboard board;
+	private final CaptureResolver captureResolver = new CaptureResolver();
+	private final FloodFill floodFill;
+
+	// The label of the area of every empty location, and the size and owner of every label
+	private final int[] areaOf;
+	private final int[] areaSize;
+	private final char[] areaOwner;
+
+	// The stones and the surrounded empty locations of each player
+	private int stonesBlack;
+	private int stonesWhite;
+	private int areaBlack;
+	private int areaWhite;
+
+	/**
+	 * Constructor, creates an empty board.
+	 *
+	 * @param boardDimension, the size (length / height) of the board
+	 */
+	public IncrementalScorer(int boardDimension) {
+		this.boardDimension = boardDimension;
+		numberOfIntersections = boardDimension * boardDimension;
+		topology = BoardTopology.forDimension(boardDimension);
+		board = new Bitboard(boardDimension);
+		floodFill = new FloodFill(boardDimension);
+		areaOf = new int[numberOfIntersections];
+		areaSize = new int[numberOfIntersections];
+		areaOwner = new char[numberOfIntersections];
+		for (int location = 0; location < numberOfIntersections; location++) {
+			areaOf[location] = NO_AREA;
+		}
+	}
+
+	/**
+	 * Constructor, creates a board with the stones of the given string representation.
+	 *
+	 * @param board, a string representation of the board
+	 */
+	public IncrementalScorer(String board) {
+		this((int) Math.sqrt(board.length()));
+		load(board);
+	}
+
+	public int getBoardDimension() {
+		return boardDimension;
+	}
+
+	public double getScoreBlack() {
+		return stonesBlack + areaBlack - KOMI;
+	}
+
+	public double getScoreWhite() {
+		return stonesWhite + areaWhite;
+	}
+
+	/**
+	 * Replace the board by the given string representation and score it from scratch.
+	 *
+	 * @param theBoard, a string representation of a board of the same size
+	 */
+	public void load(String theBoard) {
+		board.load(theBoard);
+		stonesBlack = board.countStones(ProtocolMessages.BLACK);
+		stonesWhite = board.countStones(ProtocolMessages.WHITE);
+		areaBlack = 0;
+		areaWhite = 0;
+
+		floodFill.beginScan();
+		for (int location = 0; location < numberOfIntersections; location++) {
+			if (board.get(location) != ProtocolMessages.UNOCCUPIED) {
+				areaOf[location] = NO_AREA;
+			} else if (!floodFill.isVisited(location)) {
+				labelArea(location);
+			}
+		}
+	}
+
+	/**
+	 * Make this scorer a copy of another scorer of the same board size.
+	 *
+	 * @param other, the scorer to copy
+	 */
+	public void copyFrom(IncrementalScorer other) {
+		board.copyFrom(other.board);
+		System.arraycopy(other.areaOf, 0, areaOf, 0, numberOfIntersections);
+		System.arraycopy(other.areaSize, 0, areaSize, 0, numberOfIntersections);
+		System.arraycopy(other.areaOwner, 0, areaOwner, 0, numberOfIntersections);
+		stonesBlack = other.stonesBlack;
+		stonesWhite = other.stonesWhite;
+		areaBlack = other.areaBlack;
+		areaWhite = other.areaWhite;
+	}
+
+	/**
+	 * Place a stone, remove the stones captured by it and update the scores.
+	 *
+	 * @param location, an unoccupied location on the board
+	 * @param color, the color of the player placing the stone
+	 * @return the number of stones that were removed
+	 */
+	public int placeStone(int location, char color) {
+		int areaOfLocation = areaOf[location];
+		areaOf[location] = NO_AREA;
+
+		int numberRemoved = captureResolver.placeStone(board, location, color);
+
+		// Without captures, the stone only splits (or fills) the area it was placed in
+		forgetArea(areaOfLocation);
+		for (int index = 0; index < numberRemoved; index++) {
+			int stone = captureResolver.getRemovedStone(index);
+			forgetNeighboringAreas(stone);
+		}
+
+		addStones(color, 1);
+		if (numberRemoved > 0) {
+			if (board.get(location) == ProtocolMessages.UNOCCUPIED) {
+				// suicide, which only happens when no stones of the opponent were captured
+				addStones(color, -numberRemoved);
+			} else {
+				addStones(opponentOf(color), -numberRemoved);
+			}
+		}
+
+		// Every changed area contains an empty neighbor of the stone or a removed stone
+		floodFill.beginScan();
+		if (board.get(location) == ProtocolMessages.UNOCCUPIED) {
+			labelArea(location);
+		} else {
+			int degree = topology.getDegree(location);
+			for (int n = 0; n < degree; n++) {
+				relabel(topology.getNeighbor(location, n));
+			}
+		}
+		for (int index = 0; index < numberRemoved; index++) {
+			relabel(captureResolver.getRemovedStone(index));
+		}
+		return numberRemoved;
+	}
+
+	/**
+	 * Get the number of stones removed by the last placed stone.
+	 */
+	public int getNumberOfRemovedStones() {
+		return captureResolver.getNumberOfRemovedStones();
+	}
+
+	/**
+	 * Get one of the stones removed by the last placed stone.
+	 *
+	 * @param index, a number from 0 to getNumberOfRemovedStones() - 1
+	 */
+	public int getRemovedStone(int index) {
+		return captureResolver.getRemovedStone(index);
+	}
+
+	/**
+	 * Get the occupation status of a location.
+	 */
+	public char get(int location) {
+		return board.get(location);
+	}
+
+	/**
+	 * Create the string representation of the board.
+	 */
+	@Override
+	public String toString() {
+		return board.toString();
+	}
+
+	/**
+	 * Label the area of an unoccupied location again, unless that was already done during the
+	 * current update.
+	 */
+	private void relabel(int location) {
+		if (board.get(location) == ProtocolMessages.UNOCCUPIED 
+				&& !floodFill.isVisited(location)) {
+			labelArea(location);
+		}
+	}
+
+	/**
+	 * Fill the area of an unoccupied location, label all its locations with the start location
+	 * and add its size to the score of the player that surrounds it.
+	 */
+	private void labelArea(int start) {
+		int size = floodFill.fill(board, start);
+		for (int index = 0; index < size; index++) {
+			areaOf[floodFill.getLocation(index)] = start;
+		}
+
+		boolean bordersBlack = floodFill.borders(ProtocolMessages.BLACK);
+		boolean bordersWhite = floodFill.borders(ProtocolMessages.WHITE);
+		char owner = ProtocolMessages.UNOCCUPIED;
+		if (bordersBlack && !bordersWhite) {
+			owner = ProtocolMessages.BLACK;
+			areaBlack += size;
+		} else if (bordersWhite && !bordersBlack) {
+			owner = ProtocolMessages.WHITE;
+			areaWhite += size;
+		}
+		areaSize[start] = size;
+		areaOwner[start] = owner;
+	}
+
+	/**
+	 * Take the areas next to a removed stone out of the scores, they will be labeled again.
+	 */
+	private void forgetNeighboringAreas(int stone) {
+		int degree = topology.getDegree(stone);
+		for (int n = 0; n < degree; n++) {
+			forgetArea(areaOf[topology.getNeighbor(stone, n)]);
+		}
+	}
+
+	/**
+	 * Take an area out of the scores. An area that is forgotten twice only counts once.
+	 */
+	private void forgetArea(int area) {
+		if (area == NO_AREA) {
+			return;
+		}
+		if (areaOwner[area] == ProtocolMessages.BLACK) {
+			areaBlack -= areaSize[area];
+		} else if (areaOwner[area] == ProtocolMessages.WHITE) {
+			areaWhite -= areaSize[area];
+		}
+		areaOwner[area] = ProtocolMessages.UNOCCUPIED;
+	}
+
+	private void addStones(char color, int number) {
+		if (color == ProtocolMessages.BLACK) {
+			stonesBlack += number;
+		} else {
+			stonesWhite += number;
+		}
+	}
+
+	private static char opponentOf(char color) {
+		if (color == ProtocolMessages.BLACK) {
+			return ProtocolMessages.WHITE;
+		}
+		return ProtocolMessages.BLACK;
+	}
+}
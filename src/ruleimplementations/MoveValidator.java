@@ -1,5 +1,6 @@
 package ruleimplementations;
 
+import java.util.BitSet;
 import java.util.List;
 
 import protocol.ProtocolMessages;
@@ -12,9 +13,21 @@ import protocol.ProtocolMessages;
 
 public class MoveValidator {
 
-	BoardUpdater boardUpdater = new BoardUpdater();
 	String board;
 	
+	private final RuleEngine ruleEngine = new RuleEngine();
+	
+	/**
+	 * Check whether a move is valid: the location is an unoccupied location on the board and 
+	 * the board after placing the stone and removing captured stones was not seen before.
+	 * 
+	 * @param move, a string representation of a move
+	 * @param boardDimension, the size (length / height) of a board
+	 * @param theBoard, a string representation of the current board
+	 * @param color, the color of the player doing the move
+	 * @param prevBoards, all boards that were seen before
+	 * @return validness, a boolean that is true is the move is valid, otherwise false
+	 */
 	public boolean processMove(String move, int boardDimension, String theBoard, 
 			char color, List<String> prevBoards) {
 
@@ -26,13 +39,48 @@ public class MoveValidator {
 			return false;
 		}
 		
-		int location = Integer.parseInt(move);
-		board = theBoard.substring(0, location) + color + theBoard.substring(location + 1);
-		board = boardUpdater.determineNewBoard(board, color);
+		return ruleEngine.isValidMove(theBoard, Integer.parseInt(move), color, prevBoards);
+	}
+	
+	/**
+	 * Check whether a move is valid: the location is an unoccupied location on the board and 
+	 * the board after placing the stone and removing captured stones was not seen before.
+	 * 
+	 * Players check many moves on the same board. The RuleEngine only converts the board once, 
+	 * after which every move is tried on a copy. The superko check is a lookup of the hash of 
+	 * the new board, which is updated while the stone is placed and captured stones are removed.
+	 * 
+	 * @param move, a string representation of a move
+	 * @param boardDimension, the size (length / height) of a board
+	 * @param theBoard, a string representation of the current board
+	 * @param color, the color of the player doing the move
+	 * @param prevBoards, all boards that were seen before
+	 * @return validness, a boolean that is true is the move is valid, otherwise false
+	 */
+	public boolean processMove(String move, int boardDimension, String theBoard, 
+			char color, PositionHistory prevBoards) {
+
+		board = theBoard;
 		
-		validity = checkValidityAfterRemoving(board, prevBoards);
+		boolean validity;
+		validity = checkValidityBeforeRemoving(move, boardDimension);
+		if (validity == false) {
+			return false;
+		}
 		
-		return validity;
+		return ruleEngine.isValidMove(theBoard, Integer.parseInt(move), color, prevBoards);
+	}
+	
+	/**
+	 * Find all valid moves at once, instead of calling processMove for every location.
+	 * 
+	 * @param theBoard, a string representation of the current board
+	 * @param color, the color of the player doing the move
+	 * @param prevBoards, all boards that were seen before
+	 * @return the set of locations where placing a stone is a valid move
+	 */
+	public BitSet legalMoves(String theBoard, char color, PositionHistory prevBoards) {
+		return ruleEngine.legalMoves(theBoard, color, prevBoards);
 	}
 	
 	/**
@@ -84,4 +132,22 @@ public class MoveValidator {
 		}
 		return true;
 	}
+	
+	/**
+	 * Check whether a new board does not create a board that was seen before in the game,
+	 * without converting the new board to a string.
+	 * 
+	 * @param newBoard, the board that was generated by the move
+	 * @param prevBoards, all boards that were seen before
+	 * @return validness, a boolean: true if the move does not result in a board seen before
+	 */
+	public boolean checkValidityAfterRemoving(Bitboard newBoard, List<String> prevBoards) {
+		
+		for (String aPrevBoard : prevBoards) {
+			if (newBoard.matches(aPrevBoard)) {
+				return false;
+			}
+		}
+		return true;
+	}
 }
@@ -0,0 +1,78 @@
+package ruleimplementations;
+
+/**
+ * The outcome of trying a move with Position.tryPlay: either the board after the move, or the
+ * reason why the move was rejected.
+ */
+
+public final class PlayResult {
+
+	/**
+	 * The reasons why a move can be rejected.
+	 */
+	public enum Rejection {
+		/** The move is not a number. */
+		NOT_A_LOCATION,
+		/** The location is not on the board. */
+		OFF_BOARD,
+		/** There is already a stone on the location. */
+		OCCUPIED,
+		/** The board after the move was seen before (superko). */
+		REPEATED_BOARD
+	}
+
+	private final String board;
+	private final int numberOfCapturedStones;
+	private final Rejection rejection;
+
+	private PlayResult(String board, int numberOfCapturedStones, Rejection rejection) {
+		this.board = board;
+		this.numberOfCapturedStones = numberOfCapturedStones;
+		this.rejection = rejection;
+	}
+
+	/**
+	 * Create the result of a valid move.
+	 *
+	 * @param board, a string representation of the board after the move
+	 * @param numberOfCapturedStones, the number of stones removed by the move
+	 */
+	static PlayResult played(String board, int numberOfCapturedStones) {
+		return new PlayResult(board, numberOfCapturedStones, null);
+	}
+
+	/**
+	 * Create the result of a rejected move.
+	 *
+	 * @param rejection, the reason why the move is not valid
+	 */
+	static PlayResult rejected(Rejection rejection) {
+		return new PlayResult(null, 0, rejection);
+	}
+
+	public boolean isValid() {
+		return rejection == null;
+	}
+
+	/**
+	 * Get the board after the move.
+	 *
+	 * @return a string representation of the board, null if the move was rejected
+	 */
+	public String getBoard() {
+		return board;
+	}
+
+	public int getNumberOfCapturedStones() {
+		return numberOfCapturedStones;
+	}
+
+	/**
+	 * Get the reason why the move was rejected.
+	 *
+	 * @return the reason, null if the move was valid
+	 */
+	public Rejection getRejection() {
+		return rejection;
+	}
+}
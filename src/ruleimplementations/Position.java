@@ -0,0 +1,367 @@
+package ruleimplementations;
+
+import java.util.Arrays;
+
+import protocol.BoardDelta;
+import protocol.ProtocolMessages;
+
+/**
+ * A board that moves can be played on and taken back, for players that search through
+ * possible moves.
+ *
+ * Every move is written to a journal: the location, the color and the stones it captured.
+ * Taking a move back (undo) only puts those stones back and removes the placed stone, so
+ * playing and taking back a move costs time proportional to the number of changed locations,
+ * and no boards are copied. The Zobrist hash of the board is kept up to date
+ * in both directions.
+ *
+ * No rules are checked when a move is played: the caller checks validity first, for example
+ * with RuleEngine.legalMoves. tryPlay does both in one go: it plays the move, checks the new
+ * board against the history and takes the move back if it is not valid.
+ */
+
+public class Position {
+
+	private static final int INITIAL_JOURNAL_SIZE = 64;
+
+	// The location of a pass in the journal
+	private static final int PASS = -1;
+
+	// The result of reading a move that is not a number
+	private static final int NOT_A_LOCATION = Integer.MIN_VALUE;
+
+	private final Bitboard board;
+	private final CaptureResolver captureResolver = new CaptureResolver();
+	private char colorToMove;
+
+	// Per move: the location, the color and the number of captured stones
+	private int numberOfMoves;
+	private int[] moveLocations;
+	private char[] moveColors;
+	private int[] moveCaptures;
+
+	// The captured stones of all moves in the journal, the last move's stones at the end
+	private int numberOfCapturedStones;
+	private int[] capturedStones;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param theBoard, a string representation of the board
+	 * @param colorToMove, the color of the player that does the next move
+	 */
+	public Position(String theBoard, char colorToMove) {
+		this(theBoard, colorToMove, INITIAL_JOURNAL_SIZE);
+	}
+
+	/**
+	 * Constructor, for a position on which a number of moves can be played before the journal
+	 * has to grow.
+	 *
+	 * @param theBoard, a string representation of the board
+	 * @param colorToMove, the color of the player that does the next move
+	 * @param expectedNumberOfMoves, the number of moves that is expected to be played
+	 */
+	public Position(String theBoard, char colorToMove, int expectedNumberOfMoves) {
+		board = new Bitboard(theBoard);
+		this.colorToMove = colorToMove;
+
+		// Every captured stone was on the board at the start or was placed by a move, so the
+		// expected moves capture at most that many stones. The journals grow after more moves.
+		int journalSize = Math.max(INITIAL_JOURNAL_SIZE, expectedNumberOfMoves);
+		moveLocations = new int[journalSize];
+		moveColors = new char[journalSize];
+		moveCaptures = new int[journalSize];
+		capturedStones = new int[journalSize + board.countStones(ProtocolMessages.BLACK)
+				+ board.countStones(ProtocolMessages.WHITE)];
+	}
+
+	public char getColorToMove() {
+		return colorToMove;
+	}
+
+	public int getBoardDimension() {
+		return board.getBoardDimension();
+	}
+
+	/**
+	 * Get the Zobrist hash of the current board.
+	 */
+	public long getHash() {
+		return board.getHash();
+	}
+
+	/**
+	 * Get the number of moves played since the position was created and not taken back.
+	 */
+	public int getNumberOfMoves() {
+		return numberOfMoves;
+	}
+
+	/**
+	 * Get the occupation status of a location.
+	 */
+	public char get(int location) {
+		return board.get(location);
+	}
+
+	/**
+	 * Get the current board, to be read by the rule classes.
+	 */
+	Bitboard getBoard() {
+		return board;
+	}
+
+	/**
+	 * Add the current board to a history of boards.
+	 *
+	 * @param prevBoards, the boards that were seen before
+	 */
+	public void addTo(PositionHistory prevBoards) {
+		prevBoards.add(board);
+	}
+
+	/**
+	 * Check whether the current board was seen before.
+	 *
+	 * @param prevBoards, the boards that were seen before
+	 * @return true if the current board is in the history
+	 */
+	public boolean isIn(PositionHistory prevBoards) {
+		return prevBoards.contains(board);
+	}
+
+	/**
+	 * Place a stone of the player to move, remove the stones it captures and give the turn to
+	 * the other player.
+	 *
+	 * @param location, an unoccupied location on the board
+	 * @return the number of captured stones
+	 */
+	public int play(int location) {
+		return play(location, colorToMove);
+	}
+
+	/**
+	 * Place a stone of the given color, remove the stones it captures and give the turn to the
+	 * other player.
+	 *
+	 * @param location, an unoccupied location on the board
+	 * @param color, the color of the stone
+	 * @return the number of captured stones
+	 */
+	public int play(int location, char color) {
+		colorToMove = color;
+		int captures = captureResolver.placeStone(board, location, color);
+
+		ensureCapturedCapacity(numberOfCapturedStones + captures);
+		for (int index = 0; index < captures; index++) {
+			capturedStones[numberOfCapturedStones++] = captureResolver.getRemovedStone(index);
+		}
+		record(location, captures);
+		return captures;
+	}
+
+	/**
+	 * Check a move and, if it is valid, play it: the move must be a location on the board that
+	 * is unoccupied, and the board after placing the stone and removing captured stones may
+	 * not have been seen before. The new board is only calculated once, for both the check and
+	 * the result.
+	 *
+	 * @param move, a string representation of a location
+	 * @param color, the color of the player doing the move
+	 * @param prevBoards, all boards that were seen before
+	 * @return the new board if the move was played, or why it was not
+	 */
+	public PlayResult tryPlay(String move, char color, PositionHistory prevBoards) {
+		PlayResult.Rejection rejection = playIfValid(move, 0, move.length(), color, prevBoards);
+		if (rejection != null) {
+			return PlayResult.rejected(rejection);
+		}
+		return PlayResult.played(board.toString(), moveCaptures[numberOfMoves - 1]);
+	}
+
+	/**
+	 * Check a move and, if it is valid, play it, like tryPlay. The location is read directly
+	 * from the characters of a message and no objects are created, so a server can check and
+	 * play every move of a game without allocating.
+	 *
+	 * @param text, the characters that contain the move, for example a received message
+	 * @param start, the index of the first character of the move
+	 * @param end, the index after the last character of the move
+	 * @param color, the color of the player doing the move
+	 * @param prevBoards, all boards that were seen before
+	 * @return null if the move was played, otherwise the reason why it was not
+	 */
+	public PlayResult.Rejection playIfValid(CharSequence text, int start, int end, char color,
+			PositionHistory prevBoards) {
+		int location = parseLocation(text, start, end);
+		if (location == NOT_A_LOCATION) {
+			return PlayResult.Rejection.NOT_A_LOCATION;
+		}
+		return playIfValid(location, color, prevBoards);
+	}
+
+	/**
+	 * Check a move of which the location is already read and, if it is valid, play it, see
+	 * playIfValid.
+	 *
+	 * @param location, the location of the move
+	 * @param color, the color of the player doing the move
+	 * @param prevBoards, all boards that were seen before
+	 * @return null if the move was played, otherwise the reason why it was not
+	 */
+	public PlayResult.Rejection playIfValid(int location, char color,
+			PositionHistory prevBoards) {
+		if (location < 0 || location >= board.getBoardDimension() * board.getBoardDimension()) {
+			return PlayResult.Rejection.OFF_BOARD;
+		}
+		if (board.get(location) != ProtocolMessages.UNOCCUPIED) {
+			return PlayResult.Rejection.OCCUPIED;
+		}
+
+		play(location, color);
+		if (prevBoards.contains(board)) {
+			undo();
+			return PlayResult.Rejection.REPEATED_BOARD;
+		}
+		return null;
+	}
+
+	/**
+	 * Pass: give the turn to the other player without changing the board.
+	 */
+	public void pass() {
+		record(PASS, 0);
+	}
+
+	/**
+	 * Take back the last move (or pass) that is not taken back yet.
+	 *
+	 * @throws IllegalStateException if no moves were played
+	 */
+	public void undo() {
+		if (numberOfMoves == 0) {
+			throw new IllegalStateException("No move to undo");
+		}
+		numberOfMoves--;
+		int location = moveLocations[numberOfMoves];
+		char color = moveColors[numberOfMoves];
+		int captures = moveCaptures[numberOfMoves];
+		colorToMove = color;
+		if (location == PASS) {
+			return;
+		}
+
+		// Only a suicide leaves the location of the placed stone empty
+		char capturedColor = opponentOf(color);
+		if (board.get(location) == ProtocolMessages.UNOCCUPIED) {
+			capturedColor = color;
+		}
+		for (int index = 0; index < captures; index++) {
+			board.set(capturedStones[--numberOfCapturedStones], capturedColor);
+		}
+		board.set(location, ProtocolMessages.UNOCCUPIED);
+	}
+
+	/**
+	 * Write the string representation of the current board to the end of a buffer.
+	 *
+	 * @param text, the buffer to which the board is appended
+	 */
+	public void appendTo(StringBuilder text) {
+		board.appendTo(text);
+	}
+
+	/**
+	 * Write the changes of the last move to the end of a buffer, as entries of a BoardDelta:
+	 * the location of the placed stone and the locations of the captured stones, with their
+	 * new occupation status. Nothing is written for a pass, or if no moves were played.
+	 *
+	 * @param changes, the buffer to which the changes are appended
+	 */
+	public void appendLastMoveTo(StringBuilder changes) {
+		if (numberOfMoves == 0 || moveLocations[numberOfMoves - 1] == PASS) {
+			return;
+		}
+		int location = moveLocations[numberOfMoves - 1];
+		BoardDelta.appendChange(changes, board.get(location), location);
+		int captures = moveCaptures[numberOfMoves - 1];
+		for (int index = numberOfCapturedStones - captures; index < numberOfCapturedStones;
+				index++) {
+			if (capturedStones[index] != location) {
+				BoardDelta.appendChange(changes, ProtocolMessages.UNOCCUPIED,
+						capturedStones[index]);
+			}
+		}
+	}
+
+	/**
+	 * Create the string representation of the current board.
+	 */
+	@Override
+	public String toString() {
+		return board.toString();
+	}
+
+	private void record(int location, int captures) {
+		if (numberOfMoves == moveLocations.length) {
+			int newLength = moveLocations.length * 2;
+			moveLocations = Arrays.copyOf(moveLocations, newLength);
+			moveColors = Arrays.copyOf(moveColors, newLength);
+			moveCaptures = Arrays.copyOf(moveCaptures, newLength);
+		}
+		moveLocations[numberOfMoves] = location;
+		moveColors[numberOfMoves] = colorToMove;
+		moveCaptures[numberOfMoves] = captures;
+		numberOfMoves++;
+		colorToMove = opponentOf(colorToMove);
+	}
+
+	/**
+	 * Read a location from characters, the way Integer.parseInt reads a number, but without
+	 * creating a string or an exception. Numbers too large for the board are all read as the
+	 * same location off the board.
+	 *
+	 * @return the location, or NOT_A_LOCATION if the characters are not a number
+	 */
+	private int parseLocation(CharSequence text, int start, int end) {
+		int index = start;
+		boolean negative = false;
+		if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+			negative = text.charAt(index) == '-';
+			index++;
+		}
+		if (index == end) {
+			return NOT_A_LOCATION;
+		}
+
+		int offBoard = board.getBoardDimension() * board.getBoardDimension();
+		int location = 0;
+		for (; index < end; index++) {
+			char digit = text.charAt(index);
+			if (digit < '0' || digit > '9') {
+				return NOT_A_LOCATION;
+			}
+			location = Math.min(location * 10 + (digit - '0'), offBoard);
+		}
+		if (negative) {
+			return -location;
+		}
+		return location;
+	}
+
+	private void ensureCapturedCapacity(int capacity) {
+		if (capacity > capturedStones.length) {
+			capturedStones = Arrays.copyOf(capturedStones,
+					Math.max(capacity, capturedStones.length * 2));
+		}
+	}
+
+	private static char opponentOf(char color) {
+		if (color == ProtocolMessages.BLACK) {
+			return ProtocolMessages.WHITE;
+		}
+		return ProtocolMessages.BLACK;
+	}
+}
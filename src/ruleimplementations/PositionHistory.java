@@ -0,0 +1,289 @@
+package ruleimplementations;
+
+import java.util.Arrays;
+
+import protocol.ProtocolMessages;
+
+/**
+ * All boards that were seen before in a game, used to check the superko rule (a move may not
+ * recreate a previous board).
+ * 
+ * The boards are stored packed, with 2 bits per location (32 locations in a long), one board 
+ * after the other in a single array. That takes a quarter of the memory of keeping the strings, 
+ * and the strings are only made again when a board is asked for with get.
+ * 
+ * Next to the boards themselves, the Zobrist hashes of the boards are kept in an open-addressing
+ * hash table. Checking whether a board was seen before therefore costs one table lookup; the 
+ * boards are only compared location by location when their hashes are equal.
+ * 
+ * Can be used by both the players (clients) and the game (server).
+ */
+
+public class PositionHistory {
+	
+	private static final int INITIAL_CAPACITY = 64;
+	
+	// The number of bits and the codes of a location in a packed board
+	private static final int BITS_PER_LOCATION = 2;
+	private static final int LOCATIONS_PER_WORD = 64 / BITS_PER_LOCATION;
+	private static final long CODE_MASK = 3L;
+	private static final long CODE_BLACK = 1L;
+	private static final long CODE_WHITE = 2L;
+	
+	// The size of the boards, known after the first board is added
+	private ZobristHash zobristHash;
+	private int numberOfIntersections;
+	private int wordsPerBoard;
+	
+	// The packed boards, board i starts at word i * wordsPerBoard
+	private long[] packedBoards = new long[0];
+	private int numberOfBoards;
+	
+	// Hash table: the hash of a board and the number of the board (-1 if free)
+	private final int initialCapacity;
+	private long[] tableHashes;
+	private int[] tableIndices;
+	
+	/**
+	 * Constructor, for a history that grows when boards are added.
+	 */
+	public PositionHistory() {
+		this(INITIAL_CAPACITY);
+	}
+	
+	/**
+	 * Constructor, for a history that has room for a number of boards before it has to grow.
+	 * 
+	 * @param expectedNumberOfBoards, the number of boards that is expected to be added
+	 */
+	public PositionHistory(int expectedNumberOfBoards) {
+		initialCapacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(
+				Math.max(1, expectedNumberOfBoards - 1)) * 2);
+		tableHashes = new long[initialCapacity * 2];
+		tableIndices = newIndexTable(initialCapacity * 2);
+	}
+	
+	/**
+	 * Add a board to the history.
+	 * 
+	 * @param board, a string representation of a board
+	 */
+	public void add(String board) {
+		int start = reserve(board.length());
+		for (int location = 0; location < numberOfIntersections; location++) {
+			packedBoards[start + location / LOCATIONS_PER_WORD] |= 
+					codeOf(board.charAt(location)) << shiftOf(location);
+		}
+		numberOfBoards++;
+		insert(zobristHash.hash(board), numberOfBoards - 1);
+	}
+	
+	/**
+	 * Add a board to the history, using the hash the board keeps up to date. No strings are
+	 * created and, as long as the history does not have to grow, nothing is allocated.
+	 * 
+	 * @param board, a board of the same size as the boards in the history
+	 */
+	public void add(Bitboard board) {
+		int start = reserve(board.getBoardDimension() * board.getBoardDimension());
+		for (int location = 0; location < numberOfIntersections; location++) {
+			packedBoards[start + location / LOCATIONS_PER_WORD] |= 
+					codeOf(board.get(location)) << shiftOf(location);
+		}
+		numberOfBoards++;
+		insert(board.getHash(), numberOfBoards - 1);
+	}
+	
+	/**
+	 * Check whether a board was seen before.
+	 * 
+	 * @param board, a string representation of a board
+	 * @return true if the board is in the history
+	 */
+	public boolean contains(String board) {
+		if (numberOfBoards == 0) {
+			return false;
+		}
+		long hash = zobristHash.hash(board);
+		
+		int mask = tableIndices.length - 1;
+		for (int slot = slotOf(hash, mask); tableIndices[slot] != -1; slot = (slot + 1) & mask) {
+			if (tableHashes[slot] == hash && matches(tableIndices[slot], board)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Check whether a board was seen before, using the hash the board keeps up to date.
+	 * 
+	 * @param board, a board of the same size as the boards in the history
+	 * @return true if the board is in the history
+	 */
+	public boolean contains(Bitboard board) {
+		long hash = board.getHash();
+		
+		int mask = tableIndices.length - 1;
+		for (int slot = slotOf(hash, mask); tableIndices[slot] != -1; slot = (slot + 1) & mask) {
+			if (tableHashes[slot] == hash && matches(tableIndices[slot], board)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Check whether a board with the given hash may have been seen before. Different boards can
+	 * have the same hash, so a true result has to be confirmed with contains.
+	 * 
+	 * @param hash, the Zobrist hash of a board
+	 * @return false if no board with this hash is in the history
+	 */
+	public boolean mayContain(long hash) {
+		int mask = tableIndices.length - 1;
+		for (int slot = slotOf(hash, mask); tableIndices[slot] != -1; slot = (slot + 1) & mask) {
+			if (tableHashes[slot] == hash) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Get the number of boards in the history.
+	 */
+	public int size() {
+		return numberOfBoards;
+	}
+	
+	/**
+	 * Get a board from the history.
+	 * 
+	 * @param index, the number of the board (0 is the first added board)
+	 * @return a string representation of the board
+	 */
+	public String get(int index) {
+		if (index < 0 || index >= numberOfBoards) {
+			throw new IndexOutOfBoundsException("No board " + index + " in a history of " 
+					+ numberOfBoards + " boards");
+		}
+		char[] board = new char[numberOfIntersections];
+		for (int location = 0; location < numberOfIntersections; location++) {
+			board[location] = colorAt(index, location);
+		}
+		return new String(board);
+	}
+	
+	/**
+	 * Check whether a stored board is the same as a string representation.
+	 */
+	private boolean matches(int index, String board) {
+		if (board.length() != numberOfIntersections) {
+			return false;
+		}
+		for (int location = 0; location < numberOfIntersections; location++) {
+			if (colorAt(index, location) != board.charAt(location)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Check whether a stored board is the same as a board.
+	 */
+	private boolean matches(int index, Bitboard board) {
+		for (int location = 0; location < numberOfIntersections; location++) {
+			if (colorAt(index, location) != board.get(location)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Make room for one more board, growing the arrays if needed.
+	 * 
+	 * @param boardLength, the number of locations of the board to be added
+	 * @return the index of the first word of the new board in packedBoards
+	 */
+	private int reserve(int boardLength) {
+		if (zobristHash == null) {
+			zobristHash = ZobristHash.forDimension((int) Math.sqrt(boardLength));
+			numberOfIntersections = boardLength;
+			wordsPerBoard = (numberOfIntersections + LOCATIONS_PER_WORD - 1) / LOCATIONS_PER_WORD;
+			packedBoards = new long[initialCapacity * wordsPerBoard];
+		}
+		
+		if ((numberOfBoards + 1) * 2 > tableIndices.length) {
+			growTable();
+		}
+		if ((numberOfBoards + 1) * wordsPerBoard > packedBoards.length) {
+			packedBoards = Arrays.copyOf(packedBoards, packedBoards.length * 2);
+		}
+		return numberOfBoards * wordsPerBoard;
+	}
+	
+	/**
+	 * Get the occupation status of a location in a stored board.
+	 */
+	private char colorAt(int index, int location) {
+		long word = packedBoards[index * wordsPerBoard + location / LOCATIONS_PER_WORD];
+		long code = (word >>> shiftOf(location)) & CODE_MASK;
+		if (code == CODE_BLACK) {
+			return ProtocolMessages.BLACK;
+		} else if (code == CODE_WHITE) {
+			return ProtocolMessages.WHITE;
+		}
+		return ProtocolMessages.UNOCCUPIED;
+	}
+	
+	private void insert(long hash, int index) {
+		int mask = tableIndices.length - 1;
+		int slot = slotOf(hash, mask);
+		while (tableIndices[slot] != -1) {
+			slot = (slot + 1) & mask;
+		}
+		tableHashes[slot] = hash;
+		tableIndices[slot] = index;
+	}
+	
+	private void growTable() {
+		long[] oldHashes = tableHashes;
+		int[] oldIndices = tableIndices;
+		
+		tableHashes = new long[oldHashes.length * 2];
+		tableIndices = newIndexTable(oldIndices.length * 2);
+		for (int slot = 0; slot < oldIndices.length; slot++) {
+			if (oldIndices[slot] != -1) {
+				insert(oldHashes[slot], oldIndices[slot]);
+			}
+		}
+	}
+	
+	private static long codeOf(char color) {
+		if (color == ProtocolMessages.BLACK) {
+			return CODE_BLACK;
+		} else if (color == ProtocolMessages.WHITE) {
+			return CODE_WHITE;
+		}
+		return 0L;
+	}
+	
+	private static int shiftOf(int location) {
+		return (location % LOCATIONS_PER_WORD) * BITS_PER_LOCATION;
+	}
+	
+	private static int slotOf(long hash, int mask) {
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+	
+	private static int[] newIndexTable(int capacity) {
+		int[] indices = new int[capacity];
+		for (int slot = 0; slot < capacity; slot++) {
+			indices[slot] = -1;
+		}
+		return indices;
+	}
+}
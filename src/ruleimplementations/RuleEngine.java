@@ -0,0 +1,398 @@
+package ruleimplementations;
+
+import java.util.BitSet;
+import java.util.List;
+
+import protocol.ProtocolMessages;
+
+/**
+ * The rules of GO as functions: a board goes in, a new board, a score or a validity comes out.
+ *
+ * A RuleEngine does not change between calls, so one engine can be shared by all games and
+ * players in a program, and be used by many threads at the same time without locking. The
+ * arrays that the calculations work in are kept per thread (see Context), so after the first
+ * call of a thread nothing is allocated except for the returned results.
+ */
+
+public class RuleEngine {
+
+	private static final double KOMI = 0.5;
+
+	private static final ThreadLocal<Context> CONTEXTS = ThreadLocal.withInitial(Context::new);
+
+	/**
+	 * The boards and fill that one thread works in, replaced when the board size changes.
+	 */
+	private static final class Context {
+
+		private int boardDimension;
+
+		// The last given board, and the board on which the calculation is done
+		private String loadedBoard;
+		private Bitboard currentBoard;
+		private Bitboard bitboard;
+
+		private final CaptureResolver captureResolver = new CaptureResolver();
+		private FloodFill floodFill;
+
+		// The chains of currentBoard: the label of the chain of every stone, and the number of
+		// liberties (0, 1, or 2 for two or more) and the Zobrist hash of the stones of every label
+		private int[] chainOf;
+		private int[] chainLiberties;
+		private long[] chainHash;
+
+		// The chains next to the location that is currently handled
+		private final int[] neighboringChains = new int[4];
+
+		/**
+		 * Load a board in currentBoard, unless it was the last loaded board, and copy it to
+		 * bitboard.
+		 */
+		private void load(String board) {
+			int dimension = (int) Math.sqrt(board.length());
+			if (currentBoard == null || boardDimension != dimension) {
+				boardDimension = dimension;
+				currentBoard = new Bitboard(dimension);
+				bitboard = new Bitboard(dimension);
+				loadedBoard = null;
+			}
+			if (!board.equals(loadedBoard)) {
+				currentBoard.load(board);
+				loadedBoard = board;
+			}
+			bitboard.copyFrom(currentBoard);
+		}
+
+		/**
+		 * Make sure the chain arrays fit boards of the given size.
+		 */
+		private void prepareChains(int dimension) {
+			if (chainOf == null || chainOf.length != dimension * dimension) {
+				chainOf = new int[dimension * dimension];
+				chainLiberties = new int[dimension * dimension];
+				chainHash = new long[dimension * dimension];
+			}
+		}
+
+		private FloodFill floodFillFor(int dimension) {
+			if (floodFill == null || floodFill.getBoardDimension() != dimension) {
+				floodFill = new FloodFill(dimension);
+			}
+			return floodFill;
+		}
+	}
+
+	/**
+	 * Find all valid moves for a player in one pass over the board.
+	 *
+	 * The chains of the board are found once, with their number of liberties and the hash of
+	 * their stones. For every unoccupied location, the chains it captures (neighboring chains of
+	 * the opponent with that location as their only liberty) or, without captures, whether the
+	 * stone would be captured itself (suicide) follow from its neighbors. That gives the hash
+	 * of the board after the move without placing the stone. Only when that hash is in the
+	 * history, the move is tried to compare the boards.
+	 *
+	 * @param board, a string representation of the current board
+	 * @param color, the color of the player doing the move
+	 * @param prevBoards, all boards that were seen before, is not changed
+	 * @return the set of locations where placing a stone is a valid move, the same locations
+	 * 		for which isValidMove returns true
+	 */
+	public BitSet legalMoves(String board, char color, PositionHistory prevBoards) {
+		Context context = CONTEXTS.get();
+		context.load(board);
+		BitSet toConfirm = new BitSet();
+		BitSet legalMoves = findLegalMoves(context, context.currentBoard, color, prevBoards, 
+				toConfirm);
+		for (int location = toConfirm.nextSetBit(0); location != -1; 
+				location = toConfirm.nextSetBit(location + 1)) {
+			if (isValidMove(board, location, color, prevBoards)) {
+				legalMoves.set(location);
+			}
+		}
+		return legalMoves;
+	}
+
+	/**
+	 * Find all valid moves for the player to move in a position, see legalMoves(String, char,
+	 * PositionHistory). Moves of which the hash is in the history are played and taken back on
+	 * the position to compare the boards.
+	 *
+	 * @param position, the current position, is the same position again afterwards
+	 * @param prevBoards, all boards that were seen before, is not changed
+	 * @return the set of locations where placing a stone is a valid move
+	 */
+	public BitSet legalMoves(Position position, PositionHistory prevBoards) {
+		BitSet toConfirm = new BitSet();
+		BitSet legalMoves = findLegalMoves(CONTEXTS.get(), position.getBoard(), 
+				position.getColorToMove(), prevBoards, toConfirm);
+		for (int location = toConfirm.nextSetBit(0); location != -1; 
+				location = toConfirm.nextSetBit(location + 1)) {
+			position.play(location);
+			if (!position.isIn(prevBoards)) {
+				legalMoves.set(location);
+			}
+			position.undo();
+		}
+		return legalMoves;
+	}
+
+	/**
+	 * Find the valid moves of a board, except for the moves after which the board has a hash
+	 * that is in the history: those are put in toConfirm, to be checked by comparing boards.
+	 */
+	private static BitSet findLegalMoves(Context context, Bitboard position, char color, 
+			PositionHistory prevBoards, BitSet toConfirm) {
+		int boardDimension = position.getBoardDimension();
+		context.prepareChains(boardDimension);
+		BoardTopology topology = BoardTopology.forDimension(boardDimension);
+		ZobristHash zobristHash = ZobristHash.forDimension(boardDimension);
+		findChains(context, position, topology);
+
+		char opponentsColor = opponentOf(color);
+		int numberOfIntersections = boardDimension * boardDimension;
+		BitSet legalMoves = new BitSet(numberOfIntersections);
+		for (int location = 0; location < numberOfIntersections; location++) {
+			if (position.get(location) != ProtocolMessages.UNOCCUPIED) {
+				continue;
+			}
+
+			long capturedHash = 0L;
+			long ownChainsHash = 0L;
+			boolean captures = false;
+			boolean hasLiberty = false;
+			int numberOfChains = 0;
+			int degree = topology.getDegree(location);
+			for (int n = 0; n < degree; n++) {
+				int neighbor = topology.getNeighbor(location, n);
+				char neighborsColor = position.get(neighbor);
+				if (neighborsColor == ProtocolMessages.UNOCCUPIED) {
+					hasLiberty = true;
+					continue;
+				}
+				int chain = context.chainOf[neighbor];
+				if (isCounted(context.neighboringChains, numberOfChains, chain)) {
+					continue;
+				}
+				context.neighboringChains[numberOfChains++] = chain;
+
+				if (neighborsColor == opponentsColor && context.chainLiberties[chain] == 1) {
+					captures = true;
+					capturedHash ^= context.chainHash[chain];
+				} else if (neighborsColor == color) {
+					ownChainsHash ^= context.chainHash[chain];
+					if (context.chainLiberties[chain] > 1) {
+						hasLiberty = true;
+					}
+				}
+			}
+
+			long newHash;
+			if (captures) {
+				newHash = position.getHash() ^ zobristHash.key(location, color) ^ capturedHash;
+			} else if (hasLiberty) {
+				newHash = position.getHash() ^ zobristHash.key(location, color);
+			} else {
+				// suicide: the stone and the neighboring chains of the own color are removed
+				newHash = position.getHash() ^ ownChainsHash;
+			}
+
+			if (!prevBoards.mayContain(newHash)) {
+				legalMoves.set(location);
+			} else {
+				toConfirm.set(location);
+			}
+		}
+		return legalMoves;
+	}
+
+	/**
+	 * Calculate the scores of the two players. The score of a player is the number of his/her
+	 * stones plus the number of unoccupied locations in areas that are only bordered by
+	 * his/her stones. Black gets komi subtracted.
+	 *
+	 * @param board, a string representation of the board
+	 * @return the scores
+	 */
+	public Score calculateScores(String board) {
+		Context context = CONTEXTS.get();
+		context.load(board);
+		return calculateScores(context.bitboard);
+	}
+
+	/**
+	 * Calculate the scores of the two players, see calculateScores(String).
+	 *
+	 * @param board, the board of which the scores are calculated, is not changed
+	 * @return the scores
+	 */
+	public Score calculateScores(Bitboard board) {
+		int boardDimension = board.getBoardDimension();
+		FloodFill floodFill = CONTEXTS.get().floodFillFor(boardDimension);
+
+		double scoreBlack = board.countStones(ProtocolMessages.BLACK) - KOMI;
+		double scoreWhite = board.countStones(ProtocolMessages.WHITE);
+
+		// Identify all empty areas surrounded by one of the two players
+		floodFill.beginScan();
+		int numberOfIntersections = boardDimension * boardDimension;
+		for (int location = 0; location < numberOfIntersections; location++) {
+			if (board.get(location) != ProtocolMessages.UNOCCUPIED
+					|| floodFill.isVisited(location)) {
+				continue;
+			}
+
+			int areaSize = floodFill.fill(board, location);
+			boolean bordersBlack = floodFill.borders(ProtocolMessages.BLACK);
+			boolean bordersWhite = floodFill.borders(ProtocolMessages.WHITE);
+			if (bordersBlack && !bordersWhite) {
+				scoreBlack += areaSize;
+			} else if (bordersWhite && !bordersBlack) {
+				scoreWhite += areaSize;
+			}
+		}
+		return new Score(scoreBlack, scoreWhite);
+	}
+
+	/**
+	 * Remove all captured stones from a board on which a stone was placed: first those of the
+	 * not-current-player's color, then those of the current player (suicide is allowed).
+	 *
+	 * @param board, a string representation of the board after placing the stone
+	 * @param color, the color of the player that placed the last stone
+	 * @return a string representation of the board after removing all captured stones
+	 */
+	public String removeCapturedStones(String board, char color) {
+		Context context = CONTEXTS.get();
+		context.load(board);
+		context.bitboard.removeCapturedGroups(opponentOf(color));
+		context.bitboard.removeCapturedGroups(color);
+		return context.bitboard.toString();
+	}
+
+	/**
+	 * Place a stone and remove the stones that are captured by it. Only the chains next to the
+	 * stone are checked.
+	 *
+	 * @param board, a string representation of the board before placing the stone
+	 * @param location, an unoccupied location on the board
+	 * @param color, the color of the player that places the stone
+	 * @return a string representation of the board after removing all captured stones
+	 */
+	public String placeStone(String board, int location, char color) {
+		Context context = CONTEXTS.get();
+		context.load(board);
+		context.captureResolver.placeStone(context.bitboard, location, color);
+		return context.bitboard.toString();
+	}
+
+	/**
+	 * Check whether placing a stone is a valid move: the location is an unoccupied location on
+	 * the board and the board after placing the stone and removing captured stones was not seen
+	 * before.
+	 *
+	 * @param board, a string representation of the current board
+	 * @param location, the location of the stone
+	 * @param color, the color of the player doing the move
+	 * @param prevBoards, all boards that were seen before, is not changed
+	 * @return true if the move is valid
+	 */
+	public boolean isValidMove(String board, int location, char color,
+			PositionHistory prevBoards) {
+		if (!isUnoccupiedLocation(board, location)) {
+			return false;
+		}
+		Context context = CONTEXTS.get();
+		context.load(board);
+		context.captureResolver.placeStone(context.bitboard, location, color);
+		return !prevBoards.contains(context.bitboard);
+	}
+
+	/**
+	 * Check whether placing a stone is a valid move, see isValidMove(String, int, char,
+	 * PositionHistory).
+	 *
+	 * @param board, a string representation of the current board
+	 * @param location, the location of the stone
+	 * @param color, the color of the player doing the move
+	 * @param prevBoards, all boards that were seen before, is not changed
+	 * @return true if the move is valid
+	 */
+	public boolean isValidMove(String board, int location, char color, List<String> prevBoards) {
+		if (!isUnoccupiedLocation(board, location)) {
+			return false;
+		}
+		Context context = CONTEXTS.get();
+		context.load(board);
+		context.captureResolver.placeStone(context.bitboard, location, color);
+		for (String aPrevBoard : prevBoards) {
+			if (context.bitboard.matches(aPrevBoard)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Label the chains of a board and determine their liberties and hashes.
+	 */
+	private static void findChains(Context context, Bitboard board, BoardTopology topology) {
+		FloodFill floodFill = context.floodFillFor(board.getBoardDimension());
+		ZobristHash zobristHash = ZobristHash.forDimension(board.getBoardDimension());
+
+		floodFill.beginScan();
+		int numberOfIntersections = topology.getNumberOfIntersections();
+		for (int start = 0; start < numberOfIntersections; start++) {
+			char color = board.get(start);
+			if (color == ProtocolMessages.UNOCCUPIED || floodFill.isVisited(start)) {
+				continue;
+			}
+
+			int size = floodFill.fill(board, start);
+			long hash = 0L;
+			int firstLiberty = -1;
+			int liberties = 0;
+			for (int index = 0; index < size; index++) {
+				int stone = floodFill.getLocation(index);
+				context.chainOf[stone] = start;
+				hash ^= zobristHash.key(stone, color);
+
+				int degree = topology.getDegree(stone);
+				for (int n = 0; n < degree && liberties < 2; n++) {
+					int neighbor = topology.getNeighbor(stone, n);
+					if (board.get(neighbor) != ProtocolMessages.UNOCCUPIED
+							|| neighbor == firstLiberty) {
+						continue;
+					}
+					if (firstLiberty == -1) {
+						firstLiberty = neighbor;
+					}
+					liberties++;
+				}
+			}
+			context.chainLiberties[start] = liberties;
+			context.chainHash[start] = hash;
+		}
+	}
+
+	private static boolean isCounted(int[] chains, int numberOfChains, int chain) {
+		for (int index = 0; index < numberOfChains; index++) {
+			if (chains[index] == chain) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isUnoccupiedLocation(String board, int location) {
+		return location >= 0 && location < board.length()
+				&& board.charAt(location) == ProtocolMessages.UNOCCUPIED;
+	}
+
+	private static char opponentOf(char color) {
+		if (color == ProtocolMessages.BLACK) {
+			return ProtocolMessages.WHITE;
+		}
+		return ProtocolMessages.BLACK;
+	}
+}
@@ -0,0 +1,51 @@
+package ruleimplementations;
+
+import protocol.ProtocolMessages;
+
+/**
+ * The scores of the two players on a board. A Score does not change after it is created, so it
+ * can be shared between threads.
+ */
+
+public final class Score {
+
+	private final double scoreBlack;
+	private final double scoreWhite;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param scoreBlack, the score of black, komi included
+	 * @param scoreWhite, the score of white
+	 */
+	public Score(double scoreBlack, double scoreWhite) {
+		this.scoreBlack = scoreBlack;
+		this.scoreWhite = scoreWhite;
+	}
+
+	public double getScoreBlack() {
+		return scoreBlack;
+	}
+
+	public double getScoreWhite() {
+		return scoreWhite;
+	}
+
+	/**
+	 * Determine which player has the highest score.
+	 *
+	 * @return ProtocolMessages.BLACK if black has a higher score, ProtocolMessages.WHITE
+	 * 		otherwise
+	 */
+	public char getWinner() {
+		if (scoreBlack > scoreWhite) {
+			return ProtocolMessages.BLACK;
+		}
+		return ProtocolMessages.WHITE;
+	}
+
+	@Override
+	public String toString() {
+		return "B " + scoreBlack + " W " + scoreWhite;
+	}
+}
@@ -0,0 +1,79 @@
+package ruleimplementations;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import protocol.ProtocolMessages;
+
+/**
+ * Zobrist hashing of GO boards.
+ * 
+ * Every combination of a location and a color gets a random 64-bit key. The hash of a board is 
+ * the XOR of the keys of all its stones, so placing or removing a stone changes the hash by 
+ * XOR-ing a single key, without looking at the rest of the board. Two different boards can 
+ * have the same hash, so equal hashes still need to be confirmed by comparing the boards.
+ * 
+ * The keys only depend on the board size and are shared by all games of that size.
+ */
+
+public final class ZobristHash {
+	
+	private static final long SEED = 0x5EADE7601L;
+	private static final ConcurrentMap<Integer, ZobristHash> KEYS_PER_DIMENSION = 
+			new ConcurrentHashMap<Integer, ZobristHash>();
+	
+	private final long[] blackKeys;
+	private final long[] whiteKeys;
+	
+	private ZobristHash(int boardDimension) {
+		int numberOfIntersections = boardDimension * boardDimension;
+		blackKeys = new long[numberOfIntersections];
+		whiteKeys = new long[numberOfIntersections];
+		
+		Random random = new Random(SEED + boardDimension);
+		for (int location = 0; location < numberOfIntersections; location++) {
+			blackKeys[location] = random.nextLong();
+			whiteKeys[location] = random.nextLong();
+		}
+	}
+	
+	/**
+	 * Get the keys for boards of the given size.
+	 * 
+	 * @param boardDimension, the size (length / height) of the board
+	 */
+	public static ZobristHash forDimension(int boardDimension) {
+		return KEYS_PER_DIMENSION.computeIfAbsent(boardDimension, ZobristHash::new);
+	}
+	
+	/**
+	 * Get the key of a stone.
+	 * 
+	 * @param location, an int indicating an intersection on the board
+	 * @param color, the color of the stone; ProtocolMessages.UNOCCUPIED has key 0
+	 * @return the value to XOR with a hash when the stone is placed or removed
+	 */
+	public long key(int location, char color) {
+		if (color == ProtocolMessages.BLACK) {
+			return blackKeys[location];
+		} else if (color == ProtocolMessages.WHITE) {
+			return whiteKeys[location];
+		}
+		return 0L;
+	}
+	
+	/**
+	 * Calculate the hash of a board from scratch.
+	 * 
+	 * @param board, a string representation of the board
+	 * @return the XOR of the keys of all stones on the board
+	 */
+	public long hash(String board) {
+		long hash = 0L;
+		for (int location = 0; location < board.length(); location++) {
+			hash ^= key(location, board.charAt(location));
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,299 @@
+package server;
+
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import protocol.Message;
+import protocol.MessageGenerator;
+import protocol.ProtocolMessages;
+
+/**
+ * This class contains the handshake that is shared by the different client handlers.
+ * A client handler handles all communication between the server and one client:
+ * ClientHandler does so with a thread per client that blocks on the socket,
+ * NioClientHandler with an event loop that serves many clients, and LocalClientHandler
+ * with direct calls by a client in the same JVM.
+ */
+
+public abstract class AbstractClientHandler implements Handler {
+
+	/**
+	 * The number of bytes of messages that can wait for a client that is served over a socket.
+	 * A client that lets more wait does not read, and is evicted.
+	 */
+	public static final int MAX_UNSENT_BYTES = 1024 * 1024;
+
+	/** The connected Server. */
+	protected Server srv;
+
+	/** Name of the connected client. */
+	protected String clientName;
+
+	/** The game connected with this ClientHandler. */
+	protected Game thisClientsGame;
+
+	/** Communication version of this client-server combination). */
+	protected String version;
+
+	protected MessageGenerator messageGenerator = new MessageGenerator();
+
+	/**
+	 * Held from adding the client to a game until its handshake reply is sent, so that the
+	 * start message of its game, sent by the thread of the second player, cannot go first.
+	 */
+	private ReentrantLock handshakeLock = new ReentrantLock();
+
+	/**
+	 * Whether the messages after the handshake reply are binary frames (see FrameCodec), in 
+	 * both directions. Set once the reply is sent.
+	 */
+	protected volatile boolean frames = false;
+
+	/**
+	 * Whether the whole boards of large games are sent as runs (see RunLength), as agreed in
+	 * the handshake. Set before the client is added to a game.
+	 */
+	protected volatile boolean runLength = false;
+
+	/** When the last message of the client arrived (System.nanoTime), for the heartbeat. */
+	private volatile long lastSeen = System.nanoTime();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param srv, the connected server
+	 */
+	public AbstractClientHandler(Server srv) {
+		this.srv = srv;
+	}
+
+	/**
+	 * Send the start game message to the client, when it is the first player of a game and the
+	 * second player is to be added. Checks whether the client did not disconnect while waiting.
+	 *
+	 * @param board, a string representation of the board
+	 * @param color, the color of the client
+	 * @throws IOException when the client is no longer connected
+	 */
+	public abstract void sendStartGameMessage(String board, char color) throws IOException;
+
+	/**
+	 * Send the start game message to the client once its handshake reply is sent, see
+	 * sendStartGameMessage.
+	 *
+	 * @param board, a string representation of the board
+	 * @param color, the color of the client
+	 * @throws IOException when the client is no longer connected
+	 */
+	void sendStartGameMessageAfterHandshake(String board, char color) throws IOException {
+		handshakeLock.lock();
+		try {
+			sendStartGameMessage(board, color);
+		} finally {
+			handshakeLock.unlock();
+		}
+	}
+
+	/**
+	 * Send a ping to the client, without waiting for a connection that takes no more bytes.
+	 */
+	abstract void ping();
+
+	/**
+	 * Write the messages that were kept for the end of a WriteBatch.
+	 */
+	abstract void flushOutput();
+
+	/**
+	 * Close the connection to a client that did not answer the pings of the heartbeat. The game
+	 * of the client ends as if the client disconnected.
+	 */
+	abstract void evict();
+
+	/**
+	 * Note that a message of the client arrived.
+	 */
+	protected void seen() {
+		lastSeen = System.nanoTime();
+	}
+
+	/**
+	 * @return when the last message of the client arrived, in System.nanoTime
+	 */
+	long getLastSeen() {
+		return lastSeen;
+	}
+
+	/**
+	 * @return whether the message is the answer of the client to a ping
+	 */
+	protected static boolean isPong(String msg) {
+		return msg.length() == 1 && msg.charAt(0) == ProtocolMessages.PONG;
+	}
+
+	/**
+	 * @return whether the client can be pinged when it asks for it in the handshake
+	 */
+	protected boolean canPing() {
+		return true;
+	}
+
+	/**
+	 * @return whether the connection can switch to binary frames when the client asks for it
+	 *         in the handshake
+	 */
+	protected boolean canUseFrames() {
+		return true;
+	}
+
+	/**
+	 * @return whether whole boards can be sent as runs when the client asks for it in the
+	 *         handshake
+	 */
+	protected boolean canUseRunLength() {
+		return true;
+	}
+
+	/**
+	 * Handle a message of the client: the handshake when the client is not in a game yet,
+	 * otherwise a reply for its game. Answers to pings only show that the client is there.
+	 * When the client is the second player of its game, the server is told to start the game.
+	 * The message is only used during the call, so the caller can reuse it.
+	 */
+	protected void handleMessage(Message msg) {
+		if (thisClientsGame == null || msg.isRaw()) {
+			handleLine(msg.toString());
+			return;
+		}
+		seen();
+		if (msg.getCommand() != ProtocolMessages.PONG) {
+			thisClientsGame.onReply(this, msg);
+		}
+	}
+
+	/**
+	 * Handle a line of the client, see handleMessage.
+	 */
+	protected void handleLine(String msg) {
+		seen();
+		if (isPong(msg)) {
+			return;
+		}
+		if (thisClientsGame != null) {
+			thisClientsGame.onReply(this, msg);
+			return;
+		}
+
+		if (msg.length() > 0 && msg.charAt(0) == ProtocolMessages.HANDSHAKE) {
+			doHandshakeAndAddToGame(msg);
+			if (thisClientsGame != null && thisClientsGame.hasTwoPlayers()
+					&& thisClientsGame.getClientHandlerPlayer2() == this) {
+				srv.startGame(thisClientsGame);
+			}
+		} else {
+			sendMessageToClient(messageGenerator.errorMessage("The client did not comply "
+					+ "with the protocol: a handshake message was expected, but " + msg +
+					" was received.", version));
+		}
+	}
+
+	/**
+	 * Check handshake message from the client. Should follow this protocol:
+	 * PROTOCOL.handshake + PROTOCOL.delimiter + requestedVersion + PROTOCOL.delimiter + naamClient
+	 * optionally these at the end: + PROTOCOL.delimiter + PROTOCOL.white/black
+	 * and + PROTOCOL.delimiter + PROTOCOL.ping, if the client answers pings,
+	 * and + PROTOCOL.delimiter + PROTOCOL.frames, if the client reads and writes binary frames
+	 * and + PROTOCOL.delimiter + PROTOCOL.runLength, if the client reads boards as runs
+	 *
+	 * Upon receiving a handshake message from the client, send handshake command to the server.
+	 * The server will check the handshake, construct the appropriate reply and add the client
+	 * to a game. The reply + information about the game are send back to the client.
+	 */
+
+	protected void doHandshakeAndAddToGame(String msg) {
+
+		//Check the components of the client's message
+		String[] commands = msg.split(ProtocolMessages.DELIMITER);
+
+		String command = commands[0];
+		if (command.length() != 1) {
+			sendMessageToClient(messageGenerator.errorMessage("Client did not keep to the "
+					+ "handshake protocol. Excepted 'H' as 1st component of the message, received "
+					+ command + ".", version));
+			return;
+		}
+		if (commands.length < 3) {
+			sendMessageToClient(messageGenerator.errorMessage("Client did not keep to the "
+					+ "handshake protocol. Excepted both version and name as components of the "
+					+ "message, received " + command + ".", version));
+			return;
+		}
+		String requestedVersion = commands[1];
+		clientName = commands[2];
+		String wantedColor = (commands.length > 3) ? commands[3] : null;
+		boolean heartbeat = false;
+		boolean useFrames = false;
+		boolean useRunLength = false;
+		for (int index = 4; index < commands.length; index++) {
+			if (commands[index].equals(Character.toString(ProtocolMessages.PING))) {
+				heartbeat = canPing();
+			} else if (commands[index].equals(Character.toString(ProtocolMessages.FRAMES))) {
+				useFrames = canUseFrames();
+			} else if (commands[index].equals(Character.toString(ProtocolMessages.RUN_LENGTH))) {
+				useRunLength = canUseRunLength();
+			}
+		}
+
+		// Get a handshake message from the server & instruct the server to add client to a game.
+		version = srv.negotiateVersion(requestedVersion);
+		String handshakeResponse = srv.doHandshake(requestedVersion, clientName);
+		runLength = useRunLength;
+		handshakeLock.lock();
+		try {
+			thisClientsGame = srv.addClientToGame(clientName, wantedColor, this);
+			sendHandshakeReply(handshakeResponse, heartbeat, useFrames, useRunLength);
+			frames = useFrames;
+		} finally {
+			handshakeLock.unlock();
+		}
+
+		//Only ping a client that knows that pings can come
+		if (heartbeat) {
+			srv.watch(this);
+		}
+	}
+
+	/**
+	 * Send the handshake reply, with the game that the client was added to.
+	 *
+	 * @param handshakeResponse, the handshake message of the server
+	 * @param heartbeat, whether the client asked for pings
+	 * @param useFrames, whether the messages after the reply are frames
+	 * @param useRunLength, whether large boards are sent as runs
+	 */
+	private void sendHandshakeReply(String handshakeResponse, boolean heartbeat, 
+			boolean useFrames, boolean useRunLength) {
+		String gameMessage = "";
+		if (thisClientsGame.hasTwoPlayers()) {
+			gameMessage = " You have been added to game " + thisClientsGame.getGameNumber() + ". " +
+					"You are the second player, the game will start soon!";
+		} else {
+			gameMessage = " You have been added to game " + thisClientsGame.getGameNumber() + ". " +
+					"You are the first player, please wait for the second player.";
+		}
+
+		//Send the server's handshake message + game info to the client.
+		String message = handshakeResponse + gameMessage;
+		if (heartbeat) {
+			message = message + ProtocolMessages.DELIMITER + ProtocolMessages.PING;
+		}
+		if (useFrames) {
+			message = message + ProtocolMessages.DELIMITER + ProtocolMessages.FRAMES;
+		}
+		if (useRunLength) {
+			message = message + ProtocolMessages.DELIMITER + ProtocolMessages.RUN_LENGTH;
+		}
+
+		sendMessageToClient(message);
+	}
+}
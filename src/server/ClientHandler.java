@@ -1,216 +1,322 @@
 package server;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.util.concurrent.TimeUnit;
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
-import protocol.MessageGenerator;
-import protocol.ProtocolMessages;
+import protocol.EncodedBoard;
+import protocol.EncodedMessage;
+import protocol.FrameCodec;
+import protocol.Message;
+import protocol.MessageReader;
 
-import java.net.SocketTimeoutException;
 
 /**
  * The GoClientHandler handles all communication between the server and the client.
+ *
+ * The thread of the handler reads every message of the client, also while the client waits for
+ * a second player or for its turn, so that answers to pings are noticed and a disconnection is
+ * noticed right away. The replies drive the game of the client (Game.onReply), which has no
+ * thread of its own.
+ *
+ * The messages to the client are written by a second thread of the handler, so that sending
+ * never waits for the socket: the thread that sends, which may be the timer of the server or
+ * the thread of another client, only adds the message to the unsent bytes. The messages that
+ * are sent while an event is handled are written together at the end of the event (see
+ * WriteBatch). A client that lets more than MAX_UNSENT_BYTES wait does not read, and is evicted.
+ * After the handshake, the messages are lines or binary frames, as agreed in the handshake (see
+ * FrameCodec).
  */
 
-public class ClientHandler implements Runnable, Handler {
-	
+public class ClientHandler extends AbstractClientHandler implements Runnable {
+
 	/** The In- and OutputStreams to communicate with the client. */
-	private BufferedReader in;
-	private BufferedWriter out;
+	private InputStream in;
+	private OutputStream out;
 	private Socket sock;
-	
-	/** The connected Server. */
-	private Server srv;
-
-	/** Name of the connected client. */
-	private String clientName;
-	
-	/** The game connected with this ClientHandler. */
-	private Game thisClientsGame;
-	
-	/** Communication version of this client-server combination). */
-	private String version;
-	
-	private MessageGenerator messageGenerator = new MessageGenerator();
+
+	/**
+	 * The bytes of the messages that are not written yet, and the bytes that the writer thread
+	 * is writing: the writer thread swaps them, and is the only thread that writes the socket.
+	 * Guarded by the output lock, which is never held while the socket is written. Not a 
+	 * synchronized block: a virtual thread that waits for it would keep its carrier thread.
+	 */
+	private Output unsent;
+	private Output writing;
+	private ReentrantLock outputLock = new ReentrantLock();
+	private Condition flushRequested = outputLock.newCondition();
+	private boolean flushing = false;
+
+	private AtomicBoolean connected = new AtomicBoolean(true);
 
 	/**
 	 * Constructs a new GoClientHandler. Opens the In- and OutputStreams.
-	 * 
+	 *
 	 * @param sock The socket of the server that connects to a certain client
 	 * @param srv  The connected server
+	 * @param outputBufferSize The initial size of the buffers of the messages to the client, in 
+	 *                         bytes
 	 */
-	
-	public ClientHandler(Socket sock, Server srv) {
+
+	public ClientHandler(Socket sock, Server srv, int outputBufferSize) {
+		super(srv);
+		this.sock = sock;
+		unsent = new Output(outputBufferSize);
+		writing = new Output(outputBufferSize);
 		try {
-			in = new BufferedReader(
-					new InputStreamReader(sock.getInputStream()));
-			out = new BufferedWriter(
-					new OutputStreamWriter(sock.getOutputStream()));
-			this.sock = sock;
-			this.srv = srv;
+			in = sock.getInputStream();
+			out = sock.getOutputStream();
 		} catch (IOException e) {
 			shutdown();
 		}
 	}
 
 	/**
-	 * Method that listens for a handshake message from the client. Once it receives this message, 
-	 * it instructs the server to return the handshake and to add the client as a player to a game.
-	 * If it is the second player added to that game, the Game object is told to start the game.
+	 * Start the threads of this handler: the thread that reads the messages of the client
+	 * (run), and the thread that writes the messages to the client.
+	 *
+	 * @param threadFactory, creates the threads
+	 */
+	public void start(ThreadFactory threadFactory) {
+		threadFactory.newThread(this).start();
+		threadFactory.newThread(this::writeOutput).start();
+	}
+
+	/**
+	 * Method that listens for messages from the client until it disconnects. Once it receives
+	 * the handshake message, it instructs the server to return the handshake and to add the
+	 * client as a player to a game. If it is the second player added to that game, the server
+	 * is told to start the game. The messages are read into one Message (see MessageReader).
 	 */
 	public void run() {
-		String msg;
-		
+		MessageReader reader = new MessageReader(in);
+		Message msg = new Message();
 		try {
-			msg = in.readLine();
-			if (msg.charAt(0) == ProtocolMessages.HANDSHAKE) {
-				doHandshakeAndAddToGame(msg);
-			} else {
-				sendMessageToClient(messageGenerator.errorMessage("The client did not comply "
-						+ "with the protocol: a handshake message was expected, but " + msg + 
-						" was received.", version));
-			}
-			
-			if (thisClientsGame.hasTwoPlayers()) {
-				thisClientsGame.runGame();
+			while (reader.read(msg, frames)) {
+				WriteBatch.begin();
+				try {
+					handleMessage(msg);
+				} finally {
+					WriteBatch.end();
+				}
 			}
 		} catch (IOException e) {
-			shutdown();
-		}
-	}
-	
-	/**
-	 * Check handshake message from the client. Should follow this protocol:
-	 * PROTOCOL.handshake + PROTOCOL.delimiter + requestedVersion + PROTOCOL.delimiter + naamClient 
-	 * optionally these at the end: + PROTOCOL.delimiter + PROTOCOL.white/black
-	 * 
-	 * Upon receiving a handshake message from the client, send handshake command to the server. 
-	 * The server will check the handshake, construct the appropriate reply and add the client 
-	 * to a game. The reply + information about the game are send back to the client.
-	 */
-	
-	private void doHandshakeAndAddToGame(String msg) {
-		
-		//Check the components of the client's message
-		String[] commands = msg.split(ProtocolMessages.DELIMITER);
-		
-		String command = commands[0];
-		if (command.length() != 1) {
-			sendMessageToClient(messageGenerator.errorMessage("Client did not keep to the "
-					+ "handshake protocol. Excepted 'H' as 1st component of the message, received " 
-					+ command + ".", version));
-			return;
+			// The connection was closed or broken.
 		}
-		if (commands.length < 3) {
-			sendMessageToClient(messageGenerator.errorMessage("Client did not keep to the "
-					+ "handshake protocol. Excepted both version and name as components of the "
-					+ "message, received " + command + ".", version));
-			return;
-		}
-		String requestedVersion = commands[1];
-		clientName = commands[2];
-		String wantedColor = (commands.length > 3) ? commands[3] : null; 
-		
-		// Get a handshake message from the server & instruct the server to add client to a game.
-		String handshakeResponse = srv.doHandshake(requestedVersion, clientName);
-		thisClientsGame = srv.addClientToGame(clientName, wantedColor, this);
-		String gameMessage = "";
-		if (thisClientsGame.hasTwoPlayers()) {
-			gameMessage = " You have been added to game " + thisClientsGame.getGameNumber() + ". " +
-					"You are the second player, the game will start soon!"; 
-		} else {
-			gameMessage = " You have been added to game " + thisClientsGame.getGameNumber() + ". " +
-					"You are the first player, please wait for the second player."; 
-		}
-		
-		//Send the server's handshake message + game info to the client.
-		String message = handshakeResponse + gameMessage;
-		
-		sendMessageToClient(message);
-		
+		shutdown();
 	}
 
 	/**
 	 * Send start game message to the first connected client when the second player it to be added
-	 * to the same game to check whether the first player did not disconnect.
-	 * 
+	 * to the same game, if the first player did not disconnect. A disconnection is noticed by
+	 * the thread of this handler as soon as it happens, so no test message is needed.
+	 *
 	 * @param board
 	 * @param color
 	 * @throws IOException when the client is no longer connected
 	 */
-	public void startGameMessageInTwoParts(String board, char color) throws IOException {
-		String startMessage1part1 = messageGenerator.startGameMessagePart1();
-		String startMessage1part2 = messageGenerator.startGameMessagePart2(board, color);
+	@Override
+	public void sendStartGameMessage(String board, char color) throws IOException {
+		if (!connected.get()) {
+			throw new IOException("Client " + clientName + " disconnected.");
+		}
+		sendMessageToClient(EncodedMessage.startGame(new EncodedBoard(board), color));
+	}
 
+	/**
+	 * Send a message to the client: add it to the unsent bytes, which the writer thread writes
+	 * at the end of the event that is being handled if there is one. If the client lets too 
+	 * many bytes wait, the socket is closed, after which the thread of this handler shuts it 
+	 * down: not the thread that sends, which may be handling an event of the game.
+	 */
+	public void sendMessageToClient(String msg) {
+		outputLock.lock();
 		try {
-			out.write(startMessage1part1);
-			out.flush();
+			write(msg, unsent);
+			sent();
 		} catch (IOException e) {
-			e.printStackTrace();
+			// Not thrown by the unsent bytes.
+		} finally {
+			outputLock.unlock();
 		}
-		
-		//Need to wait, otherwise it does not go into the exception
-		try {
-			TimeUnit.SECONDS.sleep(1);
-		} catch (InterruptedException e1) {
-			e1.printStackTrace();
-		}
-		
-		out.write(startMessage1part2);
-		out.newLine();
-		out.flush();
 	}
-	
+
 	/**
-	 * Send a message from to the client.
+	 * Send a message that is encoded once for all of its recipients: its shared bytes are
+	 * added to the unsent bytes, see sendMessageToClient(String).
 	 */
-	public void sendMessageToClient(String msg) {
+	@Override
+	public void sendMessageToClient(EncodedMessage msg) {
+		outputLock.lock();
 		try {
-			out.write(msg);
-			out.newLine();
-			out.flush();
+			msg.writeTo(unsent, frames, runLength);
+			sent();
 		} catch (IOException e) {
-			shutdown();
+			// Not thrown by the unsent bytes.
+		} finally {
+			outputLock.unlock();
 		}
 	}
-	
+
+	/**
+	 * Let the writer thread write a message that was added to the unsent bytes, at the end of
+	 * the batch if there is one, or evict the client if it lets too many bytes wait.
+	 *
+	 * @requires the output lock is held
+	 */
+	private void sent() {
+		if (unsent.length > MAX_UNSENT_BYTES) {
+			unsent.length = 0;
+			System.out.println("> Client " + clientName + " does not read its messages and is "
+					+ "evicted.");
+			evict();
+		} else if (!WriteBatch.defer(this)) {
+			flushing = true;
+			flushRequested.signal();
+		}
+	}
+
+	/**
+	 * Send a ping. It is queued like any message, so the heartbeat never waits for a client
+	 * that does not read: such a client lets its unsent bytes grow, or stops answering.
+	 */
+	@Override
+	void ping() {
+		sendMessageToClient(messageGenerator.pingMessage());
+	}
+
 	/**
-	 * Get a message from client. Client has 1 minute to reply
+	 * Close the socket, after which the thread of this handler shuts it down.
 	 */
-	public String getReply() throws SocketTimeoutException {
-		String reply = "";
-		
+	@Override
+	void evict() {
 		try {
-			sock.setSoTimeout(60000);
-			BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(
-																	sock.getInputStream()));
-			reply = bufferedReader.readLine();
-		} catch (SocketTimeoutException e) {
-			throw e;
+			sock.close();
 		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Let the writer thread write the messages that were sent while an event was handled.
+	 */
+	@Override
+	void flushOutput() {
+		outputLock.lock();
+		try {
+			flushing = true;
+			flushRequested.signal();
+		} finally {
+			outputLock.unlock();
+		}
+	}
+
+	/**
+	 * Write a message as one line, or as one frame after a handshake that asked for frames.
+	 *
+	 * @param to, the unsent bytes
+	 */
+	private void write(String msg, OutputStream to) throws IOException {
+		if (frames) {
+			FrameCodec.writeFrame(msg, to);
+		} else {
+			FrameCodec.writeLine(msg, to);
+		}
+	}
+
+	/**
+	 * The loop of the writer thread: wait until messages are to be written, take the unsent 
+	 * bytes and write them with one write, while the messages that are sent meanwhile are added
+	 * to the other buffer. Ends when the connection is shut down or broken.
+	 */
+	private void writeOutput() {
+		try {
+			while (true) {
+				outputLock.lock();
+				try {
+					while (!flushing && connected.get()) {
+						flushRequested.await();
+					}
+					if (!flushing) {
+						return;
+					}
+					flushing = false;
+					Output taken = unsent;
+					unsent = writing;
+					writing = taken;
+				} finally {
+					outputLock.unlock();
+				}
+				out.write(writing.bytes, 0, writing.length);
+				out.flush();
+				writing.length = 0;
+			}
+		} catch (IOException | InterruptedException e) {
+			// The thread of this handler notices the closed socket.
+			evict();
 		}
-		
-		return reply;
 	}
-	
+
 	/**
-	 * Shut down the connection to this client by closing the socket and 
-	 * the In- and OutputStreams.
+	 * Shut down the connection to this client by closing the socket, which closes the
+	 * In- and OutputStreams. The game of the client, if it is being played, ends.
 	 */
 	private void shutdown() {
+		if (!connected.compareAndSet(true, false)) {
+			return;
+		}
 		System.out.println("> Handler of client " + clientName + " is shutting down.");
 		try {
-			in.close();
-			out.close();
 			sock.close();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		outputLock.lock();
+		try {
+			flushRequested.signal();
+		} finally {
+			outputLock.unlock();
+		}
 		srv.removeClient(this);
+		if (thisClientsGame != null) {
+			thisClientsGame.onDisconnect(this);
+		}
+	}
+
+	/**
+	 * The bytes of messages to the client, in an array that grows when needed and is reused.
+	 */
+	private static final class Output extends OutputStream {
+		private byte[] bytes;
+		private int length = 0;
+
+		private Output(int size) {
+			bytes = new byte[Math.max(size, 1)];
+		}
+
+		@Override
+		public void write(int b) {
+			makeRoom(1);
+			bytes[length++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			makeRoom(len);
+			System.arraycopy(b, off, bytes, length, len);
+			length += len;
+		}
+
+		private void makeRoom(int numberOfBytes) {
+			if (length + numberOfBytes > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + numberOfBytes));
+			}
+		}
 	}
 }
@@ -0,0 +1,160 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * One I/O thread of the server: waits with a selector until any of its clients can be read
+ * from or written to, and lets the NioClientHandler of that client handle it.
+ *
+ * A few event loops serve all clients, so a client that waits for a game or for its turn does
+ * not hold a thread. Other threads hand work to the loop with execute, for example to register
+ * a new client or to write a message that was sent from another thread.
+ */
+
+public class EventLoop implements Runnable {
+
+	/** Size of the buffer that the clients of this loop are read into. */
+	private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+	private Selector selector;
+	private Thread thread;
+	private volatile boolean running = true;
+
+	/** Work handed to this loop by other threads. */
+	private Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+	/** Buffer shared by all clients of this loop: a client's bytes are handled right away. */
+	private ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+	/**
+	 * Constructor, opens the selector.
+	 *
+	 * @throws IOException if the selector cannot be opened
+	 */
+	public EventLoop() throws IOException {
+		selector = Selector.open();
+	}
+
+	/**
+	 * Start the thread of this loop.
+	 *
+	 * @param name, the name of the thread
+	 */
+	public void start(String name) {
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop the loop and close the selector.
+	 */
+	public void stop() {
+		running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Check whether the current thread is the thread of this loop.
+	 */
+	public boolean inEventLoop() {
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * Run a task on the thread of this loop, after the events that are being handled.
+	 *
+	 * @param task, the work to do
+	 */
+	public void execute(Runnable task) {
+		tasks.add(task);
+		selector.wakeup();
+	}
+
+	/**
+	 * Let this loop handle a client from now on.
+	 *
+	 * @param channel, the non-blocking channel of the client
+	 * @param handler, the handler of the client
+	 */
+	public void register(SocketChannel channel, NioClientHandler handler) {
+		execute(() -> {
+			try {
+				handler.setSelectionKey(channel.register(selector, SelectionKey.OP_READ, handler));
+			} catch (IOException e) {
+				handler.shutdown();
+			}
+		});
+	}
+
+	/**
+	 * Get the buffer to read a client into, cleared. Only to be used on the thread of the loop.
+	 */
+	ByteBuffer readBuffer() {
+		readBuffer.clear();
+		return readBuffer;
+	}
+
+	/**
+	 * Wait for events and handle them until the loop is stopped. The messages that are sent
+	 * while the events of a round are handled are written at the end of the round.
+	 */
+	public void run() {
+		while (running) {
+			try {
+				selector.select();
+			} catch (IOException e) {
+				break;
+			}
+
+			WriteBatch.begin();
+			try {
+				handleEvents();
+			} finally {
+				WriteBatch.end();
+			}
+		}
+
+		try {
+			selector.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Run the tasks that were handed to this loop, and handle the clients that can be read
+	 * from or written to.
+	 */
+	private void handleEvents() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			task.run();
+		}
+
+		Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+		while (selectedKeys.hasNext()) {
+			SelectionKey key = selectedKeys.next();
+			selectedKeys.remove();
+			NioClientHandler handler = (NioClientHandler) key.attachment();
+			try {
+				if (key.isWritable()) {
+					handler.flush();
+				}
+				if (key.isValid() && key.isReadable()) {
+					handler.read();
+				}
+			} catch (CancelledKeyException e) {
+				handler.shutdown();
+			}
+		}
+	}
+}
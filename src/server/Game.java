@@ -1,8 +1,14 @@
 package server;
 
-import java.net.SocketTimeoutException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
+import protocol.BoardDelta;
+import protocol.BoardEncoding;
+import protocol.EncodedBoard;
+import protocol.EncodedMessage;
+import protocol.Message;
 import protocol.MessageGenerator;
 import protocol.ProtocolMessages;
 import ruleimplementations.*;
@@ -13,8 +19,12 @@ public class Game {
 	private String version;
 	private int boardDimension;
 	public static final double KOMI = 0.5;
+	/** The time a player has to reply to a turn, in milliseconds. */
+	public static final int REPLY_TIMEOUT = 60000;
+	/** The most messages a player can send before its turn. */
+	public static final int MAX_EARLY_REPLIES = 8;
 	private char reasonGameEnd;
-	private String opponentsMove = null;
+	private StringBuilder opponentsMove;
 	private int waitTime;
 	
 	/** Variable to keep track of and connect to the players. */
@@ -38,13 +48,65 @@ public class Game {
 	private boolean firstPlayersTurn = true;
 	private boolean gameEnded = false;
 	
-	/** The board and all previous boards, represented as strings. */
-	private String board;
-	private List<String> prevBoards = new ArrayList<String>();
+	/** The board, also represented as a string, and all previous boards. */
+	private Position position;
+	private StringBuilder board;
+	private PositionHistory prevBoards;
+	
+	/** 
+	 * The changes of the board by the last move, and how each player gets the boards: whole, 
+	 * or as the changes of the last move (see BoardDelta). A player that gets the changes, gets 
+	 * the whole board every BoardDelta.RESYNC_INTERVAL messages with a board.
+	 */
+	private StringBuilder changes;
+	private BoardEncoding boardEncodingPlayer1 = BoardEncoding.FULL;
+	private BoardEncoding boardEncodingPlayer2 = BoardEncoding.FULL;
+	private int boardsSentPlayer1 = 0;
+	private int boardsSentPlayer2 = 0;
+	
+	/** 
+	 * The board after the last move, encoded once for every message and player that gets it 
+	 * (see EncodedBoard). Built around board and changes, and reset when they change.
+	 */
+	private EncodedBoard encodedBoard;
+	
+	/** 
+	 * The turn message and the result message of a valid move, around encodedBoard and 
+	 * opponentsMove: reset for every message instead of built again.
+	 */
+	private EncodedMessage turnMessage;
+	private EncodedMessage resultMessage;
+	
+	/** Buffer in which the messages to the players are built, reused for every message. */
+	private StringBuilder message;
+	
+	/** 
+	 * Variables for a game that is driven by the messages of the players (see start). The lock
+	 * is held by the thread that handles an event of the game. It is no synchronized block: a 
+	 * virtual thread of a client that writes to a socket while holding it would keep its 
+	 * carrier thread.
+	 */
+	private ReentrantLock lock = new ReentrantLock();
+	private HashedWheelTimer timer;
+	private Runnable whenEnded;
+	private boolean awaitingReply = false;
+	
+	/** 
+	 * The time (System.nanoTime) by which the current player has to reply. It is checked by one
+	 * task that reschedules itself, not by a timeout per turn.
+	 */
+	private long replyDeadline;
+	private HashedWheelTimer.Timeout replyDeadlineCheck;
+	private Runnable checkReplyDeadline = this::checkReplyDeadline;
+	
+	/** 
+	 * The messages of each player that came before its turn, at most MAX_EARLY_REPLIES: a
+	 * player that sends more ends the game as if it disconnected.
+	 */
+	private Deque<String> earlyRepliesPlayer1 = new ArrayDeque<String>(MAX_EARLY_REPLIES);
+	private Deque<String> earlyRepliesPlayer2 = new ArrayDeque<String>(MAX_EARLY_REPLIES);
 	
 	/** Make objects of the classes that implement the GO rules. */
-	private MoveValidator moveValidator = new MoveValidator();
-	private BoardUpdater moveResult = new BoardUpdater();
 	private ScoreCalculator scoreCalculator = new ScoreCalculator();
 	private BoardState boardState = new BoardState(scoreCalculator);
 	
@@ -61,7 +123,25 @@ public class Game {
 		// Create a string representation of the empty board.
         char[] charArray = new char[boardDimension * boardDimension];
         Arrays.fill(charArray, ProtocolMessages.UNOCCUPIED);
-        board = new String(charArray);
+        // Room for a game of twice as many moves as the board has intersections before the
+        // journal and the history have to grow.
+        int expectedNumberOfMoves = charArray.length * 2;
+        position = new Position(new String(charArray), ProtocolMessages.BLACK, 
+                expectedNumberOfMoves);
+        prevBoards = new PositionHistory(expectedNumberOfMoves);
+        
+        // Buffers that are large enough for the messages of this board size.
+        board = new StringBuilder(charArray.length);
+        board.append(charArray);
+        opponentsMove = new StringBuilder();
+        // A move changes at most every location: its status and its number.
+        changes = new StringBuilder(charArray.length 
+                * (1 + Integer.toString(charArray.length).length()) + 1);
+        changes.append(ProtocolMessages.DELTA);
+        message = new StringBuilder(charArray.length + 64);
+        encodedBoard = new EncodedBoard(board, changes);
+        turnMessage = EncodedMessage.turn(encodedBoard, false, opponentsMove);
+        resultMessage = EncodedMessage.result(encodedBoard, false);
 	}
 	
 	/**
@@ -99,6 +179,14 @@ public class Game {
 		goClientHandlerPlayer2 = goClientHandler;
 	}
 	
+	public void setBoardEncodingPlayer1(BoardEncoding encoding) {
+		boardEncodingPlayer1 = encoding;
+	}
+	
+	public void setBoardEncodingPlayer2(BoardEncoding encoding) {
+		boardEncodingPlayer2 = encoding;
+	}
+	
 	public Handler getClientHandlerPlayer1() {
 		return goClientHandlerPlayer1;
 	}
@@ -108,7 +196,7 @@ public class Game {
 	}
 	
 	public String getBoard() {
-		return board;
+		return board.toString();
 	}
 	
 	public int getGameNumber() {
@@ -132,38 +220,113 @@ public class Game {
 	}
 	
 	/**
-	 * Runs the game.
-	 * Starts the game (send start messages, send first turn message), then
-	 * keeps sending turns to alternating players until game end.
+	 * Starts the game without a thread of its own: sends the start message and the first turn,
+	 * after which the game advances every time a player's reply arrives (onReply). Replies that
+	 * do not come in time and the wait time between moves are handled by the timer, so no 
+	 * thread waits for the game.
+	 * 
+	 * @param theTimer, the started timer that runs the reply deadlines and delayed replies
+	 * @param whenEnded, run once the game has ended, or null
 	 */
-	public void runGame() {
-		started = true;
-		startGame();
-		while (!gameEnded) {
-			doTurn();
-			processReply();
+	public void start(HashedWheelTimer theTimer, Runnable whenEnded) {
+		lock.lock();
+		try {
+			timer = theTimer;
+			this.whenEnded = whenEnded;
+			started = true;
+			
+			send(goClientHandlerPlayer2, EncodedMessage.startGame(encodedBoard, colorPlayer2));
+			firstPlayersTurn = (colorPlayer1 == ProtocolMessages.BLACK);
+			replyDeadlineCheck = timer.schedule(checkReplyDeadline, REPLY_TIMEOUT, 
+					TimeUnit.MILLISECONDS);
+			nextTurn();
+		} finally {
+			lock.unlock();
 		}
-		endGame();
 	}
 	
 	/**
-     * Send start game message to player 2 - the message is already sent to player 1
-     * as a still-connected check when player 2 was added to the game.
-     * 
-     * Give the first turn to the player who plays with black.
-     */
-	public void startGame() {
-		String startGameMessage = messageGenerator.startGameMessage(board, colorPlayer2);
-		goClientHandlerPlayer2.sendMessageToClient(startGameMessage);
-		
-		if (colorPlayer1 == ProtocolMessages.BLACK) {
-			firstPlayersTurn = true;
-			doTurn();
-			processReply();
-		} else {
-			firstPlayersTurn = false;
-			doTurn();
-			processReply();
+	 * Handle a message of a player of a game that was started with start. A message that is
+	 * sent when it is not the player's turn is kept until it is, as it would stay unread on the
+	 * socket of a player whose turn it is not, but a player that sends more than
+	 * MAX_EARLY_REPLIES before its turn loses, as if it disconnected.
+	 * 
+	 * @param player, the handler of the player that sent the message
+	 * @param reply, the message
+	 */
+	public void onReply(Handler player, String reply) {
+		lock.lock();
+		try {
+			if (gameEnded) {
+				return;
+			}
+			if (!awaitingReply || player != currentPlayersHandler) {
+				if (earlyRepliesOf(player).size() == MAX_EARLY_REPLIES) {
+					onDisconnect(player);
+				} else {
+					earlyRepliesOf(player).add(reply);
+				}
+				return;
+			}
+			receiveReply(reply);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Handle a message of a player that was read into fields, see onReply. A move of the player
+	 * whose turn it is is played straight from the fields; any other message is handled as
+	 * text, as it is kept or needs its text anyway.
+	 * 
+	 * @param player, the handler of the player that sent the message
+	 * @param reply, the message, which is not used after the call
+	 */
+	public void onReply(Handler player, Message reply) {
+		lock.lock();
+		try {
+			if (reply.isRaw() || reply.getCommand() != ProtocolMessages.MOVE 
+					|| (reply.getMove() < 0 && reply.getMove() != Message.PASS) 
+					|| gameEnded || !awaitingReply || player != currentPlayersHandler 
+					|| waitTime > 0) {
+				onReply(player, reply.toString());
+				return;
+			}
+			awaitingReply = false;
+			processMove(reply.getMove());
+			if (gameEnded) {
+				finish();
+			} else {
+				firstPlayersTurn = !firstPlayersTurn;
+				nextTurn();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Handle the disconnection of a player of a game that was started with start: the other 
+	 * player wins.
+	 * 
+	 * @param player, the handler of the player that disconnected
+	 */
+	public void onDisconnect(Handler player) {
+		lock.lock();
+		try {
+			if (!started || gameEnded) {
+				return;
+			}
+			// The end game message goes to the player that is not current.
+			if (player != currentPlayersHandler) {
+				firstPlayersTurn = !firstPlayersTurn;
+			}
+			awaitingReply = false;
+			reasonGameEnd = ProtocolMessages.DISCONNECT;
+			gameEnded = true;
+			finish();
+		} finally {
+			lock.unlock();
 		}
 	}
 	
@@ -179,40 +342,38 @@ public class Game {
 			currentPlayersColor = colorPlayer2;
 		}
 		
-		String doTurnMessage = messageGenerator.doTurnMessage(board, opponentsMove);
-		currentPlayersHandler.sendMessageToClient(doTurnMessage);
+		// Before the first move there is no opponent's move: it is sent as "null".
+		send(currentPlayersHandler, turnMessage.reset(sendsChanges(currentPlayersHandler)));
 	}
 	
 	/**
-	 * Only process replies received within 1 minute (reply != null).
+	 * Process a reply of the current player.
 	 * Check whether first component of a player's reply is one character & is not 'Q' 
 	 * (for quit). If this is the case (protocol is kept), send the move (second component) to 
-	 * processMove()
+	 * processMove(). Any other reply ends the game; the caller sends the end game messages.
+	 * 
+	 * The components are found by looking for the delimiters, the reply is not split.
+	 * 
+	 * @param reply, the reply of the current player
 	 */
-	public void processReply() {
-		String move = "";
-		
-		String reply = getReply();
-		
-		if (reply == null) {
-			return;
-		}
-		
+	private void processReply(String reply) {
 		// Check 1st component of the move message received from the player is of length 1. 
-		String[] components = reply.split(ProtocolMessages.DELIMITER);
-		if (components[0].length() != 1) {
+		int endOfCommand = reply.indexOf(ProtocolMessages.DELIMITER);
+		if (endOfCommand == -1) {
+			endOfCommand = reply.length();
+		}
+		if (endOfCommand != 1) {
 			String errorMessage = messageGenerator.errorMessage("Player did not keep to "
 					+ "the protocol: the first part of its move message ( " + reply + ") "
 					+ "was not a single character.", version);
 			currentPlayersHandler.sendMessageToClient(errorMessage);
 			gameEnded = true;
 			reasonGameEnd = ProtocolMessages.CHEAT;
-			endGame();
 			return;
 		}
 		
 		// Check which kind of message is received (indicated by first component of the message).
-		char command = components[0].charAt(0);
+		char command = reply.charAt(0);
 		switch (command) {
 			case ProtocolMessages.QUIT:
 				reasonGameEnd = ProtocolMessages.QUIT;
@@ -220,8 +381,12 @@ public class Game {
 				return;
 				
 			case ProtocolMessages.MOVE:
-				move = components[1];
-				processMove(move);
+				int startOfMove = Math.min(endOfCommand + 1, reply.length());
+				int endOfMove = reply.indexOf(ProtocolMessages.DELIMITER, startOfMove);
+				if (endOfMove == -1) {
+					endOfMove = reply.length();
+				}
+				processMove(reply, startOfMove, endOfMove);
 		
 				if (!gameEnded) {
 					if (firstPlayersTurn) {
@@ -249,44 +414,20 @@ public class Game {
 				currentPlayersHandler.sendMessageToClient(errorMessage);
 				gameEnded = true;
 				reasonGameEnd = ProtocolMessages.CHEAT;
-				endGame();
 				return;
 		}
 	}
 	
 	/**
-	 * Get a reply from the client.
-	 * 
-	 * If the reply does not come within a minute, or the reply is null, set gameEnded to true and 
-	 * return null
-	 * 
-	 * @return reply, the reply of the client or null if no reply
+	 * End the game because the current player took more than 1 minute to reply.
 	 */
-	public String getReply() {
-		String reply;
-		
-		// Get reply, end game if player took more than 1 minute to respond.
-		try {
-			reply = currentPlayersHandler.getReply();
-		} catch (SocketTimeoutException e) {
-			boolean validity = false;
-			String resultMessage = messageGenerator.resultMessage(validity, 
-										"You took more than 1 minute to decide on a move.");
-			currentPlayersHandler.sendMessageToClient(resultMessage);
-			gameEnded = true;
-			reasonGameEnd = ProtocolMessages.CHEAT;
-			return null;
-		}
-		
-		// End game if client disconnected. 
-		if (reply == null) {
-			reasonGameEnd = ProtocolMessages.DISCONNECT;
-			gameEnded = true;
-			return reply;
-		}
-		
-		// Return the reply
-		return reply;
+	private void replyTooLate() {
+		boolean validity = false;
+		String resultMessage = messageGenerator.resultMessage(validity, 
+									"You took more than 1 minute to decide on a move.");
+		currentPlayersHandler.sendMessageToClient(resultMessage);
+		gameEnded = true;
+		reasonGameEnd = ProtocolMessages.CHEAT;
 	}
 	
 	/**
@@ -297,41 +438,94 @@ public class Game {
 	 * - if first pass: return move is valid message and continue the game
 	 * 
 	 * If player did not pass:
-	 * - check validity of move (if not valid, return move is invalid message and end game)
-	 * - if valid: determine the new board
+	 * - try the move: the new board is determined and checked in one go
+	 * - if not valid, return move is invalid message and end game
 	 */
 	
 	public void processMove(String move) {
+		processMove(move, 0, move.length());
+	}
+	
+	/**
+	 * Process the move that is part of a reply, without copying it out of the reply.
+	 * 
+	 * @param reply, the reply that contains the move
+	 * @param start, the index of the first character of the move
+	 * @param end, the index after the last character of the move
+	 */
+	private void processMove(CharSequence reply, int start, int end) {
+		boolean valid;
+		changes.setLength(1);
+		encodedBoard.reset();
+		if (end - start == 1 && reply.charAt(start) == ProtocolMessages.PASS) {
+			valid = processPass();
+		} else {
+			passed = false;
+			position.addTo(prevBoards);
+			valid = processPlay(position.playIfValid(reply, start, end, currentPlayersColor, 
+					prevBoards) == null);
+		}
 		
-		boolean valid = true;
-		
-		if (move.equals(Character.toString(ProtocolMessages.PASS))) {
-			if (passed) {
-				gameEnded = true;
-				reasonGameEnd = ProtocolMessages.FINISHED;
-			} else {
-				passed = true;
-			}
+		giveResult(valid);
+		opponentsMove.setLength(0);
+		opponentsMove.append(reply, start, end);
+	}
+	
+	/**
+	 * Process a move that was read into a message, like processMove, without any text.
+	 * 
+	 * @param move, the location of the move or Message.PASS
+	 */
+	private void processMove(int move) {
+		boolean valid;
+		changes.setLength(1);
+		encodedBoard.reset();
+		opponentsMove.setLength(0);
+		if (move == Message.PASS) {
+			valid = processPass();
+			opponentsMove.append(ProtocolMessages.PASS);
 		} else {
 			passed = false;
-			
-			prevBoards.add(board);
-			valid = moveValidator.processMove(move, boardDimension, board, currentPlayersColor, 
-																					prevBoards);
-			//if move is valid, update board
-			if (valid) {
-				int location = Integer.parseInt(move);
-				board = board.substring(0, location) + currentPlayersColor + 
-																board.substring(location + 1);
-				board = moveResult.determineNewBoard(board, currentPlayersColor);
-			} else {
-				gameEnded = true;
-				reasonGameEnd = ProtocolMessages.CHEAT;
-			}
+			position.addTo(prevBoards);
+			valid = processPlay(position.playIfValid(move, currentPlayersColor, prevBoards) 
+					== null);
+			opponentsMove.append(move);
 		}
 		
 		giveResult(valid);
-		opponentsMove = move;
+	}
+	
+	/**
+	 * End the game if this is the second pass in a row.
+	 * 
+	 * @return true, a pass is always valid
+	 */
+	private boolean processPass() {
+		if (passed) {
+			gameEnded = true;
+			reasonGameEnd = ProtocolMessages.FINISHED;
+		} else {
+			passed = true;
+		}
+		return true;
+	}
+	
+	/**
+	 * Update the board if the move was played, otherwise end the game.
+	 * 
+	 * @param valid, whether the move was played
+	 * @return valid
+	 */
+	private boolean processPlay(boolean valid) {
+		if (valid) {
+			board.setLength(0);
+			position.appendTo(board);
+			position.appendLastMoveTo(changes);
+		} else {
+			gameEnded = true;
+			reasonGameEnd = ProtocolMessages.CHEAT;
+		}
+		return valid;
 	}
 	
 	/**
@@ -340,25 +534,15 @@ public class Game {
 	 */
 	
 	public void giveResult(boolean valid) {
-		String message = "";
-		
-		//Sleep to allow the GUI time to update the board in between moves.
-		try {
-			Thread.sleep(waitTime);
-		} catch (InterruptedException e) {
-		}
-		
+		Handler player = firstPlayersTurn ? goClientHandlerPlayer1 : goClientHandlerPlayer2;
 		if (valid) {
-			message = board;
-		} else {
-			message = "Your move was invalid. You lose the game.";
-		}
-		String resultMessage = messageGenerator.resultMessage(valid, message);
-		if (firstPlayersTurn) {
-			goClientHandlerPlayer1.sendMessageToClient(resultMessage);
-		} else {
-			goClientHandlerPlayer2.sendMessageToClient(resultMessage);
+			send(player, resultMessage.reset(sendsChanges(player)));
+			return;
 		}
+		message.setLength(0);
+		messageGenerator.appendResultMessage(message, valid, 
+				"Your move was invalid. You lose the game.");
+		player.sendMessageToClient(message.toString());
 	}
 	
 	/**
@@ -368,7 +552,7 @@ public class Game {
 	 */
 	public void endGame() {
 		
-		char winner = boardState.highestScore(board);
+		char winner = boardState.highestScore(getBoard());
 		double scoreBlack = scoreCalculator.getScoreBlack();
 		double scoreWhite = scoreCalculator.getScoreWhite();
 		
@@ -416,4 +600,129 @@ public class Game {
 				goClientHandlerPlayer2.sendMessageToClient(errorMessage);
 		}
 	}
+	
+	/**
+	 * Give the turn to the current player and start waiting for the reply, in a game that was
+	 * started with start. A reply that the player already sent is handled right away.
+	 */
+	private void nextTurn() {
+		doTurn();
+		awaitingReply = true;
+		replyDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REPLY_TIMEOUT);
+		
+		String earlyReply = earlyRepliesOf(currentPlayersHandler).poll();
+		if (earlyReply != null) {
+			receiveReply(earlyReply);
+		}
+	}
+	
+	/**
+	 * Accept the reply of the current player, and handle it after the wait time, which allows 
+	 * the GUI time to update the board in between moves. A reply that waits is handled on the
+	 * timer, which only queues the messages: the handlers write them (see HashedWheelTimer).
+	 */
+	private void receiveReply(String reply) {
+		awaitingReply = false;
+		if (waitTime > 0) {
+			timer.schedule(() -> handleReply(reply), waitTime, TimeUnit.MILLISECONDS);
+		} else {
+			handleReply(reply);
+		}
+	}
+	
+	/**
+	 * Process the reply of the current player, and end the game or give the next turn.
+	 */
+	private void handleReply(String reply) {
+		lock.lock();
+		try {
+			if (gameEnded) {
+				return;
+			}
+			processReply(reply);
+			if (gameEnded) {
+				finish();
+			} else {
+				nextTurn();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * End the game if the current player did not reply in time, or check again when the reply
+	 * is due: at the deadline of the turn, or after a whole reply time if no reply is awaited.
+	 */
+	private void checkReplyDeadline() {
+		lock.lock();
+		try {
+			if (gameEnded) {
+				return;
+			}
+			long remaining = TimeUnit.MILLISECONDS.toNanos(REPLY_TIMEOUT);
+			if (awaitingReply) {
+				remaining = replyDeadline - System.nanoTime();
+				if (remaining <= 0) {
+					awaitingReply = false;
+					replyTooLate();
+					finish();
+					return;
+				}
+			}
+			replyDeadlineCheck = timer.schedule(checkReplyDeadline, remaining, 
+					TimeUnit.NANOSECONDS);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Send the end of game messages of a game that was started with start.
+	 */
+	private void finish() {
+		replyDeadlineCheck.cancel();
+		endGame();
+		if (whenEnded != null) {
+			whenEnded.run();
+		}
+	}
+	
+	/**
+	 * Decide which board the next message with a board to a player has: the changes of the 
+	 * last move if the player gets changes, unless it is time to send the whole board again.
+	 * 
+	 * @param player, the handler of the player that gets the message
+	 * @return true for the changes, false for the whole board
+	 */
+	private boolean sendsChanges(Handler player) {
+		int boardsSent;
+		if (player == goClientHandlerPlayer1) {
+			if (boardEncodingPlayer1 == BoardEncoding.FULL) {
+				return false;
+			}
+			boardsSent = ++boardsSentPlayer1;
+		} else {
+			if (boardEncodingPlayer2 == BoardEncoding.FULL) {
+				return false;
+			}
+			boardsSent = ++boardsSentPlayer2;
+		}
+		return boardsSent % BoardDelta.RESYNC_INTERVAL != 0;
+	}
+	
+	/**
+	 * Send a message with a board to a player. A client handler writes the shared bytes of the 
+	 * message, any other handler gets its text (see Handler).
+	 */
+	private static void send(Handler player, EncodedMessage encodedMessage) {
+		player.sendMessageToClient(encodedMessage);
+	}
+	
+	private Deque<String> earlyRepliesOf(Handler player) {
+		if (player == goClientHandlerPlayer1) {
+			return earlyRepliesPlayer1;
+		}
+		return earlyRepliesPlayer2;
+	}
 }
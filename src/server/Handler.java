@@ -2,8 +2,38 @@ package server;
 
 import java.net.SocketTimeoutException;
 
+import protocol.EncodedMessage;
+
+/**
+ * The connection of the server to a player of a game. The game sends its messages through it;
+ * the messages of the player are handed to the game as they arrive (see Game.onReply).
+ */
+
 public interface Handler {
 	public void sendMessageToClient(String msg);
 	
-	public String getReply() throws SocketTimeoutException;
+	/**
+	 * Send a message that is encoded once for all of its recipients, as a line or a frame as
+	 * agreed in the handshake. The message is only valid during the call: a game reuses it for
+	 * its next move. A handler that does not write bytes sends its text.
+	 *
+	 * @param msg, the message
+	 */
+	public default void sendMessageToClient(EncodedMessage msg) {
+		sendMessageToClient(msg.toString());
+	}
+
+	/**
+	 * Wait for the next message of the player. The handlers of the server do not support it:
+	 * they hand every message to the game as it arrives, see Game.onReply.
+	 *
+	 * @return the message
+	 * @throws SocketTimeoutException if the player does not reply in time
+	 * @deprecated the game does not wait for replies, hand them to Game.onReply instead
+	 */
+	@Deprecated
+	public default String getReply() throws SocketTimeoutException {
+		throw new UnsupportedOperationException("The messages of a player are handed to its "
+				+ "game as they arrive, see Game.onReply.");
+	}
 }
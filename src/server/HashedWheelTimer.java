@@ -0,0 +1,223 @@
+package server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A timer for many tasks that are mostly cancelled before they are due, like the reply
+ * deadlines of games, on one thread.
+ *
+ * The tasks are kept in a wheel of buckets, one bucket per tick: a task goes to the bucket of
+ * the tick at which it is due, together with the number of turns of the wheel that are left
+ * before then. Every tick the thread of the timer goes through one bucket and runs the tasks
+ * that are due. So scheduling and cancelling a task take the same short time however many tasks
+ * there are, and a task runs at most one tick late.
+ *
+ * The tasks run on the thread of the timer, one after the other: they have to be short, and may
+ * never wait for a socket. The messages that the tasks send are only queued by the client 
+ * handlers, and written by their own threads or event loops: those of a tick are handed over 
+ * together at the end of the tick (see WriteBatch).
+ */
+
+public class HashedWheelTimer {
+
+	/** The default duration of a tick, in milliseconds. */
+	public static final int TICK = 10;
+
+	/** The default number of buckets, so that a turn of the wheel takes about five seconds. */
+	public static final int BUCKETS = 512;
+
+	/**
+	 * A scheduled task, which can be cancelled until it runs.
+	 */
+	public static final class Timeout {
+		private Runnable task;
+		private long deadline;
+		private long remainingTurns;
+		private volatile boolean cancelled = false;
+
+		/** The next timeout in the same bucket, only used by the thread of the timer. */
+		private Timeout next;
+
+		private Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancel the task. It does not run, unless it is running already.
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+	private String name;
+	private long tickNanos;
+
+	/** The first timeout of every bucket. The number of buckets is a power of two. */
+	private Timeout[] wheel;
+	private int mask;
+
+	/** The timeouts that are scheduled, but not put in their bucket by the timer yet. */
+	private Queue<Timeout> scheduled = new ConcurrentLinkedQueue<Timeout>();
+
+	private long startTime;
+	private Thread thread;
+	private volatile boolean running = false;
+
+	/**
+	 * Constructor of a timer with ticks of TICK milliseconds and BUCKETS buckets.
+	 *
+	 * @param name, the name of the thread of the timer
+	 */
+	public HashedWheelTimer(String name) {
+		this(name, TICK, BUCKETS);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name, the name of the thread of the timer
+	 * @param tick, the duration of a tick in milliseconds, at least 1
+	 * @param buckets, the number of buckets, rounded up to a power of two
+	 */
+	public HashedWheelTimer(String name, int tick, int buckets) {
+		this.name = name;
+		tickNanos = TimeUnit.MILLISECONDS.toNanos(tick);
+		int size = Integer.highestOneBit(Math.max(buckets, 1));
+		if (size < buckets) {
+			size = size * 2;
+		}
+		wheel = new Timeout[size];
+		mask = size - 1;
+	}
+
+	/**
+	 * Start the thread of the timer.
+	 */
+	public synchronized void start() {
+		if (thread != null) {
+			return;
+		}
+		startTime = System.nanoTime();
+		running = true;
+		thread = new Thread(this::run, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop the thread of the timer. The tasks that are not due yet do not run.
+	 */
+	public void stop() {
+		running = false;
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+
+	/**
+	 * Schedule a task.
+	 *
+	 * @param task, the task, which runs on the thread of the timer
+	 * @param delay, the time after which the task runs
+	 * @param unit, the unit of the delay
+	 * @return the timeout, which can cancel the task
+	 * @requires the timer is started
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		Timeout timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(delay));
+		scheduled.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * The loop of the thread of the timer: wait for the next tick, put the timeouts that were
+	 * scheduled in their buckets and run the tasks of the bucket of the tick that are due.
+	 */
+	private void run() {
+		long tick = 0;
+		while (running) {
+			long sleepNanos = startTime + (tick + 1) * tickNanos - System.nanoTime();
+			if (sleepNanos > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				} catch (InterruptedException e) {
+					// Stopped, or not: the loop checks.
+					continue;
+				}
+			}
+			addScheduled(tick);
+			WriteBatch.begin();
+			try {
+				expire(tick);
+			} finally {
+				WriteBatch.end();
+			}
+			tick++;
+		}
+	}
+
+	/**
+	 * Put the timeouts that were scheduled in their buckets. A timeout of which the tick has
+	 * already passed goes to the bucket of the current tick.
+	 */
+	private void addScheduled(long tick) {
+		Timeout timeout = scheduled.poll();
+		while (timeout != null) {
+			if (!timeout.cancelled) {
+				long dueTick = Math.max(timeout.deadline / tickNanos, tick);
+				timeout.remainingTurns = (dueTick - tick) / wheel.length;
+				int bucket = (int) (dueTick & mask);
+				timeout.next = wheel[bucket];
+				wheel[bucket] = timeout;
+			}
+			timeout = scheduled.poll();
+		}
+	}
+
+	/**
+	 * Run the tasks of the bucket of the tick that are due, and remove the cancelled ones.
+	 * The other timeouts have one turn less to go.
+	 */
+	private void expire(long tick) {
+		int bucket = (int) (tick & mask);
+		Timeout previous = null;
+		Timeout timeout = wheel[bucket];
+		while (timeout != null) {
+			Timeout next = timeout.next;
+			if (timeout.cancelled || timeout.remainingTurns == 0) {
+				if (previous == null) {
+					wheel[bucket] = next;
+				} else {
+					previous.next = next;
+				}
+				timeout.next = null;
+				if (!timeout.cancelled) {
+					runTask(timeout.task);
+				}
+			} else {
+				timeout.remainingTurns--;
+				previous = timeout;
+			}
+			timeout = next;
+		}
+	}
+
+	/**
+	 * Run a task, without letting a failing task stop the timer.
+	 */
+	private void runTask(Runnable task) {
+		try {
+			task.run();
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+}
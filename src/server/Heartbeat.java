@@ -0,0 +1,99 @@
+package server;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Heartbeat watches the connections of the clients that answer pings, which they ask for
+ * in the handshake, with the timer of the server: every interval it pings the clients that
+ * sent nothing during the last interval, and it evicts the clients that sent nothing for longer
+ * than the timeout. So a client that is gone without closing its connection loses its game, or
+ * its place as a waiting player, after a few seconds instead of after the reply timeout.
+ */
+
+public class Heartbeat {
+
+	/** The default time between pings of a silent client, in milliseconds. */
+	public static final int INTERVAL = 2000;
+
+	/** The default time after which a silent client is evicted, in milliseconds. */
+	public static final int TIMEOUT = 6000;
+
+	private long intervalNanos;
+	private long timeoutNanos;
+
+	/** The clients that answer pings, until they disconnect. */
+	private Set<AbstractClientHandler> watched = ConcurrentHashMap.newKeySet();
+
+	private HashedWheelTimer timer;
+	private volatile boolean running = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param interval, the time between pings of a silent client, in milliseconds
+	 * @param timeout, the time after which a silent client is evicted, in milliseconds
+	 */
+	public Heartbeat(int interval, int timeout) {
+		intervalNanos = TimeUnit.MILLISECONDS.toNanos(interval);
+		timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+	}
+
+	/**
+	 * Start checking the clients every interval.
+	 *
+	 * @param theTimer, the started timer of the server
+	 */
+	public void start(HashedWheelTimer theTimer) {
+		timer = theTimer;
+		running = true;
+		timer.schedule(this::check, intervalNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Stop checking the clients.
+	 */
+	public void stop() {
+		running = false;
+	}
+
+	/**
+	 * Watch the connection of a client that answers pings.
+	 */
+	public void watch(AbstractClientHandler client) {
+		watched.add(client);
+	}
+
+	/**
+	 * Stop watching a client, because it disconnected.
+	 */
+	public void unwatch(AbstractClientHandler client) {
+		watched.remove(client);
+	}
+
+	/**
+	 * Ping or evict every client that has been silent for too long, and check again after the
+	 * interval. Pinging only queues the ping and evicting closes the connection, the handlers 
+	 * write to the clients on their own threads or event loops: a client that does not read does
+	 * not hold up the timer.
+	 */
+	private void check() {
+		if (!running) {
+			return;
+		}
+		long now = System.nanoTime();
+		for (AbstractClientHandler client : watched) {
+			long silence = now - client.getLastSeen();
+			if (silence >= timeoutNanos) {
+				watched.remove(client);
+				System.out.println("> Client " + client.clientName + " did not answer the "
+						+ "pings and is evicted.");
+				client.evict();
+			} else if (silence >= intervalNanos) {
+				client.ping();
+			}
+		}
+		timer.schedule(this::check, intervalNanos, TimeUnit.NANOSECONDS);
+	}
+}
@@ -0,0 +1,185 @@
+package server;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The LocalClientHandler handles all communication between the server and a client in the same
+ * JVM, without a socket: the client hands its lines to the handler with receive(), and takes the
+ * messages of the server from a bounded queue with takeMessage(). So a server and computer
+ * players can play many games in one JVM without TCP.
+ *
+ * The lines of the client are handled on the thread of the client, like the thread of a
+ * ClientHandler handles the lines of its socket. The messages to the client are never waited
+ * for: a client that lets its queue fill up does not read, and is evicted.
+ */
+
+public class LocalClientHandler extends AbstractClientHandler {
+
+	/** The number of messages that can wait for the client. */
+	public static final int CAPACITY = 1024;
+
+	/** Put in the queue when the connection ended, compared by identity. */
+	private static final String CLOSED = new String("closed");
+
+	private BlockingQueue<String> toClient = new ArrayBlockingQueue<String>(CAPACITY);
+
+	/** Whether the queue is closed, after which messages to the client are dropped. */
+	private volatile boolean closed = false;
+
+	private AtomicBoolean connected = new AtomicBoolean(true);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param srv, the server that the client connects to
+	 */
+	LocalClientHandler(Server srv) {
+		super(srv);
+	}
+
+	/**
+	 * Handle a line of the client, on the thread of the client.
+	 *
+	 * @param msg, a line of the client, as it would be sent over a socket
+	 */
+	public void receive(String msg) {
+		if (closed) {
+			return;
+		}
+		WriteBatch.begin();
+		try {
+			handleLine(msg);
+		} finally {
+			WriteBatch.end();
+		}
+	}
+
+	/**
+	 * Wait for the next message of the server.
+	 *
+	 * @return the message, or null if the connection ended
+	 * @throws InterruptedException if the thread of the client is interrupted while waiting
+	 */
+	public String takeMessage() throws InterruptedException {
+		String msg = toClient.take();
+		if (msg == CLOSED) {
+			toClient.offer(CLOSED);
+			return null;
+		}
+		return msg;
+	}
+
+	/**
+	 * End the connection, like closing the socket of a client: the game of the client, if it
+	 * is being played, ends.
+	 */
+	public void disconnect() {
+		shutdown();
+	}
+
+	/**
+	 * Send the start game message to the first player, if it did not disconnect.
+	 *
+	 * @throws IOException when the client is no longer connected
+	 */
+	@Override
+	public void sendStartGameMessage(String board, char color) throws IOException {
+		if (closed) {
+			throw new IOException("Client " + clientName + " disconnected.");
+		}
+		sendMessageToClient(messageGenerator.startGameMessage(board, color));
+	}
+
+	/**
+	 * Put a message in the queue of the client. If the queue is full, the client is evicted.
+	 */
+	public void sendMessageToClient(String msg) {
+		if (closed) {
+			return;
+		}
+		if (!toClient.offer(msg)) {
+			System.out.println("> Client " + clientName + " does not read its messages and is "
+					+ "evicted.");
+			evict();
+		}
+	}
+
+	/**
+	 * The client reads its messages with takeMessage, which does not need to be answered.
+	 */
+	@Override
+	protected boolean canPing() {
+		return false;
+	}
+
+	/**
+	 * The messages are not written to a connection, so they stay text.
+	 */
+	@Override
+	protected boolean canUseFrames() {
+		return false;
+	}
+
+	/**
+	 * The boards are not written to a connection, so they stay whole.
+	 */
+	@Override
+	protected boolean canUseRunLength() {
+		return false;
+	}
+
+	/**
+	 * Not called: canPing is false, so the heartbeat does not watch a local client.
+	 */
+	@Override
+	void ping() {
+	}
+
+	/**
+	 * Close the queue right away, and shut the connection down on the timer of the server: not
+	 * on the thread that sends, which may be handling an event of the game.
+	 */
+	@Override
+	void evict() {
+		close();
+		srv.getTimer().schedule(this::shutdown, 0, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * The messages are in the queue as soon as they are sent, there is nothing to flush.
+	 */
+	@Override
+	void flushOutput() {
+	}
+
+	/**
+	 * Close the queue: drop the messages that the client did not read, and let it know that the
+	 * connection ended.
+	 */
+	private void close() {
+		closed = true;
+		while (!toClient.offer(CLOSED)) {
+			toClient.clear();
+		}
+	}
+
+	/**
+	 * Shut down the connection to this client. The game of the client, if it is being played,
+	 * ends.
+	 */
+	private void shutdown() {
+		if (!connected.compareAndSet(true, false)) {
+			return;
+		}
+		System.out.println("> Handler of client " + clientName + " is shutting down.");
+		close();
+		srv.removeClient(this);
+		if (thisClientsGame != null) {
+			thisClientsGame.onDisconnect(this);
+		}
+	}
+}
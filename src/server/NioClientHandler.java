@@ -0,0 +1,340 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import protocol.EncodedBoard;
+import protocol.EncodedMessage;
+import protocol.FrameCodec;
+import protocol.Message;
+import protocol.MessageDecoder;
+
+/**
+ * The NioClientHandler handles all communication between the server and one client, without a
+ * thread of its own: its EventLoop calls it when bytes of the client arrive or when the client
+ * can take more bytes.
+ *
+ * Received lines are read straight from the buffer of the event loop into a Message (see
+ * MessageDecoder); only the bytes of a line that is not complete yet are kept. The first line is
+ * the handshake, the following lines are handed to the game of the client, which is driven by
+ * them (Game.onReply). If the handshake asked for binary frames, the messages after it are
+ * frames in both directions (see FrameCodec).
+ * Messages to the client are added to its outbound buffer and written by the event loop, so
+ * they can be sent from any thread without blocking. The messages that the event loop sends
+ * while it handles the events of a round are written with one write (see WriteBatch).
+ */
+
+public class NioClientHandler extends AbstractClientHandler {
+
+	private SocketChannel channel;
+	private EventLoop eventLoop;
+	private SelectionKey selectionKey;
+	private volatile boolean connected = true;
+
+	/** 
+	 * The bytes of the line or frame that is not complete yet, in write mode. Only used when 
+	 * a message arrives in parts: complete messages are read from the buffer of the event loop.
+	 * Never more than MAX_PENDING_BYTES are kept between two reads.
+	 */
+	private ByteBuffer pending = ByteBuffer.allocate(128);
+
+	/** The most bytes of a message that is not complete yet: its length and the payload. */
+	private static final int MAX_PENDING_BYTES = FrameCodec.MAX_LENGTH + 8;
+
+	/** The message that every received message is read into (see MessageDecoder). */
+	private Message message = new Message();
+
+	/**
+	 * The bytes of the messages that are not written yet, in write mode, guarded by the lock.
+	 * A client that lets more than MAX_UNSENT_BYTES wait does not read, and is evicted.
+	 */
+	private ByteBuffer outbound;
+	private Object outboundLock = new Object();
+	private AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param channel, the non-blocking channel of the client
+	 * @param srv, the connected server
+	 * @param eventLoop, the event loop that handles the channel
+	 * @param outputBufferSize, the initial size of the outbound buffer, in bytes
+	 */
+	public NioClientHandler(SocketChannel channel, Server srv, EventLoop eventLoop, 
+			int outputBufferSize) {
+		super(srv);
+		this.channel = channel;
+		this.eventLoop = eventLoop;
+		outbound = ByteBuffer.allocate(outputBufferSize);
+	}
+
+	/**
+	 * Set the key of the channel, once it is registered with the selector of the event loop.
+	 */
+	void setSelectionKey(SelectionKey key) {
+		selectionKey = key;
+		flush();
+	}
+
+	/**
+	 * Send a message to the client. The message is written by the event loop, at the end of the
+	 * round if it is sent by the event loop itself.
+	 */
+	public void sendMessageToClient(String msg) {
+		if (!connected) {
+			return;
+		}
+		synchronized (outboundLock) {
+			// Encoded while holding the lock, so that the handshake reply stays a line
+			byte[] bytes = frames ? FrameCodec.encode(msg) : msg.getBytes(StandardCharsets.UTF_8);
+			if (!makeRoom(frames ? bytes.length : bytes.length + 1)) {
+				return;
+			}
+			outbound.put(bytes);
+			if (!frames) {
+				outbound.put((byte) '\n');
+			}
+		}
+		scheduleFlush();
+	}
+
+	/**
+	 * Send a message that is encoded once for all of its recipients: its shared bytes are
+	 * copied to the outbound buffer, see sendMessageToClient(String).
+	 */
+	@Override
+	public void sendMessageToClient(EncodedMessage msg) {
+		if (!connected) {
+			return;
+		}
+		synchronized (outboundLock) {
+			if (!makeRoom(msg.length(frames, runLength))) {
+				return;
+			}
+			msg.writeTo(outbound, frames, runLength);
+		}
+		scheduleFlush();
+	}
+
+	/**
+	 * Grow the outbound buffer if it has no room for a number of bytes, or evict the client if
+	 * it would let more than MAX_UNSENT_BYTES wait.
+	 *
+	 * @requires the outbound lock is held
+	 * @return false if the client is evicted and the bytes are not to be added
+	 */
+	private boolean makeRoom(int length) {
+		if (outbound.position() + length > MAX_UNSENT_BYTES) {
+			outbound.clear();
+			System.out.println("> Client " + clientName + " does not read its messages and is "
+					+ "evicted.");
+			evict();
+			return false;
+		}
+		if (outbound.remaining() < length) {
+			ByteBuffer larger = ByteBuffer.allocate(
+					Math.max(outbound.capacity() * 2, outbound.position() + length));
+			outbound.flip();
+			outbound = larger.put(outbound);
+		}
+		return true;
+	}
+
+	/**
+	 * Let the event loop write the outbound buffer, at the end of the round if this is the
+	 * event loop itself.
+	 */
+	private void scheduleFlush() {
+		if (eventLoop.inEventLoop()) {
+			if (!WriteBatch.defer(this)) {
+				flush();
+			}
+		} else if (flushScheduled.compareAndSet(false, true)) {
+			eventLoop.execute(this::flush);
+		}
+	}
+
+	/**
+	 * Send the start game message, if the client did not disconnect. A disconnection is noticed
+	 * by the event loop as soon as it happens, so no test message is needed.
+	 */
+	@Override
+	public void sendStartGameMessage(String board, char color) throws IOException {
+		if (!connected) {
+			throw new IOException("Client " + clientName + " disconnected.");
+		}
+		sendMessageToClient(EncodedMessage.startGame(new EncodedBoard(board), color));
+	}
+
+	/**
+	 * Send a ping. It is queued like any message, so sending never waits.
+	 */
+	@Override
+	void ping() {
+		sendMessageToClient(messageGenerator.pingMessage());
+	}
+
+	/**
+	 * Shut down the connection on the thread of the event loop, which ends the game.
+	 */
+	@Override
+	void evict() {
+		eventLoop.execute(this::shutdown);
+	}
+
+	/**
+	 * Write the messages of a WriteBatch. Called on the thread of the event loop.
+	 */
+	@Override
+	void flushOutput() {
+		flush();
+	}
+
+	/**
+	 * Write as much of the outbound buffer as the channel takes, with one write, and let the 
+	 * event loop tell when it takes more. Called on the thread of the event loop.
+	 */
+	void flush() {
+		flushScheduled.set(false);
+		if (selectionKey == null || !selectionKey.isValid()) {
+			return;
+		}
+
+		boolean failed = false;
+		synchronized (outboundLock) {
+			outbound.flip();
+			try {
+				if (outbound.hasRemaining()) {
+					channel.write(outbound);
+				}
+				if (outbound.hasRemaining()) {
+					selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				} else {
+					selectionKey.interestOps(SelectionKey.OP_READ);
+				}
+			} catch (IOException e) {
+				failed = true;
+			} finally {
+				outbound.compact();
+			}
+		}
+		// Not while holding the lock of the queue: shutting down ends the game.
+		if (failed) {
+			shutdown();
+		}
+	}
+
+	/**
+	 * Read the bytes that arrived and handle every line or frame that is complete. Called on
+	 * the thread of the event loop.
+	 */
+	void read() {
+		ByteBuffer buffer = eventLoop.readBuffer();
+		int numberOfBytes;
+		try {
+			numberOfBytes = channel.read(buffer);
+		} catch (IOException e) {
+			numberOfBytes = -1;
+		}
+		if (numberOfBytes == -1) {
+			shutdown();
+			return;
+		}
+
+		buffer.flip();
+		if (pending.position() == 0) {
+			// Read the messages straight from the buffer of the event loop
+			decodeMessages(buffer);
+			if (connected && buffer.hasRemaining() && keepsPending(buffer.remaining())) {
+				pending = ensureRoom(pending, buffer.remaining());
+				pending.put(buffer);
+			}
+		} else {
+			// Add the bytes to the start of the message that was received before
+			pending = ensureRoom(pending, buffer.remaining());
+			pending.put(buffer);
+			pending.flip();
+			decodeMessages(pending);
+			if (connected && keepsPending(pending.remaining())) {
+				pending.compact();
+			}
+		}
+	}
+
+	/**
+	 * Check the number of bytes of the message that is not complete yet. The decoder rejects
+	 * longer lines and frames, so a client that sends more is disconnected.
+	 *
+	 * @return false if the client sent too many bytes and is shut down
+	 */
+	private boolean keepsPending(int numberOfBytes) {
+		if (numberOfBytes <= MAX_PENDING_BYTES) {
+			return true;
+		}
+		pending.clear();
+		sendMessageToClient(messageGenerator.errorMessage("The client sent a message of more "
+				+ "than " + FrameCodec.MAX_LENGTH + " bytes.", version));
+		shutdown();
+		return false;
+	}
+
+	/**
+	 * Handle every complete line or frame of the received bytes, and leave the position of the
+	 * bytes at the start of the message that is not complete yet.
+	 */
+	private void decodeMessages(ByteBuffer bytes) {
+		try {
+			while (connected && bytes.hasRemaining() && (frames 
+					? MessageDecoder.decodeFrame(bytes, message) 
+					: MessageDecoder.decodeLine(bytes, message))) {
+				handleMessage(message);
+			}
+		} catch (IOException e) {
+			sendMessageToClient(messageGenerator.errorMessage("The client sent a message that "
+					+ "is not valid: " + e.getMessage(), version));
+			shutdown();
+		}
+	}
+
+	/**
+	 * @return the buffer, or a copy of it if it has no room for a number of bytes
+	 */
+	private static ByteBuffer ensureRoom(ByteBuffer buffer, int numberOfBytes) {
+		if (buffer.remaining() >= numberOfBytes) {
+			return buffer;
+		}
+		ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, 
+				buffer.position() + numberOfBytes));
+		buffer.flip();
+		larger.put(buffer);
+		return larger;
+	}
+
+	/**
+	 * Shut down the connection to this client by closing the channel. The game of the client,
+	 * if it is being played, ends.
+	 */
+	void shutdown() {
+		if (!connected) {
+			return;
+		}
+		connected = false;
+		System.out.println("> Handler of client " + clientName + " is shutting down.");
+		try {
+			if (selectionKey != null) {
+				selectionKey.cancel();
+			}
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		srv.removeClient(this);
+		if (thisClientsGame != null) {
+			thisClientsGame.onDisconnect(this);
+		}
+	}
+}
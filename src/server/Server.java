@@ -1,12 +1,22 @@
 package server;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import exceptions.ExitProgram;
+import protocol.BoardEncoding;
 import protocol.MessageGenerator;
 import protocol.ProtocolMessages;
 
@@ -17,25 +27,66 @@ import protocol.ProtocolMessages;
  * server starts a clientHandler to handle interaction with the client.
  * It will then add the client to a game instance. Once two clients are in a game,
  * the game is started and control is given to the game instance.
+ * 
+ * How clients are served depends on the mode of the server: by a few event loops that 
+ * handle the messages of all clients and drive the games (EVENT_LOOP, the default), or by a 
+ * thread per client that waits for the client's messages and drives its game with them 
+ * (THREAD_PER_CLIENT).
+ * Clients in the same JVM, such as computer players that play each other, can also connect 
+ * without a socket (connectLocally) in any mode.
+ * VIRTUAL_THREADS is the same as THREAD_PER_CLIENT, but the reader of every connection runs on 
+ * a virtual thread, so thousands of connected clients only need a handful of OS threads (falls 
+ * back to platform threads before Java 21). No game has a thread of its own in any mode.
+ * In every mode, one timer runs the reply deadlines and the delays between moves of all games, 
+ * and the heartbeat.
  */
 
 
 public class Server implements Runnable {
 	
-	/** The Socket of this GoServer (is a serverSocket!). */
+	/** The ways in which the server can serve its clients. */
+	public enum Mode {
+		EVENT_LOOP, THREAD_PER_CLIENT, VIRTUAL_THREADS
+	}
+	
+	/** The Socket of this GoServer (is a serverSocket!) and its channel. */
 	private ServerSocket ssock;
+	private ServerSocketChannel serverChannel;
 
-	/** List of GoClientHandlers, one for each connected client. */
-	private List<ClientHandler> clients;
+	/** Set of GoClientHandlers, one for each connected client. */
+	private Set<AbstractClientHandler> clients;
+	
+	/** How the clients are served. */
+	private Mode mode;
+	
+	/** In EVENT_LOOP mode: the event loops, and the next one to get a client. */
+	private EventLoop[] eventLoops;
+	private int nextEventLoop;
+	
+	/** In the other modes: creates the thread of every client. */
+	private ThreadFactory threadFactory;
+	
+	/** The timer of the games and the heartbeat. */
+	private HashedWheelTimer timer = new HashedWheelTimer("timer");
+	
+	/** Pings the clients that answer pings, and evicts those that stopped answering. */
+	private Heartbeat heartbeat = new Heartbeat(Heartbeat.INTERVAL, Heartbeat.TIMEOUT);
 	
 	/** Next client number, increasing for every new connection. */
 	private int nextClientNo;
 	
-	/** List of Games, one for each two connected clients. */
-	private List<Game> games;
+	/** Set of Games, one for each two connected clients. */
+	private Set<Game> games;
 	
-	/** Next game number, increasing for every new connection. */
-	private int nextGameNo;
+	/** 
+	 * The game of which the first player waits for a second player, null if no player waits.
+	 * Clients are paired by taking the game out of this slot and putting their own game in it, 
+	 * with compare-and-set, so pairing takes no lock and many clients can be paired at once.
+	 */
+	private AtomicReference<Game> waitingGame = new AtomicReference<Game>();
+	
+	/** Next game number, increasing for every new game. */
+	private AtomicInteger nextGameNo;
 	
 	/** 
 	 * Variables for the board size and waiting time of the games hosted by this server. 
@@ -43,6 +94,17 @@ public class Server implements Runnable {
 	int boardDimension;
 	int waitTime;
 	
+	/** 
+	 * Options of the connections to the clients: whether small messages are sent right away 
+	 * (TCP_NODELAY, Nagle's algorithm off), the size of the buffer that the messages to a client
+	 * are collected in, and the size of the send and receive buffers of the sockets (0 to keep
+	 * the size of the operating system). The messages of an event are written together, so
+	 * there is nothing to gain from letting TCP wait for more.
+	 */
+	private boolean tcpNoDelay = true;
+	private int outputBufferSize = 8 * 1024;
+	private int socketBufferSize = 0;
+	
 	/** Available versions of this server. */
 	private List<String> availableVersions = new ArrayList<String>();
 	private String usedVersion;
@@ -61,9 +123,20 @@ public class Server implements Runnable {
 	 * Start a new GoServer.
 	 * A GoServer is constructed, a serverSocket set up and then its run() 
 	 * method is called in a new thread to continuously listen for new clients. 
+	 * 
+	 * @param args, optionally the mode of the server: EVENT_LOOP (default), THREAD_PER_CLIENT
+	 *              or VIRTUAL_THREADS
 	 */
 	public static void main(String[] args) {
-		Server server = new Server();
+		Mode mode = Mode.EVENT_LOOP;
+		if (args.length > 0) {
+			try {
+				mode = Mode.valueOf(args[0].toUpperCase());
+			} catch (IllegalArgumentException e) {
+				System.out.println("Unknown mode " + args[0] + ", the server uses " + mode + ".");
+			}
+		}
+		Server server = new Server(mode);
 		
 		try {
 			server.setup();
@@ -75,17 +148,28 @@ public class Server implements Runnable {
 	}
 	
 	/**
-	 * Constructor of a GoServer.
+	 * Constructor of a GoServer that serves its clients with event loops.
 	 */
 	
 	public Server() {
-		clients = new ArrayList<>();
+		this(Mode.EVENT_LOOP);
+	}
+	
+	/**
+	 * Constructor of a GoServer.
+	 * 
+	 * @param mode, how the clients are served
+	 */
+	public Server(Mode mode) {
+		this.mode = mode;
+		clients = ConcurrentHashMap.newKeySet();
 		nextClientNo = 1;
-		games = new ArrayList<Game>();
-		nextGameNo = 1;
+		games = ConcurrentHashMap.newKeySet();
+		nextGameNo = new AtomicInteger(1);
 		tui = new ServerTUI();
 		
 		availableVersions.add("0.01");
+		availableVersions.add(ProtocolMessages.DELTA_VERSION);
 	}
 	
 	/**
@@ -131,6 +215,57 @@ public class Server implements Runnable {
 		}
 	}
 	
+	/**
+	 * Set the board size of the games that will be hosted, without asking the user.
+	 * 
+	 * @param boardDimension, the size (length / height) of the board, at least 5
+	 */
+	public void setBoardDimension(int boardDimension) {
+		this.boardDimension = boardDimension;
+	}
+	
+	/**
+	 * Set the wait time between receiving a reply and sending the result, without asking
+	 * the user.
+	 * 
+	 * @param waitTime, the wait time in milliseconds
+	 */
+	public void setWaitTime(int waitTime) {
+		this.waitTime = waitTime;
+	}
+	
+	/**
+	 * Set how quickly clients that answer pings are pinged and evicted, before the server runs.
+	 * 
+	 * @param interval, the time between pings of a silent client, in milliseconds
+	 * @param timeout, the time after which a silent client is evicted, in milliseconds
+	 */
+	public void setHeartbeat(int interval, int timeout) {
+		heartbeat = new Heartbeat(interval, timeout);
+	}
+	
+	/**
+	 * Set whether small messages are sent right away, before the server runs.
+	 * 
+	 * @param tcpNoDelay, true to turn Nagle's algorithm off (the default)
+	 */
+	public void setTcpNoDelay(boolean tcpNoDelay) {
+		this.tcpNoDelay = tcpNoDelay;
+	}
+	
+	/**
+	 * Set the buffer sizes of the connections to the clients, before the server runs.
+	 * 
+	 * @param outputBufferSize, the size of the buffer that the messages to a client are 
+	 *                          collected in, at least 1
+	 * @param socketBufferSize, the size of the send and receive buffers of the sockets, or 0 to
+	 *                          keep the size of the operating system
+	 */
+	public void setBufferSizes(int outputBufferSize, int socketBufferSize) {
+		this.outputBufferSize = outputBufferSize;
+		this.socketBufferSize = socketBufferSize;
+	}
+	
 	/**
 	 * Create a socket with given port.
 	 * 
@@ -139,7 +274,14 @@ public class Server implements Runnable {
 	 */
 	public void createSocket(int port) throws IOException {
 		tui.showMessage("Attempting to open a socket on port " + port + "...");
-		ssock = new ServerSocket(port, 0);
+		serverChannel = ServerSocketChannel.open();
+		try {
+			serverChannel.bind(new InetSocketAddress(port));
+		} catch (IOException e) {
+			serverChannel.close();
+			throw e;
+		}
+		ssock = serverChannel.socket();
 		tui.showMessage("Socket opened, waiting for a client.");
 	}
 	
@@ -148,16 +290,45 @@ public class Server implements Runnable {
 	 */
 	
 	public void run() {
+		timer.start();
+		if (mode == Mode.EVENT_LOOP) {
+			try {
+				startEventLoops();
+			} catch (IOException e) {
+				tui.showMessage("The event loops could not be started: " + e.getMessage() 
+						+ " The server will shut down.");
+				return;
+			}
+		} else {
+			startThreadFactory();
+		}
+		heartbeat.start(timer);
+		
 		boolean openNewSocket = true;
 		while (openNewSocket) {
 			try {
-				Socket sock = ssock.accept();
-				tui.showMessage("Client number " + nextClientNo + " just connected!");
-				
-				ClientHandler handler = new ClientHandler(sock, this);
-				new Thread(handler).start();
-				
-				clients.add(handler);
+				if (mode == Mode.EVENT_LOOP) {
+					SocketChannel channel = serverChannel.accept();
+					tui.showMessage("Client number " + nextClientNo + " just connected!");
+					
+					configure(channel.socket());
+					channel.configureBlocking(false);
+					EventLoop eventLoop = eventLoops[nextEventLoop];
+					nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+					NioClientHandler handler = new NioClientHandler(channel, this, eventLoop, 
+							outputBufferSize);
+					clients.add(handler);
+					eventLoop.register(channel, handler);
+				} else {
+					Socket sock = ssock.accept();
+					tui.showMessage("Client number " + nextClientNo + " just connected!");
+					
+					configure(sock);
+					ClientHandler handler = new ClientHandler(sock, this, outputBufferSize);
+					handler.start(threadFactory);
+					
+					clients.add(handler);
+				}
 				nextClientNo++;
 			} catch (IOException e) {
 				tui.showMessage("A server IO error occurred: " 
@@ -165,6 +336,101 @@ public class Server implements Runnable {
 				openNewSocket = false;
 			}
 		}
+		
+		if (mode == Mode.EVENT_LOOP) {
+			for (EventLoop eventLoop : eventLoops) {
+				eventLoop.stop();
+			}
+		}
+		heartbeat.stop();
+		timer.stop();
+	}
+	
+	/**
+	 * Set the options of the connection to a client.
+	 * 
+	 * @param sock, the socket of a client that just connected
+	 */
+	private void configure(Socket sock) {
+		try {
+			sock.setTcpNoDelay(tcpNoDelay);
+			if (socketBufferSize > 0) {
+				sock.setSendBufferSize(socketBufferSize);
+				sock.setReceiveBufferSize(socketBufferSize);
+			}
+		} catch (SocketException e) {
+			tui.showMessage("The options of a connection could not be set: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Start one event loop per processor.
+	 * 
+	 * @throws IOException if a selector cannot be opened
+	 */
+	private void startEventLoops() throws IOException {
+		eventLoops = new EventLoop[Runtime.getRuntime().availableProcessors()];
+		for (int index = 0; index < eventLoops.length; index++) {
+			eventLoops[index] = new EventLoop();
+			eventLoops[index].start("event loop " + (index + 1));
+		}
+	}
+	
+	/**
+	 * Choose how the threads of the clients are created: virtual threads if the mode asks for
+	 * them and this Java version has them, platform threads otherwise.
+	 */
+	private void startThreadFactory() {
+		threadFactory = Thread::new;
+		if (mode == Mode.VIRTUAL_THREADS) {
+			ThreadFactory virtualThreadFactory = VirtualThreads.factory("client ");
+			if (virtualThreadFactory == null) {
+				tui.showMessage("This Java version has no virtual threads, every client gets a "
+						+ "platform thread.");
+			} else {
+				threadFactory = virtualThreadFactory;
+			}
+		}
+	}
+	
+	/**
+	 * Start a game with two players that is driven by the messages of its players. Once it 
+	 * has ended, it is removed from the game list.
+	 * 
+	 * @param game, a game with two players
+	 */
+	public void startGame(Game game) {
+		game.start(timer, () -> removeGame(game));
+	}
+	
+	/**
+	 * Connect a client in the same JVM, which talks to the server with calls instead of a 
+	 * socket (see LocalClientHandler). The timer of the server is started if it was not, so 
+	 * local clients can play without the server listening for sockets.
+	 * 
+	 * @return the handler, which the client hands its lines to and takes its messages from
+	 */
+	public LocalClientHandler connectLocally() {
+		timer.start();
+		LocalClientHandler handler = new LocalClientHandler(this);
+		clients.add(handler);
+		return handler;
+	}
+	
+	/**
+	 * @return the timer of the games and the heartbeat
+	 */
+	HashedWheelTimer getTimer() {
+		return timer;
+	}
+	
+	/**
+	 * Watch the connection of a client that answers pings, see Heartbeat.
+	 * 
+	 * @param client, a client that asked for pings in its handshake
+	 */
+	public void watch(AbstractClientHandler client) {
+		heartbeat.watch(client);
 	}
 	
 	/**
@@ -173,69 +439,116 @@ public class Server implements Runnable {
 	
 	public String doHandshake(String requestedVersion, String nameClient) {
 		
-		usedVersion = "1.0";
+		usedVersion = negotiateVersion(requestedVersion);
+		return messageGenerator.serverHandshakeMessage(nameClient, usedVersion);
+	}
+	
+	/**
+	 * Choose the version in which the server communicates with a client.
+	 * 
+	 * @param requestedVersion, the version that the client asked for
+	 * @return the requested version if the server has it, otherwise 1.0
+	 */
+	public String negotiateVersion(String requestedVersion) {
 		for (String version : availableVersions) {
 			if (version.equals(requestedVersion)) {
-				usedVersion = requestedVersion;
-				break;
+				return requestedVersion;
 			}
 		}
-		return messageGenerator.serverHandshakeMessage(nameClient, usedVersion);
+		return ProtocolMessages.VERSION;
 	}
 	
 	/**
 	 * Add a client to a game.
-	 * If no games started yet or all games have already started, start a new game.
+	 * If no player waits for a second player, start a new game with the client as the first 
+	 * player, who waits.
 	 * 
-	 * Otherwise, add the player to an existing game. When second player connects, 
-	 * try to send startGame message to the first player to check
-	 * whether he/she didn't disconnect while waiting for the second player.
+	 * Otherwise, take the game of the waiting player and add the client as the second player.
+	 * First the startGame message is sent to the first player, to check whether he/she didn't 
+	 * disconnect while waiting. This check is done after the game was taken out of the waiting
+	 * slot, so it does not hold up the pairing of other clients. If the first player did 
+	 * disconnect, the client takes over the game as its first player and tries again.
 	 */
 	
-	public synchronized Game addClientToGame(
-				String nameClient, String wantedColor, ClientHandler thisClientsHandler) {
+	public Game addClientToGame(String nameClient, String wantedColor, 
+												AbstractClientHandler thisClientsHandler) {
+		// The game of which this client is the first player, once it has one
+		Game ownGame = null;
 		
-		//if no games yet or the last game has already started, make a new game, add the client
-		if (games.isEmpty() || games.get(games.size() - 1).getStarted()) {
-			Game newGame = setupGoGame();
-			addClientAsPlayer1(nameClient, wantedColor, newGame, thisClientsHandler);
-			tui.showMessage(nameClient + " was added to game number " + newGame.getGameNumber() +
-					 " as the first player.");
-			return newGame;
-			
-		} else {
+		while (true) {
+			Game waiting = waitingGame.get();
 			
-			//if there is a not-yet-started game, check whether the first player is still connected
-			Game lastGame = games.get(games.size() - 1);
-			ClientHandler player1goClientHandler = (ClientHandler) 
-															lastGame.getClientHandlerPlayer1();
-			try {
-				player1goClientHandler.startGameMessageInTwoParts(lastGame.getBoard(), 
-															lastGame.getColorPlayer1());
-			} catch (IOException e) {
-				//if not connected anymore: set current client as the first player in the game
-				removeClient(player1goClientHandler);
-				addClientAsPlayer1(nameClient, wantedColor, lastGame, thisClientsHandler);
-				tui.showMessage("Player 1 disconnected, " + nameClient + " was added to game " + 
-										lastGame.getGameNumber() + " as the first player.");
-				return lastGame;
+			if (waiting == null) {
+				//no player waits: this client waits for a second player in its own game
+				if (ownGame == null) {
+					ownGame = setupGoGame();
+					addClientAsPlayer1(nameClient, wantedColor, ownGame, thisClientsHandler);
+				}
+				if (waitingGame.compareAndSet(null, ownGame)) {
+					tui.showMessage(nameClient + " was added to game number " + 
+							ownGame.getGameNumber() + " as the first player.");
+					return ownGame;
+				}
+				
+			} else if (waitingGame.compareAndSet(waiting, null)) {
+				//this client took the waiting game, check whether the first player is connected
+				AbstractClientHandler player1goClientHandler = (AbstractClientHandler) 
+															waiting.getClientHandlerPlayer1();
+				try {
+					player1goClientHandler.sendStartGameMessageAfterHandshake(waiting.getBoard(), 
+															waiting.getColorPlayer1());
+				} catch (IOException e) {
+					//if not connected anymore: the client becomes the first player of the game
+					removeClient(player1goClientHandler);
+					if (ownGame == null) {
+						ownGame = waiting;
+						addClientAsPlayer1(nameClient, wantedColor, ownGame, thisClientsHandler);
+						tui.showMessage("Player 1 disconnected, " + nameClient + 
+								" will be added to game " + ownGame.getGameNumber() + 
+								" as the first player.");
+					} else {
+						removeGame(waiting);
+					}
+					continue;
+				}
+				
+				//otherwise, set current client as the second player in the game
+				if (ownGame != null) {
+					removeGame(ownGame);
+				}
+				addClientAsPlayer2(nameClient, waiting, thisClientsHandler);
+				tui.showMessage(nameClient + " was added to game " + waiting.getGameNumber() + 
+						" as the second player. The game can start!");
+				return waiting;
 			}
-			
-			//otherwise, set current client as the second player in the game
-			addClientAsPlayer2(nameClient, lastGame, thisClientsHandler);
-			tui.showMessage(nameClient + " was added to game " + lastGame.getGameNumber() + 
-					" as the second player. The game can start!");
-			return lastGame;
 		}
 	}
 	
+	/**
+	 * Removes a finished game from the game list, so that its boards can be garbage collected.
+	 * 
+	 * @param game, a game that has ended
+	 */
+	public void removeGame(Game game) {
+		games.remove(game);
+	}
+	
 	/**
 	 * Removes a clientHandler from the client list.
 	 * 
 	 * @requires client != null
 	 */
-	public void removeClient(ClientHandler client) {
+	public void removeClient(AbstractClientHandler client) {
 		this.clients.remove(client);
+		heartbeat.unwatch(client);
+	}
+	
+	/**
+	 * @return the number of connected clients, which drops once the handler of a client that
+	 *         disconnected has shut down
+	 */
+	public int getNumberOfClients() {
+		return clients.size();
 	}
 	
 	/** 
@@ -248,9 +561,10 @@ public class Server implements Runnable {
 	 */
 	
 	public void addClientAsPlayer1(String nameClient, String wantedColor, Game game, 
-														ClientHandler thisClientsHandler) {
+												AbstractClientHandler thisClientsHandler) {
 		game.setNamePlayer1(nameClient);
 		game.setClientHandlerPlayer1(thisClientsHandler);
+		game.setBoardEncodingPlayer1(BoardEncoding.forVersion(thisClientsHandler.version));
 		
 		if (wantedColor == null || wantedColor.length() != 1) {
 			game.setColorPlayer1(ProtocolMessages.BLACK);
@@ -271,9 +585,10 @@ public class Server implements Runnable {
 	 * @param game, the game that the client is added to
 	 */
 	public void addClientAsPlayer2(String nameClient, Game game, 
-														ClientHandler thisClientsHandler) {
+												AbstractClientHandler thisClientsHandler) {
 		game.setNamePlayer2(nameClient);
 		game.setClientHandlerPlayer2(thisClientsHandler);
+		game.setBoardEncodingPlayer2(BoardEncoding.forVersion(thisClientsHandler.version));
 		
 		if (game.getColorPlayer1() == ProtocolMessages.BLACK) {
 			game.setColorPlayer2(ProtocolMessages.WHITE);
@@ -290,9 +605,8 @@ public class Server implements Runnable {
 	 */
 	public Game setupGoGame() {
 		
-		Game aGame = new Game(nextGameNo, usedVersion, boardDimension, waitTime);
-		
-		nextGameNo++;
+		Game aGame = new Game(nextGameNo.getAndIncrement(), usedVersion, boardDimension, 
+				waitTime);
 		
 		games.add(aGame);
 		
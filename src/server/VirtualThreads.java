@@ -0,0 +1,50 @@
+package server;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads, on Java versions that have them (21 and later). The server is
+ * compiled for Java 11, so the builder of virtual threads is found by reflection.
+ *
+ * A virtual thread that blocks on a socket or sleeps gives its carrier thread back, so
+ * thousands of clients that wait for a message need only a handful of OS threads. Waiting
+ * inside a synchronized block keeps the carrier thread, which is why the code that such
+ * threads run does no socket I/O inside synchronized blocks.
+ */
+
+public final class VirtualThreads {
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * Get a factory for virtual threads.
+	 *
+	 * @param name, the name of the threads, followed by a number
+	 * @return the factory, or null if this Java version has no virtual threads
+	 */
+	public static ThreadFactory factory(String name) {
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class)
+					.invoke(builder, name, 1L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Check whether a thread is a virtual thread.
+	 *
+	 * @return true if the thread is virtual, false if it is not or there are no virtual threads
+	 */
+	public static boolean isVirtual(Thread thread) {
+		try {
+			return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+		} catch (ReflectiveOperationException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lets the thread that handles an event, such as a message of a client or the tasks of a tick
+ * of the timer, flush every connection once when the event has been handled, instead of once
+ * per message. A move sends the result to one player and the turn to the other, the last move
+ * also the end of the game: in a batch, all messages of an event to a client take one write.
+ *
+ * A batch belongs to a thread. Batches can be nested: the connections are flushed when the
+ * outermost batch ends.
+ */
+
+final class WriteBatch {
+
+	private static final ThreadLocal<WriteBatch> CURRENT =
+			ThreadLocal.withInitial(WriteBatch::new);
+
+	private int depth = 0;
+
+	/** The clients with messages that are written at the end of the batch, each once. */
+	private List<AbstractClientHandler> unflushed = new ArrayList<AbstractClientHandler>();
+
+	private WriteBatch() {
+	}
+
+	/**
+	 * Begin a batch on the current thread, before an event is handled.
+	 */
+	static void begin() {
+		CURRENT.get().depth++;
+	}
+
+	/**
+	 * End the batch of the current thread, after the event has been handled: flush the clients
+	 * that got messages.
+	 */
+	static void end() {
+		WriteBatch batch = CURRENT.get();
+		batch.depth--;
+		if (batch.depth > 0) {
+			return;
+		}
+		for (int index = 0; index < batch.unflushed.size(); index++) {
+			batch.unflushed.get(index).flushOutput();
+		}
+		batch.unflushed.clear();
+	}
+
+	/**
+	 * Flush a client at the end of the batch of the current thread.
+	 *
+	 * @param client, a client that got a message
+	 * @return true if the client is flushed at the end of the batch, false if the current thread
+	 *         has no batch and the client has to be flushed right away
+	 */
+	static boolean defer(AbstractClientHandler client) {
+		WriteBatch batch = CURRENT.get();
+		if (batch.depth == 0) {
+			return false;
+		}
+		if (!batch.unflushed.contains(client)) {
+			batch.unflushed.add(client);
+		}
+		return true;
+	}
+}
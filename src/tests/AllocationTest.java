@@ -0,0 +1,199 @@
+package tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import protocol.BoardEncoding;
+import protocol.EncodedMessage;
+import protocol.Message;
+import protocol.MessageDecoder;
+import protocol.ProtocolMessages;
+import ruleimplementations.Position;
+import ruleimplementations.PositionHistory;
+import server.Game;
+import server.Handler;
+import server.HashedWheelTimer;
+
+/**
+ * This class will test that the server can handle moves without allocating: a Game reads the
+ * move from the reply, checks and plays it and sends the result message and the next turn.
+ *
+ * The handlers of the players copy the bytes of every message, as the handlers of a connection
+ * do, so encoding the messages is part of what is measured: the first player gets lines with
+ * large boards as runs, the second frames with the changes of the moves.
+ */
+
+public class AllocationTest {
+
+	private static final int BOARD_DIMENSION = 19;
+	private static final int NUMBER_OF_MOVES = 600;
+	private static final int UNMEASURED_MOVES = 10;
+
+	/** Runs the reply deadlines of the games, which are not reached in this test. */
+	private static final HashedWheelTimer TIMER = new HashedWheelTimer("test timer");
+
+	/** The replies of the players, "M;" and a location, read for every move. */
+	private static final ByteBuffer[] REPLIES = new ByteBuffer[BOARD_DIMENSION * BOARD_DIMENSION];
+
+	@BeforeAll
+	static void setUp() {
+		TIMER.start();
+		for (int location = 0; location < REPLIES.length; location++) {
+			REPLIES[location] = ByteBuffer.wrap((ProtocolMessages.MOVE
+					+ ProtocolMessages.DELIMITER + location + "\n")
+					.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@AfterAll
+	static void tearDown() {
+		TIMER.stop();
+	}
+
+	/**
+	 * Play a long random game with a Game, and measure how many bytes the thread allocated
+	 * around the calls of onReply with the counter of the JVM. Less than one byte per move
+	 * means no move created an object.
+	 */
+	@Test
+	void noAllocationPerMoveTest() throws IOException {
+		com.sun.management.ThreadMXBean threadBean =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threadBean.isThreadAllocatedMemorySupported()) {
+			return;
+		}
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+		long threadId = Thread.currentThread().getId();
+		Message message = new Message();
+
+		// Warm up, so that classes are loaded and the code of a move is compiled.
+		for (int seed = 1; seed <= 3; seed++) {
+			int[] moves = randomGame(new Random(seed));
+			Game game = startGame();
+			play(game, moves, 0, moves.length, message);
+			assertFalse(game.hasEnded());
+			game.onDisconnect(game.getClientHandlerPlayer1());
+		}
+
+		// The first moves of a game create the buffers for its messages, measure the rest.
+		int[] moves = randomGame(new Random(4));
+		Game game = startGame();
+		play(game, moves, 0, UNMEASURED_MOVES, message);
+		long emptyMeasurement = threadBean.getThreadAllocatedBytes(threadId);
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		emptyMeasurement = before - emptyMeasurement;
+		play(game, moves, UNMEASURED_MOVES, moves.length, message);
+		long allocated = threadBean.getThreadAllocatedBytes(threadId) - before - emptyMeasurement;
+		int movesPlayed = moves.length - UNMEASURED_MOVES;
+
+		assertFalse(game.hasEnded());
+		game.onDisconnect(game.getClientHandlerPlayer1());
+		assertTrue(movesPlayed > NUMBER_OF_MOVES / 2);
+		assertTrue("allocated " + allocated + " bytes in " + movesPlayed + " moves",
+				allocated < movesPlayed);
+	}
+
+	/**
+	 * Let the players of a game reply with moves, as their handlers would: each reply is read
+	 * into the message, which the game gets.
+	 *
+	 * @param from, the index of the first move to play
+	 * @param to, the index after the last move to play
+	 */
+	private void play(Game game, int[] moves, int from, int to, Message message)
+			throws IOException {
+		for (int move = from; move < to; move++) {
+			ByteBuffer reply = REPLIES[moves[move]];
+			reply.position(0);
+			MessageDecoder.decodeLine(reply, message);
+			game.onReply((move % 2 == 0) ? game.getClientHandlerPlayer1()
+					: game.getClientHandlerPlayer2(), message);
+		}
+	}
+
+	/**
+	 * Start a game without wait time of which the first player is black.
+	 */
+	private Game startGame() {
+		Game game = new Game(1, "1.0", BOARD_DIMENSION, 0);
+		game.setColorPlayer1(ProtocolMessages.BLACK);
+		game.setColorPlayer2(ProtocolMessages.WHITE);
+		game.setNamePlayer1("player 1");
+		game.setNamePlayer2("player 2");
+		game.setClientHandlerPlayer1(new CopyingHandler(false, true));
+		game.setClientHandlerPlayer2(new CopyingHandler(true, false));
+		game.setBoardEncodingPlayer2(BoardEncoding.DELTA);
+		game.start(TIMER, null);
+		return game;
+	}
+
+	/**
+	 * Find random valid moves, checked the way the game checks them, most of them after trying
+	 * occupied locations and repeated boards.
+	 *
+	 * @return the locations of the moves, NUMBER_OF_MOVES or fewer when no move is found
+	 */
+	private int[] randomGame(Random random) {
+		int size = BOARD_DIMENSION * BOARD_DIMENSION;
+		Position position = new Position("U".repeat(size), ProtocolMessages.BLACK,
+				2 * size);
+		PositionHistory prevBoards = new PositionHistory(2 * size);
+		int[] moves = new int[NUMBER_OF_MOVES];
+		int numberOfMoves = 0;
+		while (numberOfMoves < NUMBER_OF_MOVES) {
+			char color = (numberOfMoves % 2 == 0) ? ProtocolMessages.BLACK
+					: ProtocolMessages.WHITE;
+			position.addTo(prevBoards);
+			int location = -1;
+			for (int attempt = 0; attempt < 10 * size && location == -1; attempt++) {
+				int candidate = random.nextInt(size);
+				if (position.playIfValid(candidate, color, prevBoards) == null) {
+					location = candidate;
+				}
+			}
+			if (location == -1) {
+				break;
+			}
+			moves[numberOfMoves++] = location;
+		}
+		int[] found = new int[numberOfMoves];
+		System.arraycopy(moves, 0, found, 0, numberOfMoves);
+		return found;
+	}
+
+	/**
+	 * A player of which the handler copies the bytes of every message it gets into its own
+	 * buffer, which is large enough for any message of the game.
+	 */
+	private static class CopyingHandler implements Handler {
+		private final ByteBuffer copied = ByteBuffer.allocate(64 * 1024);
+		private final boolean frames;
+		private final boolean runLength;
+
+		CopyingHandler(boolean frames, boolean runLength) {
+			this.frames = frames;
+			this.runLength = runLength;
+		}
+
+		@Override
+		public void sendMessageToClient(String msg) {
+		}
+
+		@Override
+		public void sendMessageToClient(EncodedMessage msg) {
+			copied.clear();
+			msg.writeTo(copied, frames, runLength);
+			assertTrue(copied.position() == msg.length(frames, runLength));
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import protocol.ProtocolMessages;
+import ruleimplementations.Bitboard;
+import ruleimplementations.BoardUpdater;
+
+/**
+ * This class will test the packed board representation, in particular on boards that need 
+ * more than one long per color (more than 64 intersections).
+ */
+
+public class BitboardTest {
+
+	/**
+	 * Test whether a board survives the conversion to a Bitboard and back.
+	 */
+	@Test
+	void stringConversionTest() {
+		String board = "BUUUUUUUW" + "UUUUUUUUU" + "UUUUUUUUU" + "UUUUUUUUU" + "UUUUBUUUU"
+				+ "UUUUUUUUU" + "UUUUUUUUU" + "UUUUUUUUU" + "WUUUUUUUB";
+		Bitboard bitboard = new Bitboard(board);
+		
+		assertTrue(bitboard.toString().equals(board));
+		assertTrue(bitboard.matches(board));
+		assertTrue(bitboard.get(40) == ProtocolMessages.BLACK);
+		assertTrue(bitboard.get(72) == ProtocolMessages.WHITE);
+		assertTrue(bitboard.countStones(ProtocolMessages.BLACK) == 3);
+		assertTrue(bitboard.countStones(ProtocolMessages.WHITE) == 2);
+	}
+	
+	/**
+	 * Test capturing a group that lies across the border between the first and second long
+	 * (intersections 63 and 64) on a 9 by 9 board.
+	 * 
+	 * Row 6 (locations 54 - 62) and row 7 (locations 63 - 71):
+	 * UUUUUUUUB		UUUUUUUUB
+	 * WWUUUUUBB  --->  WWUUUUUBB
+	 * BBWUUUUUU		UUWUUUUUU
+	 * WWUUUUUUU		WWUUUUUUU
+	 */
+	@Test
+	void captureAcrossWordsTest() {
+		BoardUpdater boardUpdater = new BoardUpdater();
+		String top = "UUUUUUUUU" + "UUUUUUUUU" + "UUUUUUUUU" + "UUUUUUUUU" + "UUUUUUUUU";
+		String oldBoard = top + "UUUUUUUUB" + "WWUUUUUBB" + "BBWUUUUUU" + "WWUUUUUUU";
+		String expectedNewBoard = top + "UUUUUUUUB" + "WWUUUUUBB" + "UUWUUUUUU" + "WWUUUUUUU";
+		
+		String newBoard = boardUpdater.determineNewBoard(oldBoard, ProtocolMessages.WHITE);
+		assertTrue(newBoard.equals(expectedNewBoard));
+	}
+	
+	/**
+	 * Test that locations in the right column are not seen as neighbors of locations in the 
+	 * left column of the next row: the black stone in location 18 (start of row 2) is captured,
+	 * even though location 17 (end of row 1) is unoccupied.
+	 */
+	@Test
+	void noWrapAroundTest() {
+		BoardUpdater boardUpdater = new BoardUpdater();
+		String oldBoard = "UUUUUUUUU" + "WUUUUUUUU" + "BWUUUUUUU" + "WUUUUUUUU" 
+				+ "UUUUUUUUU" + "UUUUUUUUU" + "UUUUUUUUU" + "UUUUUUUUU" + "UUUUUUUUU";
+		String expectedNewBoard = "UUUUUUUUU" + "WUUUUUUUU" + "UWUUUUUUU" + "WUUUUUUUU" 
+				+ "UUUUUUUUU" + "UUUUUUUUU" + "UUUUUUUUU" + "UUUUUUUUU" + "UUUUUUUUU";
+		
+		String newBoard = boardUpdater.determineNewBoard(oldBoard, ProtocolMessages.WHITE);
+		assertTrue(newBoard.equals(expectedNewBoard));
+	}
+}
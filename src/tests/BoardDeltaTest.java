@@ -0,0 +1,54 @@
+package tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import protocol.BoardDelta;
+import ruleimplementations.Position;
+
+/**
+ * This class will test writing the changes of a move and applying them to a board.
+ */
+
+public class BoardDeltaTest {
+
+	/**
+	 * Test that the changes of a move that captures, applied to the board before the move, give
+	 * the board after the move.
+	 */
+	@Test
+	void captureTest() {
+		String before = "WBUUUUUUUUUUUUUUUUUUUUUUU";
+		Position position = new Position(before, 'B');
+		position.play(5);
+		StringBuilder changes = new StringBuilder("+");
+		position.appendLastMoveTo(changes);
+		assertTrue(changes.toString().equals("+B5U0"));
+
+		char[] board = before.toCharArray();
+		assertTrue(BoardDelta.apply(changes, board));
+		assertTrue(new String(board).equals(position.toString()));
+
+		position.pass();
+		changes.setLength(1);
+		position.appendLastMoveTo(changes);
+		assertTrue(changes.toString().equals("+"));
+	}
+
+	/**
+	 * Test that changes that are not well-formed or do not fit on the board change nothing.
+	 */
+	@Test
+	void invalidChangesTest() {
+		char[] board = "UUUUUUUUU".toCharArray();
+		assertFalse(BoardDelta.apply("+B9", board));
+		assertFalse(BoardDelta.apply("+X1", board));
+		assertFalse(BoardDelta.apply("+B", board));
+		assertFalse(BoardDelta.apply("+B1W99999999999", board));
+		assertFalse(BoardDelta.apply("UUUUUUUUU", board));
+		assertTrue(new String(board).equals("UUUUUUUUU"));
+		assertFalse(BoardDelta.isDelta("UBW"));
+	}
+}
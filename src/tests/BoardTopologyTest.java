@@ -0,0 +1,47 @@
+package tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import ruleimplementations.BoardTopology;
+
+/**
+ * This class will test the neighbor tables of a board.
+ */
+
+public class BoardTopologyTest {
+	
+	/**
+	 * Test the neighbors on a 3 x 3 board.
+	 * 
+	 * 0 1 2
+	 * 3 4 5
+	 * 6 7 8
+	 */
+	@Test
+	void neighborsTest() {
+		BoardTopology topology = BoardTopology.forDimension(3);
+		assertTrue(topology == BoardTopology.forDimension(3));
+		
+		assertTrue(topology.getDegree(0) == 2);
+		assertTrue(topology.getDegree(1) == 3);
+		assertTrue(topology.getDegree(4) == 4);
+		assertTrue(topology.isCorner(8));
+		assertTrue(topology.isEdge(5));
+		assertFalse(topology.isEdge(4));
+		
+		assertTrue(topology.isNeighbor(4, 1));
+		assertTrue(topology.isNeighbor(4, 7));
+		assertTrue(topology.isNeighbor(3, 4));
+		assertFalse(topology.isNeighbor(0, 4));
+		// the end of one row is not next to the start of the next row
+		assertFalse(topology.isNeighbor(2, 3));
+		assertFalse(topology.isNeighbor(3, 2));
+		
+		assertTrue(topology.isOnBoard(8));
+		assertFalse(topology.isOnBoard(-1));
+		assertFalse(topology.isOnBoard(9));
+	}
+}
@@ -0,0 +1,97 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import protocol.ProtocolMessages;
+import ruleimplementations.Bitboard;
+import ruleimplementations.BoardUpdater;
+
+/**
+ * This class will test whether placing stones and only checking the chains next to them gives
+ * the same boards as checking the whole board for captured groups after every move.
+ */
+
+public class CaptureResolverTest {
+	
+	/**
+	 * Test capture and suicide when only the chains next to the stone are checked.
+	 * 
+	 * UBUUU	 UBUUU		UBUUU
+	 * BWBUU	 BUBUU		BUBUU
+	 * UBUUU --> UBUUU -->	UBUUU
+	 * UUUUU	 UUUUU		UUUUU
+	 * UUUUU	 UUUUU		UUUUU
+	 * (B captures W in 6 by playing 11, W then plays 6 (suicide)) 
+	 */
+	@Test
+	void captureAndSuicideTest() {
+		BoardUpdater boardUpdater = new BoardUpdater();
+		Bitboard board = new Bitboard("UBUUUBWUUUUUUUUUUUUUUUUUU");
+		
+		assertTrue(boardUpdater.determineNewBoard(board, 7, ProtocolMessages.BLACK) == 0);
+		assertTrue(board.toString().equals("UBUUUBWBUUUUUUUUUUUUUUUUU"));
+		assertTrue(boardUpdater.determineNewBoard(board, 11, ProtocolMessages.BLACK) == 1);
+		assertTrue(board.toString().equals("UBUUUBUBUUUBUUUUUUUUUUUUU"));
+		assertTrue(boardUpdater.determineNewBoard(board, 6, ProtocolMessages.WHITE) == 1);
+		assertTrue(board.toString().equals("UBUUUBUBUUUBUUUUUUUUUUUUU"));
+	}
+	
+	/**
+	 * Test whether the removed stones are reported.
+	 * 
+	 * UWWBU	 UUUBU
+	 * WBBWU	 WBBWU
+	 * UWWUU --> UWWUU (B plays 0 and captures 1 and 2)
+	 * UUUUU	 UUUUU
+	 * UUUUU	 UUUUU
+	 */
+	@Test
+	void removedStonesTest() {
+		String board = "UWWBUWBBWUUWWUUUUUUUUUUUU";
+		String expectedNewBoard = "BUUBUWBBWUUWWUUUUUUUUUUUU";
+		
+		BoardUpdater local = new BoardUpdater();
+		Bitboard bitboard = new Bitboard(board);
+		assertTrue(local.determineNewBoard(bitboard, 0, ProtocolMessages.BLACK) == 2);
+		assertTrue(bitboard.toString().equals(expectedNewBoard));
+		int[] removedStones = {local.getRemovedStone(0), local.getRemovedStone(1)};
+		Arrays.sort(removedStones);
+		assertArrayEquals(new int[] {1, 2}, removedStones);
+	}
+	
+	/**
+	 * Play random games and compare every board with the board of a full check.
+	 */
+	@Test
+	void randomGamesTest() {
+		Random random = new Random(1);
+		BoardUpdater fullCheck = new BoardUpdater();
+		
+		for (int game = 0; game < 20; game++) {
+			int boardDimension = 5 + game % 8;
+			String board = "U".repeat(boardDimension * boardDimension);
+			BoardUpdater local = new BoardUpdater();
+			Bitboard bitboard = new Bitboard(board);
+			
+			for (int move = 0; move < boardDimension * boardDimension * 2; move++) {
+				char color = (move % 2 == 0) ? ProtocolMessages.BLACK : ProtocolMessages.WHITE;
+				int location = random.nextInt(board.length());
+				if (board.charAt(location) != ProtocolMessages.UNOCCUPIED) {
+					continue;
+				}
+				String placed = board.substring(0, location) + color 
+						+ board.substring(location + 1);
+				String expectedNewBoard = fullCheck.determineNewBoard(placed, color);
+				local.determineNewBoard(bitboard, location, color);
+				board = bitboard.toString();
+				assertTrue(board.equals(expectedNewBoard));
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import server.Server;
+
+/**
+ * This class will test that the messages that the server sends to a client while it handles
+ * one event arrive together, because they are written at once.
+ */
+
+public class CoalescedWritesTest {
+	private final static ByteArrayOutputStream OUTCONTENT = new ByteArrayOutputStream();
+	private final static PrintStream ORIGINALOUT = System.out;
+
+	@BeforeAll
+	static public void setUpStream() {
+		System.setOut(new PrintStream(OUTCONTENT));
+	}
+
+	@Test
+	void eventLoopTest() throws IOException {
+		coalescedMessagesTest(Server.Mode.EVENT_LOOP, 8898);
+	}
+
+	@Test
+	void threadPerClientTest() throws IOException {
+		coalescedMessagesTest(Server.Mode.THREAD_PER_CLIENT, 8899);
+	}
+
+	/**
+	 * When the second player connects, the first player gets the start message and the first
+	 * turn together. When the game ends, the player that passed last gets the result of its
+	 * pass and the end of the game together.
+	 */
+	private void coalescedMessagesTest(Server.Mode mode, int port) throws IOException {
+		Server testServer = new Server(mode);
+		testServer.setBoardDimension(5);
+		testServer.setTcpNoDelay(true);
+		testServer.setBufferSizes(256, 0);
+		InetAddress addr = InetAddress.getLocalHost();
+		testServer.createSocket(port);
+		new Thread(testServer).start();
+
+		TestClient black = new TestClient(addr, port, "H;1.0;Black;B");
+		assertTrue(black.readLine().startsWith("H;1.0;"));
+		TestClient white = new TestClient(addr, port, "H;1.0;White");
+		assertTrue(white.readLine().startsWith("H;1.0;"));
+
+		assertTrue(black.readLine().equals("G;UUUUUUUUUUUUUUUUUUUUUUUUU;B"));
+		assertTrue(black.ready());
+		assertTrue(black.readLine().equals("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null"));
+		assertTrue(white.readLine().equals("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W"));
+
+		black.send("M;0");
+		assertTrue(black.readLine().startsWith("R;V;B"));
+		assertTrue(white.readLine().endsWith(";0"));
+		white.send("M;P");
+		assertTrue(white.readLine().startsWith("R;V;"));
+		assertTrue(black.readLine().endsWith(";P"));
+		black.send("M;P");
+		assertTrue(black.readLine().startsWith("R;V;"));
+		assertTrue(black.ready());
+		assertTrue(black.readLine().startsWith("E;F;B;"));
+		assertTrue(white.readLine().startsWith("E;F;B;"));
+
+		black.close();
+		white.close();
+	}
+
+	@AfterAll
+	static void restoreStream() {
+		System.setOut(ORIGINALOUT);
+	}
+}
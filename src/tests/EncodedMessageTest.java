@@ -0,0 +1,105 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import protocol.EncodedBoard;
+import protocol.EncodedMessage;
+import protocol.FrameCodec;
+import protocol.MessageGenerator;
+
+/**
+ * This class will test that the messages built around a shared encoded board have the same
+ * text, line and frame as the messages of MessageGenerator and FrameCodec.
+ */
+
+public class EncodedMessageTest {
+
+	/**
+	 * Test turn and result messages, with the whole board and with the changes of the move.
+	 */
+	@Test
+	void sameBytesTest() throws IOException {
+		char[] emptyBoard = new char[361];
+		Arrays.fill(emptyBoard, 'U');
+		String board = "BW" + new String(emptyBoard, 0, 359);
+		EncodedBoard encodedBoard = new EncodedBoard(board, "+W1U40");
+		MessageGenerator messageGenerator = new MessageGenerator();
+
+		for (boolean delta : new boolean[] {false, true}) {
+			String boardText = delta ? "+W1U40" : board;
+			check(EncodedMessage.turn(encodedBoard, delta, "1"),
+					messageGenerator.doTurnMessage(boardText, "1"));
+			check(EncodedMessage.turn(encodedBoard, delta, null),
+					messageGenerator.doTurnMessage(boardText, null));
+			check(EncodedMessage.turn(encodedBoard, delta, "P"),
+					messageGenerator.doTurnMessage(boardText, "P"));
+			check(EncodedMessage.result(encodedBoard, delta),
+					messageGenerator.resultMessage(true, boardText));
+		}
+		// A move that is not written canonically has no binary form, and is sent as text
+		check(EncodedMessage.turn(encodedBoard, false, "01"),
+				messageGenerator.doTurnMessage(board, "01"));
+	}
+
+	/**
+	 * Test that a board around buffers that change is encoded again once it is reset, and that
+	 * the bytes of an earlier message do not change.
+	 */
+	@Test
+	void resetTest() {
+		StringBuilder board = new StringBuilder("UUUU");
+		StringBuilder changes = new StringBuilder("+");
+		EncodedBoard encodedBoard = new EncodedBoard(board, changes);
+		ByteBuffer before = EncodedMessage.result(encodedBoard, false).bytes(false, false);
+
+		board.setCharAt(1, 'B');
+		changes.append("B1");
+		encodedBoard.reset();
+		assertTrue(EncodedMessage.result(encodedBoard, false).toString().equals("R;V;UBUU"));
+		assertTrue(EncodedMessage.result(encodedBoard, true).toString().equals("R;V;+B1"));
+		assertTrue(equal(before, "R;V;UUUU\n".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Test that a message that is reset after the next move is built again, and that the bytes
+	 * it had before the move do not change until it is reset again.
+	 */
+	@Test
+	void reuseTest() {
+		StringBuilder board = new StringBuilder("UUUU");
+		StringBuilder changes = new StringBuilder("+");
+		EncodedBoard encodedBoard = new EncodedBoard(board, changes);
+		EncodedMessage message = EncodedMessage.result(encodedBoard, false);
+		ByteBuffer before = message.bytes(true, false);
+
+		board.setCharAt(1, 'B');
+		changes.append("B1");
+		encodedBoard.reset();
+		assertTrue(equal(message.reset(true).bytes(true, false), FrameCodec.encode("R;V;+B1")));
+		assertTrue(equal(before, FrameCodec.encode("R;V;UUUU")));
+	}
+
+	private void check(EncodedMessage message, String text) throws IOException {
+		assertTrue(text, message.toString().equals(text));
+		assertTrue(text, equal(message.bytes(false, false), (text + "\n").getBytes(
+				StandardCharsets.UTF_8)));
+		assertTrue(text, equal(message.bytes(true, false), FrameCodec.encode(text)));
+		assertTrue(message.bytes(true, false).isReadOnly());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		message.writeTo(out, true, false);
+		assertTrue(text, Arrays.equals(out.toByteArray(), FrameCodec.encode(text)));
+	}
+
+	private boolean equal(ByteBuffer buffer, byte[] bytes) {
+		return buffer.equals(ByteBuffer.wrap(bytes));
+	}
+}
@@ -0,0 +1,159 @@
+package tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import client.ClientTUI;
+import client.ServerHandler;
+import protocol.FrameCodec;
+import protocol.Message;
+import protocol.MessageDecoder;
+import protocol.MessageReader;
+import server.Server;
+
+/**
+ * This class will test the binary frames: writing them and reading them back with
+ * MessageDecoder, and a game between two ServerHandlers that agreed on frames with a server in
+ * both of its modes.
+ */
+
+public class FrameCodecTest {
+	private final static ByteArrayOutputStream OUTCONTENT = new ByteArrayOutputStream();
+	private final static PrintStream ORIGINALOUT = System.out;
+
+	@BeforeAll
+	static public void setUpStream() {
+		System.setOut(new PrintStream(OUTCONTENT));
+	}
+
+	/**
+	 * Test that the messages with a binary form are written in it, with their command as
+	 * opcode, that any other message is written as text, and that MessageDecoder reads every
+	 * frame back as the same text.
+	 */
+	@Test
+	void roundTripTest() throws IOException {
+		String board = emptyBoard(19);
+		String[] binary = {"G;" + board + ";W", "T;" + board + ";null", "T;+B12U13;12",
+			"T;+;P", "R;V;WBUUUUUUU", "R;V;+W360", "R;I;Your move was invalid. You lose the game.",
+			"M;360", "M;P", "M;0"};
+		String[] text = {"M;05", "M;-1", "M;+3", "Q", "A", "L", "E;F;B;12.5;3.0",
+			"H;1.1;Welcome Jörg to the GO server!;A;#", "?;1.0;An error; with delimiters",
+			"T;UUXU;3", "T;+B;3", "T;+B01;3", "R;V;", "R;X;WB", "G;UUUU;", "T;UUUU"};
+		Message message = new Message();
+		for (String[] messages : new String[][] {binary, text}) {
+			for (String msg : messages) {
+				byte[] frame = FrameCodec.encode(msg);
+				byte opcode = frame[(frame[0] & 0x80) == 0 ? 1 : 2];
+				assertTrue(msg, (opcode == FrameCodec.TEXT) == (messages == text));
+				assertTrue(msg, MessageDecoder.decodeFrame(ByteBuffer.wrap(frame), message));
+				assertTrue(msg, message.toString().equals(msg));
+			}
+		}
+	}
+
+	/**
+	 * Test that boards and moves take a fraction of the bytes of their lines.
+	 */
+	@Test
+	void sizeTest() {
+		String turn = "T;" + emptyBoard(19) + ";360";
+		assertTrue(FrameCodec.encode(turn).length < 100);
+		assertTrue(FrameCodec.encode("M;360").length == 4);
+		assertTrue(FrameCodec.encode("T;+B12U13U14;12").length == 8);
+	}
+
+	/**
+	 * Test that a line followed by frames, as after a handshake, is read back by a
+	 * MessageReader.
+	 */
+	@Test
+	void streamTest() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		FrameCodec.writeLine("H;1.1;Welcome;#", bytes);
+		FrameCodec.writeFrame("G;UUUUBUUUW;B", bytes);
+		FrameCodec.writeFrame("E;F;B;12.5;3.0", bytes);
+
+		MessageReader reader = new MessageReader(new ByteArrayInputStream(bytes.toByteArray()));
+		Message message = new Message();
+		assertTrue(reader.read(message, false) && message.toString().equals("H;1.1;Welcome;#"));
+		assertTrue(reader.read(message, true) && message.toString().equals("G;UUUUBUUUW;B"));
+		assertTrue(reader.read(message, true) && message.toString().equals("E;F;B;12.5;3.0"));
+		assertFalse(reader.read(message, true));
+	}
+
+	/**
+	 * Play a short game with frames on a server with event loops.
+	 */
+	@Test
+	void eventLoopGameTest() throws IOException {
+		playGame(Server.Mode.EVENT_LOOP, 8891);
+	}
+
+	/**
+	 * Play a short game with frames on a server with a thread per client.
+	 */
+	@Test
+	void threadPerClientGameTest() throws IOException {
+		playGame(Server.Mode.THREAD_PER_CLIENT, 8900);
+	}
+
+	/**
+	 * Let two ServerHandlers play a move, a pass and a quit, and check every message they get.
+	 */
+	private void playGame(Server.Mode mode, int port) throws IOException {
+		Server testServer = new Server(mode);
+		testServer.setBoardDimension(5);
+		InetAddress addr = InetAddress.getLocalHost();
+		testServer.createSocket(port);
+		new Thread(testServer).start();
+
+		ServerHandler black = new ServerHandler(new ClientTUI());
+		black.createConnection(addr, port);
+		black.doHandshake("Black", 'B');
+		ServerHandler white = new ServerHandler(new ClientTUI());
+		white.createConnection(addr, port);
+		white.doHandshake("White", 'B');
+		assertTrue(black.getFrames() && white.getFrames());
+
+		String board = emptyBoard(5);
+		assertTrue(black.readLineFromServer().equals("G;" + board + ";B"));
+		assertTrue(white.readLineFromServer().equals("G;" + board + ";W"));
+		assertTrue(black.readLineFromServer().equals("T;+;null"));
+		black.sendToGame("M;12");
+		assertTrue(black.readLineFromServer().equals("R;V;+B12"));
+		assertTrue(white.readLineFromServer().equals("T;+B12;12"));
+		white.sendToGame("M;P");
+		assertTrue(white.readLineFromServer().equals("R;V;+"));
+		assertTrue(black.readLineFromServer().equals("T;+;P"));
+		black.sendToGame("Q");
+		assertTrue(black.readLineFromServer().startsWith("E;Q;W;"));
+		assertTrue(white.readLineFromServer().startsWith("E;Q;W;"));
+
+		black.closeConnection();
+		white.closeConnection();
+	}
+
+	private String emptyBoard(int boardDimension) {
+		char[] board = new char[boardDimension * boardDimension];
+		Arrays.fill(board, 'U');
+		return new String(board);
+	}
+
+	@AfterAll
+	static void restoreStream() {
+		System.setOut(ORIGINALOUT);
+	}
+}
@@ -4,18 +4,21 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.*;
-import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.easymock.EasyMock;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import protocol.BoardEncoding;
+import protocol.EncodedMessage;
 import protocol.ProtocolMessages;
 import ruleimplementations.BoardUpdater;
 import ruleimplementations.ScoreCalculator;
 import server.Game;
 import server.Handler;
+import server.HashedWheelTimer;
 
 /**
  * This class will test whether the Game sends messages correctly and responds correctly 
@@ -26,9 +29,13 @@ public class GameTest {
 	private final static ByteArrayOutputStream OUTCONTENT = new ByteArrayOutputStream();
 	private final static PrintStream ORIGINALOUT = System.out;
 	
+	/** Runs the reply deadlines of the games, which are not reached in these tests. */
+	private final static HashedWheelTimer TIMER = new HashedWheelTimer("test timer");
+	
 	@BeforeAll
 	static public void setUpStream() {
 	    System.setOut(new PrintStream(OUTCONTENT));
+	    TIMER.start();
 	}
 	
 	/**
@@ -40,24 +47,23 @@ public class GameTest {
 	 * 
 	 * Test valid first turns (use edge cases 0 and 24). (Cannot test it without 
 	 * the first turn: then I get an invalid move message that is not expected.)
-	 * @throws SocketTimeoutException 
 	 */
 	
 	@Test
-	void startGameTest() throws SocketTimeoutException {
+	void startGameTest() {
 		
 		//arrange
-		Game game1 = new Game(1, "1.0", 5, 100);
-		Handler handler1 = EasyMock.createMock(Handler.class);
-		Handler handler2 = EasyMock.createMock(Handler.class);
+		Game game1 = new Game(1, "1.0", 5, 0);
+		Handler handler1 = textHandler();
+		Handler handler2 = textHandler();
 		game1.setClientHandlerPlayer1(handler1);
 		game1.setClientHandlerPlayer2(handler2);
 		game1.setColorPlayer1(ProtocolMessages.BLACK);
 		game1.setColorPlayer2(ProtocolMessages.WHITE);
 		
-		Game game2 = new Game(2, "1.0", 5, 100);
-		Handler handler3 = EasyMock.createMock(Handler.class);
-		Handler handler4 = EasyMock.createMock(Handler.class);
+		Game game2 = new Game(2, "1.0", 5, 0);
+		Handler handler3 = textHandler();
+		Handler handler4 = textHandler();
 		game2.setClientHandlerPlayer1(handler3);
 		game2.setClientHandlerPlayer2(handler4);
 		game2.setColorPlayer1(ProtocolMessages.WHITE);
@@ -66,34 +72,35 @@ public class GameTest {
 		// --> set expectations
 		handler2.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
 		handler1.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
-		EasyMock.expect(handler1.getReply()).andReturn("M;0");
 		handler1.sendMessageToClient("R;V;BUUUUUUUUUUUUUUUUUUUUUUUU");
+		handler2.sendMessageToClient("T;BUUUUUUUUUUUUUUUUUUUUUUUU;0");
 
 		handler4.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;B");
 		handler4.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
-		EasyMock.expect(handler4.getReply()).andReturn("M;0");
 		handler4.sendMessageToClient("R;V;BUUUUUUUUUUUUUUUUUUUUUUUU");
+		handler3.sendMessageToClient("T;BUUUUUUUUUUUUUUUUUUUUUUUU;0");
 		
 		EasyMock.replay(handler1, handler2, handler3, handler4);
 		
 		//act
-		game1.startGame();
-		game2.startGame();
+		game1.start(TIMER, null);
+		game1.onReply(handler1, "M;0");
+		game2.start(TIMER, null);
+		game2.onReply(handler4, "M;0");
 		
 		//assert
 		EasyMock.verify(handler1, handler2, handler3, handler4);
 	}
 	
-	/** Test outside-of-board invalid first turn. 
-	 * @throws SocketTimeoutException */
+	/** Test outside-of-board invalid first turn. */
 	
 	@Test
-	void outsideOfBoardInvalidTurnTest() throws SocketTimeoutException {
+	void outsideOfBoardInvalidTurnTest() {
 		
 		//arrange
-		Game game = new Game(1, "1.0", 5, 100);
-		Handler handler1 = EasyMock.createMock(Handler.class);
-		Handler handler2 = EasyMock.createMock(Handler.class);
+		Game game = new Game(1, "1.0", 5, 0);
+		Handler handler1 = textHandler();
+		Handler handler2 = textHandler();
 		game.setClientHandlerPlayer1(handler1);
 		game.setClientHandlerPlayer2(handler2);
 		game.setColorPlayer1(ProtocolMessages.BLACK);
@@ -102,29 +109,28 @@ public class GameTest {
 		// --> set expectations
 		handler2.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
 		handler1.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
-		EasyMock.expect(handler1.getReply()).andReturn("M;-1");
 		handler1.sendMessageToClient("R;I;Your move was invalid. You lose the game.");
 		handler1.sendMessageToClient("E;C;W;-0.5;0.0");
 		handler2.sendMessageToClient("E;C;W;-0.5;0.0");
 		EasyMock.replay(handler1, handler2);
 		
 		//act
-		game.runGame();
+		game.start(TIMER, null);
+		game.onReply(handler1, "M;-1");
 		
 		//assert
 		EasyMock.verify(handler1, handler2);
 	}
 	
-	/** Test occupied-location invalid turn. 
-	 * @throws SocketTimeoutException */
+	/** Test occupied-location invalid turn. */
 	
 	@Test
-	void occupiedLocationInvalidTurnTest() throws SocketTimeoutException {
+	void occupiedLocationInvalidTurnTest() {
 		
 		//arrange
-		Game game = new Game(1, "1.0", 5, 100);
-		Handler handler1 = EasyMock.createMock(Handler.class);
-		Handler handler2 = EasyMock.createMock(Handler.class);
+		Game game = new Game(1, "1.0", 5, 0);
+		Handler handler1 = textHandler();
+		Handler handler2 = textHandler();
 		game.setClientHandlerPlayer1(handler1);
 		game.setClientHandlerPlayer2(handler2);
 		game.setColorPlayer1(ProtocolMessages.BLACK);
@@ -133,32 +139,31 @@ public class GameTest {
 		// --> set expectations
 		handler2.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
 		handler1.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
-		EasyMock.expect(handler1.getReply()).andReturn("M;3");
 		handler1.sendMessageToClient("R;V;UUUBUUUUUUUUUUUUUUUUUUUUU");
 		handler2.sendMessageToClient("T;UUUBUUUUUUUUUUUUUUUUUUUUU;3");
-		EasyMock.expect(handler2.getReply()).andReturn("M;3");
 		handler2.sendMessageToClient("R;I;Your move was invalid. You lose the game.");
 		handler1.sendMessageToClient("E;C;B;24.5;0.0");
 		handler2.sendMessageToClient("E;C;B;24.5;0.0");
 		EasyMock.replay(handler1, handler2);
 		
 		//act
-		game.runGame();
+		game.start(TIMER, null);
+		game.onReply(handler1, "M;3");
+		game.onReply(handler2, "M;3");
 		
 		//assert
 		EasyMock.verify(handler1, handler2);
 	}
 	
-	/** Test non-integer invalid turn. 
-	 * @throws SocketTimeoutException */
+	/** Test non-integer invalid turn. */
 	
 	@Test
-	void nonIntegerInvalidTurnTest() throws SocketTimeoutException {
+	void nonIntegerInvalidTurnTest() {
 		
 		//arrange
-		Game game = new Game(1, "1.0", 5, 100);
-		Handler handler1 = EasyMock.createMock(Handler.class);
-		Handler handler2 = EasyMock.createMock(Handler.class);
+		Game game = new Game(1, "1.0", 5, 0);
+		Handler handler1 = textHandler();
+		Handler handler2 = textHandler();
 		game.setClientHandlerPlayer1(handler1);
 		game.setClientHandlerPlayer2(handler2);
 		game.setColorPlayer1(ProtocolMessages.BLACK);
@@ -167,14 +172,14 @@ public class GameTest {
 		// --> set expectations
 		handler2.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
 		handler1.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
-		EasyMock.expect(handler1.getReply()).andReturn("M;g");
 		handler1.sendMessageToClient("R;I;Your move was invalid. You lose the game.");
 		handler1.sendMessageToClient("E;C;W;-0.5;0.0");
 		handler2.sendMessageToClient("E;C;W;-0.5;0.0");
 		EasyMock.replay(handler1, handler2);
 		
 		//act
-		game.runGame();
+		game.start(TIMER, null);
+		game.onReply(handler1, "M;g");
 		
 		//assert
 		EasyMock.verify(handler1, handler2);
@@ -182,16 +187,15 @@ public class GameTest {
 	
 	/**
 	 * Test whether two passes in a row lead to an end of game.
-	 * @throws SocketTimeoutException 
 	 */
 	
 	@Test
-	void twoPassesTest() throws SocketTimeoutException {
+	void twoPassesTest() {
 		
 		//arrange
-		Game game = new Game(1, "1.0", 5, 100);
-		Handler handler1 = EasyMock.createMock(Handler.class);
-		Handler handler2 = EasyMock.createMock(Handler.class);
+		Game game = new Game(1, "1.0", 5, 0);
+		Handler handler1 = textHandler();
+		Handler handler2 = textHandler();
 		game.setClientHandlerPlayer1(handler1);
 		game.setClientHandlerPlayer2(handler2);
 		game.setColorPlayer1(ProtocolMessages.BLACK);
@@ -200,18 +204,18 @@ public class GameTest {
 		// --> set expectations
 		handler2.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
 		handler1.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
-		EasyMock.expect(handler1.getReply()).andReturn("M;P");
 		
 		handler1.sendMessageToClient("R;V;UUUUUUUUUUUUUUUUUUUUUUUUU");
 		handler2.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;P");
-		EasyMock.expect(handler2.getReply()).andReturn("M;P");
 		handler2.sendMessageToClient("R;V;UUUUUUUUUUUUUUUUUUUUUUUUU");
 		handler1.sendMessageToClient("E;F;W;-0.5;0.0");
 		handler2.sendMessageToClient("E;F;W;-0.5;0.0");
 		EasyMock.replay(handler1, handler2);
 	
 		//act
-		game.runGame();
+		game.start(TIMER, null);
+		game.onReply(handler1, "M;P");
+		game.onReply(handler2, "M;P");
 		
 		//assert
 		EasyMock.verify(handler1, handler2);
@@ -219,16 +223,15 @@ public class GameTest {
 	
 	/**
 	 * Test whether two passes not in a row do not lead to an end of game.
-	 * @throws SocketTimeoutException 
 	 */
 	
 	@Test
-	void twoNonConsecutivePassesTest() throws SocketTimeoutException {
+	void twoNonConsecutivePassesTest() {
 		
 		//arrange
-		Game game = new Game(1, "1.0", 5, 100);
-		Handler handler1 = EasyMock.createMock(Handler.class);
-		Handler handler2 = EasyMock.createMock(Handler.class);
+		Game game = new Game(1, "1.0", 5, 0);
+		Handler handler1 = textHandler();
+		Handler handler2 = textHandler();
 		game.setClientHandlerPlayer1(handler1);
 		game.setClientHandlerPlayer2(handler2);
 		game.setColorPlayer1(ProtocolMessages.BLACK);
@@ -237,46 +240,39 @@ public class GameTest {
 		// --> set expectations
 		handler2.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
 		handler1.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
-		EasyMock.expect(handler1.getReply()).andReturn("M;P");
 		handler1.sendMessageToClient("R;V;UUUUUUUUUUUUUUUUUUUUUUUUU");
 		handler2.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;P");
-		EasyMock.expect(handler2.getReply()).andReturn("M;3");
 		handler2.sendMessageToClient("R;V;UUUWUUUUUUUUUUUUUUUUUUUUU");
 		handler1.sendMessageToClient("T;UUUWUUUUUUUUUUUUUUUUUUUUU;3");
-		EasyMock.expect(handler1.getReply()).andReturn("M;4");
 		handler1.sendMessageToClient("R;V;UUUWBUUUUUUUUUUUUUUUUUUUU");
 		handler2.sendMessageToClient("T;UUUWBUUUUUUUUUUUUUUUUUUUU;4");
-		EasyMock.expect(handler2.getReply()).andReturn("M;P");
 		handler2.sendMessageToClient("R;V;UUUWBUUUUUUUUUUUUUUUUUUUU");
+		handler1.sendMessageToClient("T;UUUWBUUUUUUUUUUUUUUUUUUUU;P");
 		EasyMock.replay(handler1, handler2);
 		
 		//act
-		game.startGame(); //first doTurn called in this method)
-		game.doTurn();
-		game.processReply();
-		game.doTurn();
-		game.processReply();
-		game.doTurn();
-		game.processReply();
-		game.hasEnded();
+		game.start(TIMER, null);
+		game.onReply(handler1, "M;P");
+		game.onReply(handler2, "M;3");
+		game.onReply(handler1, "M;4");
+		game.onReply(handler2, "M;P");
 		
 		//assert
 		EasyMock.verify(handler1, handler2);
-//		assertFalse(game.hasEnded());
+		assertFalse(game.hasEnded());
 	}
 
 	/**
 	 * Test whether quitting leads to an end of game.
-	 * @throws SocketTimeoutException 
 	 */
 	
 	@Test
-	void quitOnTurnTest() throws SocketTimeoutException {
+	void quitOnTurnTest() {
 		
 		//arrange
-		Game game = new Game(1, "1.0", 5, 100);
-		Handler handler1 = EasyMock.createMock(Handler.class);
-		Handler handler2 = EasyMock.createMock(Handler.class);
+		Game game = new Game(1, "1.0", 5, 0);
+		Handler handler1 = textHandler();
+		Handler handler2 = textHandler();
 		game.setClientHandlerPlayer1(handler1);
 		game.setClientHandlerPlayer2(handler2);
 		game.setColorPlayer1(ProtocolMessages.BLACK);
@@ -285,19 +281,266 @@ public class GameTest {
 		// --> set expectations
 		handler2.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
 		handler1.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
-		EasyMock.expect(handler1.getReply()).andReturn("M;7");
 		handler1.sendMessageToClient("R;V;UUUUUUUBUUUUUUUUUUUUUUUUU");
 		handler2.sendMessageToClient("T;UUUUUUUBUUUUUUUUUUUUUUUUU;7");
-		EasyMock.expect(handler2.getReply()).andReturn("Q");
 		handler1.sendMessageToClient("E;Q;B;24.5;0.0");
 		handler2.sendMessageToClient("E;Q;B;24.5;0.0");
 		EasyMock.replay(handler1, handler2);
 	
 		//act
-		game.runGame();
+		game.start(TIMER, null);
+		game.onReply(handler1, "M;7");
+		game.onReply(handler2, "Q");
+		
+		//assert
+		EasyMock.verify(handler1, handler2);
+	}
+	
+	/**
+	 * Test that a reply with an unknown command, or with a command of more than one character,
+	 * ends the game with an error message, and that the end messages are sent once.
+	 */
+	
+	@Test
+	void unknownCommandTest() {
+		
+		//arrange
+		Game game = new Game(1, "1.0", 5, 0);
+		Handler handler1 = textHandler();
+		Handler handler2 = textHandler();
+		game.setClientHandlerPlayer1(handler1);
+		game.setClientHandlerPlayer2(handler2);
+		game.setColorPlayer1(ProtocolMessages.BLACK);
+		game.setColorPlayer2(ProtocolMessages.WHITE);
+		
+		Game game2 = new Game(2, "1.0", 5, 0);
+		Handler handler3 = textHandler();
+		Handler handler4 = textHandler();
+		game2.setClientHandlerPlayer1(handler3);
+		game2.setClientHandlerPlayer2(handler4);
+		game2.setColorPlayer1(ProtocolMessages.BLACK);
+		game2.setColorPlayer2(ProtocolMessages.WHITE);
+		
+		// --> set expectations
+		handler2.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
+		handler1.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
+		handler1.sendMessageToClient(EasyMock.startsWith("?;1.0;Player did not keep to the "
+				+ "protocol: 'Q', '?' or 'M' expected"));
+		handler1.sendMessageToClient("E;C;W;-0.5;0.0");
+		handler2.sendMessageToClient("E;C;W;-0.5;0.0");
+		
+		handler4.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
+		handler3.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
+		handler3.sendMessageToClient(EasyMock.startsWith("?;1.0;Player did not keep to the "
+				+ "protocol: the first part of its move message"));
+		handler3.sendMessageToClient("E;C;W;-0.5;0.0");
+		handler4.sendMessageToClient("E;C;W;-0.5;0.0");
+		EasyMock.replay(handler1, handler2, handler3, handler4);
+		
+		//act
+		game.start(TIMER, null);
+		game.onReply(handler1, "X;3");
+		game2.start(TIMER, null);
+		game2.onReply(handler3, "MM;3");
+		
+		//assert
+		EasyMock.verify(handler1, handler2, handler3, handler4);
+		assertTrue(game.hasEnded() && game2.hasEnded());
+	}
+	
+	/**
+	 * Test that a player that replies with an error message loses the game.
+	 */
+	
+	@Test
+	void errorReplyTest() {
+		
+		//arrange
+		Game game = new Game(1, "1.0", 5, 0);
+		Handler handler1 = textHandler();
+		Handler handler2 = textHandler();
+		game.setClientHandlerPlayer1(handler1);
+		game.setClientHandlerPlayer2(handler2);
+		game.setColorPlayer1(ProtocolMessages.BLACK);
+		game.setColorPlayer2(ProtocolMessages.WHITE);
+		
+		// --> set expectations
+		handler2.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
+		handler1.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
+		handler1.sendMessageToClient("R;I;You did not understand our message, we will stop.");
+		handler1.sendMessageToClient("E;C;W;-0.5;0.0");
+		handler2.sendMessageToClient("E;C;W;-0.5;0.0");
+		EasyMock.replay(handler1, handler2);
+		
+		//act
+		game.start(TIMER, null);
+		game.onReply(handler1, "?;1.0;Unexpected message");
+		
+		//assert
+		EasyMock.verify(handler1, handler2);
+	}
+	
+	/**
+	 * Test that a player of the delta version gets the changes of every move instead of the
+	 * board, including the captured stones, while the other player gets whole boards.
+	 */
+	
+	@Test
+	void deltaBoardsTest() {
+		
+		//arrange
+		Game game = new Game(1, "1.1", 5, 0);
+		Handler handler1 = textHandler();
+		Handler handler2 = textHandler();
+		game.setClientHandlerPlayer1(handler1);
+		game.setClientHandlerPlayer2(handler2);
+		game.setColorPlayer1(ProtocolMessages.BLACK);
+		game.setColorPlayer2(ProtocolMessages.WHITE);
+		game.setBoardEncodingPlayer1(BoardEncoding.DELTA);
+		
+		// --> set expectations
+		handler2.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
+		handler1.sendMessageToClient("T;+;null");
+		handler1.sendMessageToClient("R;V;+B1");
+		handler2.sendMessageToClient("T;UBUUUUUUUUUUUUUUUUUUUUUUU;1");
+		handler2.sendMessageToClient("R;V;WBUUUUUUUUUUUUUUUUUUUUUUU");
+		handler1.sendMessageToClient("T;+W0;0");
+		handler1.sendMessageToClient("R;V;+B5U0");
+		handler2.sendMessageToClient("T;UBUUUBUUUUUUUUUUUUUUUUUUU;5");
+		handler1.sendMessageToClient("E;Q;B;24.5;0.0");
+		handler2.sendMessageToClient("E;Q;B;24.5;0.0");
+		EasyMock.replay(handler1, handler2);
+	
+		//act
+		game.start(TIMER, null);
+		game.onReply(handler1, "M;1");
+		game.onReply(handler2, "M;0");
+		game.onReply(handler1, "M;5");
+		game.onReply(handler2, "Q");
+		
+		//assert
+		EasyMock.verify(handler1, handler2);
+	}
+	
+	/**
+	 * Test a game in which a reply comes before it is the player's turn. 
+	 * Player 2 passes before it is its turn: the reply is only handled after player 1's move.
+	 */
+	
+	@Test
+	void eventDrivenGameTest() {
+		
+		//arrange
+		Game game = new Game(1, "1.0", 5, 0);
+		Handler handler1 = textHandler();
+		Handler handler2 = textHandler();
+		game.setClientHandlerPlayer1(handler1);
+		game.setClientHandlerPlayer2(handler2);
+		game.setColorPlayer1(ProtocolMessages.BLACK);
+		game.setColorPlayer2(ProtocolMessages.WHITE);
+		HashedWheelTimer timer = new HashedWheelTimer("test timer");
+		timer.start();
+		AtomicBoolean ended = new AtomicBoolean(false);
+		
+		// --> set expectations
+		handler2.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
+		handler1.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
+		handler1.sendMessageToClient("R;V;UUUUUUUBUUUUUUUUUUUUUUUUU");
+		handler2.sendMessageToClient("T;UUUUUUUBUUUUUUUUUUUUUUUUU;7");
+		handler2.sendMessageToClient("R;V;UUUUUUUBUUUUUUUUUUUUUUUUU");
+		handler1.sendMessageToClient("T;UUUUUUUBUUUUUUUUUUUUUUUUU;P");
+		handler1.sendMessageToClient("R;V;UUUUUUUBUUUUUUUUUUUUUUUUU");
+		handler1.sendMessageToClient("E;F;B;24.5;0.0");
+		handler2.sendMessageToClient("E;F;B;24.5;0.0");
+		EasyMock.replay(handler1, handler2);
+		
+		//act
+		game.start(timer, () -> ended.set(true));
+		game.onReply(handler2, "M;P");
+		assertFalse(ended.get());
+		game.onReply(handler1, "M;7");
+		game.onReply(handler1, "M;P");
+		timer.stop();
 		
 		//assert
 		EasyMock.verify(handler1, handler2);
+		assertTrue(game.hasEnded());
+		assertTrue(ended.get());
+	}
+	
+	/**
+	 * Test that the other player wins when a player of an event driven game disconnects, also
+	 * when it is not its turn.
+	 */
+	
+	@Test
+	void eventDrivenDisconnectTest() {
+		
+		//arrange
+		Game game = new Game(1, "1.0", 5, 0);
+		Handler handler1 = textHandler();
+		Handler handler2 = textHandler();
+		game.setClientHandlerPlayer1(handler1);
+		game.setClientHandlerPlayer2(handler2);
+		game.setColorPlayer1(ProtocolMessages.BLACK);
+		game.setColorPlayer2(ProtocolMessages.WHITE);
+		HashedWheelTimer timer = new HashedWheelTimer("test timer");
+		timer.start();
+		
+		// --> set expectations
+		handler2.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
+		handler1.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
+		handler1.sendMessageToClient("E;D;B;-0.5;0.0");
+		EasyMock.replay(handler1, handler2);
+		
+		//act
+		game.start(timer, null);
+		game.onDisconnect(handler2);
+		game.onReply(handler1, "M;7");
+		timer.stop();
+		
+		//assert
+		EasyMock.verify(handler1, handler2);
+		assertTrue(game.hasEnded());
+	}
+	
+	/**
+	 * Test that a player that keeps sending moves before its turn loses, as if it disconnected,
+	 * once it sent more than the game keeps.
+	 */
+	
+	@Test
+	void tooManyEarlyRepliesTest() {
+		
+		//arrange
+		Game game = new Game(1, "1.0", 5, 0);
+		Handler handler1 = textHandler();
+		Handler handler2 = textHandler();
+		game.setClientHandlerPlayer1(handler1);
+		game.setClientHandlerPlayer2(handler2);
+		game.setColorPlayer1(ProtocolMessages.BLACK);
+		game.setColorPlayer2(ProtocolMessages.WHITE);
+		HashedWheelTimer timer = new HashedWheelTimer("test timer");
+		timer.start();
+		
+		// --> set expectations
+		handler2.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
+		handler1.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
+		handler1.sendMessageToClient("E;D;B;-0.5;0.0");
+		EasyMock.replay(handler1, handler2);
+		
+		//act
+		game.start(timer, null);
+		for (int reply = 0; reply < Game.MAX_EARLY_REPLIES; reply++) {
+			game.onReply(handler2, "M;P");
+		}
+		assertFalse(game.hasEnded());
+		game.onReply(handler2, "M;P");
+		timer.stop();
+		
+		//assert
+		EasyMock.verify(handler1, handler2);
+		assertTrue(game.hasEnded());
 	}
 	
 	/**
@@ -315,16 +558,15 @@ public class GameTest {
 	 * 
 	 * End result: B has one captured area of size 1 (location 0) + 3 stones - 0.5 komi
 	 * W has one captured area of size 1 (11) + 4 stones
-	 * @throws SocketTimeoutException 
 	 */
 	
 	@Test
-	void koRuleTest() throws SocketTimeoutException {
+	void koRuleTest() {
 		
 		//arrange
-		Game game = new Game(1, "1.0", 5, 100);
-		Handler handler1 = EasyMock.createMock(Handler.class);
-		Handler handler2 = EasyMock.createMock(Handler.class);
+		Game game = new Game(1, "1.0", 5, 0);
+		Handler handler1 = textHandler();
+		Handler handler2 = textHandler();
 		game.setClientHandlerPlayer1(handler1);
 		game.setClientHandlerPlayer2(handler2);
 		game.setColorPlayer1(ProtocolMessages.BLACK);
@@ -333,31 +575,22 @@ public class GameTest {
 		// --> set expectations
 		handler2.sendMessageToClient("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W");
 		handler1.sendMessageToClient("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null");
-		EasyMock.expect(handler1.getReply()).andReturn("M;1");
 		handler1.sendMessageToClient("R;V;UBUUUUUUUUUUUUUUUUUUUUUUU");
 		handler2.sendMessageToClient("T;UBUUUUUUUUUUUUUUUUUUUUUUU;1");
-		EasyMock.expect(handler2.getReply()).andReturn("M;10");
 		handler2.sendMessageToClient("R;V;UBUUUUUUUUWUUUUUUUUUUUUUU");
 		handler1.sendMessageToClient("T;UBUUUUUUUUWUUUUUUUUUUUUUU;10");
-		EasyMock.expect(handler1.getReply()).andReturn("M;5");
 		handler1.sendMessageToClient("R;V;UBUUUBUUUUWUUUUUUUUUUUUUU");
 		handler2.sendMessageToClient("T;UBUUUBUUUUWUUUUUUUUUUUUUU;5");
-		EasyMock.expect(handler2.getReply()).andReturn("M;12");
 		handler2.sendMessageToClient("R;V;UBUUUBUUUUWUWUUUUUUUUUUUU");
 		handler1.sendMessageToClient("T;UBUUUBUUUUWUWUUUUUUUUUUUU;12");
-		EasyMock.expect(handler1.getReply()).andReturn("M;7");
 		handler1.sendMessageToClient("R;V;UBUUUBUBUUWUWUUUUUUUUUUUU");
 		handler2.sendMessageToClient("T;UBUUUBUBUUWUWUUUUUUUUUUUU;7");
-		EasyMock.expect(handler2.getReply()).andReturn("M;16");
 		handler2.sendMessageToClient("R;V;UBUUUBUBUUWUWUUUWUUUUUUUU");
 		handler1.sendMessageToClient("T;UBUUUBUBUUWUWUUUWUUUUUUUU;16");
-		EasyMock.expect(handler1.getReply()).andReturn("M;11");
 		handler1.sendMessageToClient("R;V;UBUUUBUBUUWBWUUUWUUUUUUUU");
 		handler2.sendMessageToClient("T;UBUUUBUBUUWBWUUUWUUUUUUUU;11");
-		EasyMock.expect(handler2.getReply()).andReturn("M;6");
 		handler2.sendMessageToClient("R;V;UBUUUBWBUUWUWUUUWUUUUUUUU");
 		handler1.sendMessageToClient("T;UBUUUBWBUUWUWUUUWUUUUUUUU;6");
-		EasyMock.expect(handler1.getReply()).andReturn("M;11");
 		handler1.sendMessageToClient("R;I;Your move was invalid. You lose the game.");
 		handler1.sendMessageToClient("E;C;W;3.5;5.0");
 		handler2.sendMessageToClient("E;C;W;3.5;5.0");
@@ -365,7 +598,16 @@ public class GameTest {
 		EasyMock.replay(handler1, handler2);
 	
 		//act
-		game.runGame();
+		game.start(TIMER, null);
+		game.onReply(handler1, "M;1");
+		game.onReply(handler2, "M;10");
+		game.onReply(handler1, "M;5");
+		game.onReply(handler2, "M;12");
+		game.onReply(handler1, "M;7");
+		game.onReply(handler2, "M;16");
+		game.onReply(handler1, "M;11");
+		game.onReply(handler2, "M;6");
+		game.onReply(handler1, "M;11");
 		
 		//assert
 		EasyMock.verify(handler1, handler2);
@@ -685,5 +927,20 @@ public class GameTest {
 	@AfterAll
 	static void restoreStream() {
 	    System.setOut(ORIGINALOUT);
+	    TIMER.stop();
+	}
+	
+	/**
+	 * Create a mock of a handler that gets every message as text, also the messages that a
+	 * game sends encoded, like a handler that does not write bytes (see Handler).
+	 */
+	private static Handler textHandler() {
+		Handler handler = EasyMock.createMock(Handler.class);
+		handler.sendMessageToClient(EasyMock.anyObject(EncodedMessage.class));
+		EasyMock.expectLastCall().andAnswer(() -> {
+			handler.sendMessageToClient(EasyMock.getCurrentArguments()[0].toString());
+			return null;
+		}).anyTimes();
+		return handler;
 	}
 }
@@ -0,0 +1,100 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import server.HashedWheelTimer;
+
+/**
+ * This class will test the timer of the server, with a wheel that turns around in 8 ticks of a
+ * millisecond, so that tasks are also due after more than one turn.
+ */
+
+public class HashedWheelTimerTest {
+
+	/**
+	 * Test that tasks run in the order of their delays, not before they are due, also when the
+	 * delay is longer than a turn of the wheel.
+	 */
+	@Test
+	void orderTest() throws InterruptedException {
+		HashedWheelTimer timer = startTimer();
+		List<Integer> order = new CopyOnWriteArrayList<Integer>();
+		CountDownLatch done = new CountDownLatch(3);
+		long start = System.nanoTime();
+
+		timer.schedule(() -> {
+			order.add(30);
+			done.countDown();
+		}, 30, TimeUnit.MILLISECONDS);
+		timer.schedule(() -> {
+			order.add(0);
+			done.countDown();
+		}, 0, TimeUnit.MILLISECONDS);
+		timer.schedule(() -> {
+			order.add(5);
+			done.countDown();
+		}, 5, TimeUnit.MILLISECONDS);
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		timer.stop();
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+		assertTrue(order.get(0) == 0 && order.get(1) == 5 && order.get(2) == 30);
+	}
+
+	/**
+	 * Test that a cancelled task does not run, while the other tasks in the wheel still do.
+	 */
+	@Test
+	void cancelTest() throws InterruptedException {
+		HashedWheelTimer timer = startTimer();
+		List<String> ran = new CopyOnWriteArrayList<String>();
+		CountDownLatch done = new CountDownLatch(1);
+
+		HashedWheelTimer.Timeout cancelled = timer.schedule(() -> ran.add("cancelled"),
+				10, TimeUnit.MILLISECONDS);
+		timer.schedule(() -> {
+			ran.add("kept");
+			done.countDown();
+		}, 20, TimeUnit.MILLISECONDS);
+		cancelled.cancel();
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		timer.stop();
+		assertTrue(cancelled.isCancelled());
+		assertTrue(ran.size() == 1 && ran.get(0).equals("kept"));
+	}
+
+	/**
+	 * Test that a task that fails does not stop the timer, and that a task can schedule the
+	 * next one.
+	 */
+	@Test
+	void failingAndChainedTasksTest() throws InterruptedException {
+		HashedWheelTimer timer = startTimer();
+		CountDownLatch done = new CountDownLatch(1);
+		timer.schedule(() -> {
+			throw new IllegalStateException("A task that fails.");
+		}, 0, TimeUnit.MILLISECONDS);
+		timer.schedule(() -> timer.schedule(done::countDown, 3, TimeUnit.MILLISECONDS),
+				2, TimeUnit.MILLISECONDS);
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		timer.stop();
+	}
+
+	/**
+	 * Start a timer with ticks of a millisecond and 8 buckets.
+	 */
+	private HashedWheelTimer startTimer() {
+		HashedWheelTimer timer = new HashedWheelTimer("test timer", 1, 8);
+		timer.start();
+		return timer;
+	}
+}
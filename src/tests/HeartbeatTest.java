@@ -0,0 +1,117 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import server.Server;
+
+/**
+ * This class will test the pings of the server to the clients that ask for them in their
+ * handshake, and the eviction of clients that stop answering them.
+ */
+
+public class HeartbeatTest {
+	private final static ByteArrayOutputStream OUTCONTENT = new ByteArrayOutputStream();
+	private final static PrintStream ORIGINALOUT = System.out;
+
+	@BeforeAll
+	static public void setUpStream() {
+		System.setOut(new PrintStream(OUTCONTENT));
+	}
+
+	@Test
+	void evictionWithEventLoopsTest() throws IOException {
+		evictionTest(Server.Mode.EVENT_LOOP, 8895);
+	}
+
+	@Test
+	void evictionWithThreadPerClientTest() throws IOException {
+		evictionTest(Server.Mode.THREAD_PER_CLIENT, 8896);
+	}
+
+	/**
+	 * Both players answer pings while they wait for the game. Then the first player stops
+	 * answering: it is evicted long before its minute to reply is over, and the other player
+	 * wins because of the disconnection.
+	 */
+	private void evictionTest(Server.Mode mode, int port) throws IOException {
+		startServer(mode, port);
+		InetAddress addr = InetAddress.getLocalHost();
+
+		TestClient black = new TestClient(addr, port, "H;1.0;Black;B;A");
+		assertTrue(black.readLine().endsWith(";A"));
+		TestClient white = new TestClient(addr, port, "H;1.0;White;B;A");
+		assertTrue(white.readLine().endsWith(";A"));
+
+		assertTrue(readAnsweringPings(black).equals("G;UUUUUUUUUUUUUUUUUUUUUUUUU;B"));
+		assertTrue(readAnsweringPings(white).equals("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W"));
+		assertTrue(readAnsweringPings(black).equals("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null"));
+
+		long start = System.currentTimeMillis();
+		assertTrue(readAnsweringPings(white).startsWith("E;D;W;"));
+		assertTrue(System.currentTimeMillis() - start < 5000);
+
+		black.close();
+		white.close();
+	}
+
+	/**
+	 * A client that does not ask for pings gets none, and is not evicted while it is silent.
+	 */
+	@Test
+	void noPingsWithoutAskingTest() throws IOException, InterruptedException {
+		int port = 8897;
+		startServer(Server.Mode.EVENT_LOOP, port);
+		InetAddress addr = InetAddress.getLocalHost();
+
+		TestClient black = new TestClient(addr, port, "H;1.0;Black;B");
+		assertTrue(!black.readLine().endsWith(";A"));
+		TestClient white = new TestClient(addr, port, "H;1.0;White;B");
+		assertTrue(!white.readLine().endsWith(";A"));
+		assertTrue(black.readLine().startsWith("G;"));
+		assertTrue(black.readLine().startsWith("T;"));
+
+		Thread.sleep(1000);
+		black.send("M;0");
+		assertTrue(black.readLine().startsWith("R;V;"));
+
+		black.close();
+		white.close();
+	}
+
+	/**
+	 * Start a server that pings after 50 milliseconds of silence and evicts after 300.
+	 */
+	private void startServer(Server.Mode mode, int port) throws IOException {
+		Server testServer = new Server(mode);
+		testServer.setBoardDimension(5);
+		testServer.setHeartbeat(50, 300);
+		testServer.createSocket(port);
+		new Thread(testServer).start();
+	}
+
+	/**
+	 * Read the next line that is not a ping, and answer the pings before it.
+	 */
+	private String readAnsweringPings(TestClient client) throws IOException {
+		String line = client.readLine();
+		while (line.equals("A")) {
+			client.send("L");
+			line = client.readLine();
+		}
+		return line;
+	}
+
+	@AfterAll
+	static void restoreStream() {
+		System.setOut(ORIGINALOUT);
+	}
+}
@@ -0,0 +1,72 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import protocol.ProtocolMessages;
+import ruleimplementations.IncrementalScorer;
+import ruleimplementations.ScoreCalculator;
+
+/**
+ * This class will test whether the scores that are kept up to date while stones are placed
+ * are the same as the scores calculated from the whole board.
+ */
+
+public class IncrementalScorerTest {
+
+	/**
+	 * Test the scores after a capture that leaves only black stones on the board.
+	 *
+	 * UBUUU	 UBUUU
+	 * BWUUU	 BUBUU
+	 * UBUUU --> UBUUU (B captures W in 6 by playing 7)
+	 * UUUUU	 UUUUU
+	 * UUUUU	 UUUUU
+	 */
+	@Test
+	void captureTest() {
+		IncrementalScorer scorer = new IncrementalScorer("UBUUUBWUUUUBUUUUUUUUUUUUU");
+		assertTrue(scorer.getScoreBlack() == 3.5);
+		assertTrue(scorer.getScoreWhite() == 1.0);
+
+		scorer.placeStone(7, ProtocolMessages.BLACK);
+		assertTrue(scorer.toString().equals("UBUUUBUBUUUBUUUUUUUUUUUUU"));
+		assertTrue(scorer.getNumberOfRemovedStones() == 1);
+		assertTrue(scorer.getScoreBlack() == 24.5);
+		assertTrue(scorer.getScoreWhite() == 0.0);
+	}
+
+	/**
+	 * Play random games and compare the scores after every move with the scores of the
+	 * whole board.
+	 */
+	@Test
+	void randomGamesTest() {
+		Random random = new Random(2);
+		ScoreCalculator scoreCalculator = new ScoreCalculator();
+
+		for (int game = 0; game < 20; game++) {
+			int boardDimension = 5 + game % 8;
+			IncrementalScorer scorer = new IncrementalScorer(boardDimension);
+			IncrementalScorer copy = new IncrementalScorer(boardDimension);
+
+			for (int move = 0; move < boardDimension * boardDimension * 2; move++) {
+				char color = (move % 2 == 0) ? ProtocolMessages.BLACK : ProtocolMessages.WHITE;
+				int location = random.nextInt(boardDimension * boardDimension);
+				if (scorer.get(location) != ProtocolMessages.UNOCCUPIED) {
+					continue;
+				}
+				scorer.placeStone(location, color);
+				scoreCalculator.calculateScores(scorer.toString());
+				assertTrue(scorer.getScoreBlack() == scoreCalculator.getScoreBlack());
+				assertTrue(scorer.getScoreWhite() == scoreCalculator.getScoreWhite());
+
+				copy.copyFrom(scorer);
+				assertTrue(copy.getScoreBlack() == scoreCalculator.getScoreBlack());
+			}
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import client.LocalServerHandler;
+import client.StupidNonRandomComputerPlayer;
+import server.Server;
+
+/**
+ * This class will test computer players that play on a server in the same JVM, without sockets.
+ */
+
+public class LocalTransportTest {
+	private final static ByteArrayOutputStream OUTCONTENT = new ByteArrayOutputStream();
+	private final static PrintStream ORIGINALOUT = System.out;
+
+	@BeforeAll
+	static public void setUpStream() {
+		System.setOut(new PrintStream(OUTCONTENT));
+	}
+
+	/**
+	 * Let eight computer players play one game each at the same time. Every player has to see
+	 * the end of its game.
+	 */
+	@Test
+	void manyPlayersTest() throws InterruptedException {
+		Server testServer = new Server();
+		testServer.setBoardDimension(5);
+		int ended = countEndedGames();
+
+		List<Thread> players = startPlayers(testServer, 8, 1);
+		for (Thread player : players) {
+			player.join(20000);
+			assertFalse(player.isAlive());
+		}
+		assertTrue(countEndedGames() - ended == 8);
+	}
+
+	/**
+	 * Let two computer players play three games against each other: they connect again for
+	 * every game.
+	 */
+	@Test
+	void repeatedGamesTest() throws InterruptedException {
+		Server testServer = new Server();
+		testServer.setBoardDimension(5);
+		int ended = countEndedGames();
+
+		List<Thread> players = startPlayers(testServer, 2, 3);
+		for (Thread player : players) {
+			player.join(20000);
+			assertFalse(player.isAlive());
+		}
+		assertTrue(countEndedGames() - ended == 6);
+	}
+
+	/**
+	 * Start computer players, each on its own thread.
+	 */
+	private List<Thread> startPlayers(Server server, int numberOfPlayers, int numberOfGames) {
+		List<Thread> players = new ArrayList<Thread>();
+		for (int player = 0; player < numberOfPlayers; player++) {
+			Thread thread = new Thread(() ->
+					new StupidNonRandomComputerPlayer().playLocally(
+							new LocalServerHandler(server), numberOfGames));
+			thread.start();
+			players.add(thread);
+		}
+		return players;
+	}
+
+	/**
+	 * @return the number of end of game messages that the players showed so far
+	 */
+	private int countEndedGames() {
+		String[] parts = OUTCONTENT.toString().split("Score black", -1);
+		return parts.length - 1;
+	}
+
+	@AfterAll
+	static void restoreStream() {
+		System.setOut(ORIGINALOUT);
+	}
+}
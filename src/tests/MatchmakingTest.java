@@ -0,0 +1,129 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import server.Server;
+
+/**
+ * This class will test pairing many clients that connect at the same time, and pairing after a
+ * waiting player disconnected.
+ */
+
+public class MatchmakingTest {
+	private final static ByteArrayOutputStream OUTCONTENT = new ByteArrayOutputStream();
+	private final static PrintStream ORIGINALOUT = System.out;
+
+	private static final int NUMBER_OF_CLIENTS = 200;
+	private static final int NUMBER_OF_THREADS = 16;
+
+	@BeforeAll
+	static public void setUpStream() {
+		System.setOut(new PrintStream(OUTCONTENT));
+	}
+
+	/**
+	 * Connect many clients at the same time to a server with a thread per client. Every client
+	 * has to end up in a game with exactly one other client, which has the other color. Waiting
+	 * a second per pair would take minutes.
+	 */
+	@Test
+	void concurrentPairingTest() throws Exception {
+		Server testServer = new Server(Server.Mode.THREAD_PER_CLIENT);
+		testServer.setBoardDimension(5);
+		InetAddress addr = InetAddress.getLocalHost();
+		int port = 8893;
+		testServer.createSocket(port);
+		new Thread(testServer).start();
+
+		long start = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+		List<Future<String>> results = new ArrayList<>();
+		List<TestClient> clients = new ArrayList<>();
+		for (int client = 0; client < NUMBER_OF_CLIENTS; client++) {
+			int number = client;
+			results.add(executor.submit(() -> {
+				TestClient testClient = new TestClient(addr, port, "H;1.0;Client" + number);
+				synchronized (clients) {
+					clients.add(testClient);
+				}
+				String handshake = testClient.readLine();
+				String gameNumber = handshake.split("added to game ")[1].split("\\.")[0];
+				String startMessage = testClient.readLine();
+				return gameNumber + ";" + startMessage.charAt(startMessage.length() - 1);
+			}));
+		}
+
+		Map<String, String> colorsPerGame = new HashMap<>();
+		for (Future<String> result : results) {
+			String[] gameAndColor = result.get().split(";");
+			String colors = colorsPerGame.getOrDefault(gameAndColor[0], "");
+			colorsPerGame.put(gameAndColor[0], colors + gameAndColor[1]);
+		}
+		executor.shutdown();
+
+		assertTrue(colorsPerGame.size() == NUMBER_OF_CLIENTS / 2);
+		for (String colors : colorsPerGame.values()) {
+			assertTrue(colors.equals("BW") || colors.equals("WB"));
+		}
+		assertTrue(System.currentTimeMillis() - start < 20000);
+
+		for (TestClient testClient : clients) {
+			testClient.close();
+		}
+	}
+
+	/**
+	 * A player that disconnects while waiting is not paired: the next client takes over its
+	 * game, and the client after that is the second player.
+	 */
+	@Test
+	void disconnectedPlayerTest() throws IOException, InterruptedException {
+		Server testServer = new Server(Server.Mode.THREAD_PER_CLIENT);
+		testServer.setBoardDimension(5);
+		InetAddress addr = InetAddress.getLocalHost();
+		int port = 8894;
+		testServer.createSocket(port);
+		new Thread(testServer).start();
+
+		TestClient leaving = new TestClient(addr, port, "H;1.0;Leaving;W");
+		assertTrue(leaving.readLine().contains("You are the first player"));
+		leaving.close();
+		// The server notices the disconnection when it reads the end of the stream.
+		long deadline = System.currentTimeMillis() + 5000;
+		while (testServer.getNumberOfClients() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(testServer.getNumberOfClients() == 0);
+
+		TestClient first = new TestClient(addr, port, "H;1.0;First;B");
+		assertTrue(first.readLine().contains("You are the first player"));
+		TestClient second = new TestClient(addr, port, "H;1.0;Second");
+		assertTrue(second.readLine().contains("You are the second player"));
+		assertTrue(first.readLine().equals("G;UUUUUUUUUUUUUUUUUUUUUUUUU;B"));
+		assertTrue(second.readLine().equals("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W"));
+
+		first.close();
+		second.close();
+	}
+
+	@AfterAll
+	static void restoreStream() {
+		System.setOut(ORIGINALOUT);
+	}
+}
@@ -0,0 +1,144 @@
+package tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import protocol.FrameCodec;
+import protocol.Message;
+import protocol.MessageDecoder;
+import protocol.MessageReader;
+
+/**
+ * This class will test reading the messages of both directions into a reusable Message, from
+ * lines and from frames, and from bytes that arrive in parts.
+ */
+
+public class MessageDecoderTest {
+
+	private static final String[] MESSAGES = {"G;" + emptyBoard(19) + ";W",
+		"T;" + emptyBoard(19) + ";null", "T;+B12U13;12", "T;+;P", "R;V;WBUUUUUUU", "R;V;+W360",
+		"R;I;Your move was invalid. You lose the game.", "M;360", "M;P", "M;0", "M;05", "M;-1",
+		"Q", "A", "L", "E;F;B;12.5;3.0", "H;1.1;Welcome Jörg to the GO server!;A;#",
+		"?;1.0;An error; with delimiters", "T;UUXU;3", "T;+B;3", "T;+B01;3", "R;V;", "R;X;WB",
+		"G;UUUU;", "T;UUUU", ""};
+
+	/**
+	 * Test that every message, read from a line or from a frame into one Message, gives back
+	 * the same text.
+	 */
+	@Test
+	void roundTripTest() throws IOException {
+		Message message = new Message();
+		for (String text : MESSAGES) {
+			ByteBuffer line = ByteBuffer.wrap((text + "\r\n").getBytes(StandardCharsets.UTF_8));
+			assertTrue(text, MessageDecoder.decodeLine(line, message));
+			assertTrue(text, message.toString().equals(text) && !line.hasRemaining());
+
+			byte[] frame = FrameCodec.encode(text);
+			ByteBuffer direct = ByteBuffer.allocateDirect(frame.length);
+			direct.put(frame).flip();
+			assertTrue(text, MessageDecoder.decodeFrame(direct, message));
+			assertTrue(text, message.toString().equals(text) && !direct.hasRemaining());
+		}
+	}
+
+	/**
+	 * Test that boards and moves are read into fields, and other messages kept as text.
+	 */
+	@Test
+	void fieldsTest() {
+		Message message = new Message();
+		MessageDecoder.decodeText("T;+B12U13;12", message);
+		assertTrue(!message.isRaw() && message.hasBoard() && message.isBoardDelta());
+		assertTrue(message.getNumberOfChanges() == 2 && message.getChangedLocation(1) == 13);
+		assertTrue(message.getChangedStatus(0) == 'B' && message.getMove() == 12);
+
+		MessageDecoder.decodeText("G;UBWU;B", message);
+		assertTrue(message.getBoardLength() == 4 && message.getBoard(2) == 'W');
+		assertTrue(!message.isBoardDelta() && message.getColor() == 'B');
+
+		MessageDecoder.decodeText("M;P", message);
+		assertTrue(!message.hasBoard() && message.getMove() == Message.PASS);
+
+		MessageDecoder.decodeText("E;Q;W;1.0;2.5", message);
+		assertTrue(message.getWinner() == 'W' && message.getScoreWhite().equals("2.5"));
+
+		MessageDecoder.decodeText("M;05", message);
+		assertTrue(message.isRaw() && message.getCommand() == 'M');
+	}
+
+	/**
+	 * Test that nothing is read from a line or frame that is not complete, and that it is read
+	 * once it is.
+	 */
+	@Test
+	void partialTest() throws IOException {
+		Message message = new Message();
+		byte[] frame = FrameCodec.encode("T;" + emptyBoard(9) + ";40");
+		for (int available = 0; available < frame.length; available++) {
+			ByteBuffer part = ByteBuffer.wrap(frame, 0, available);
+			assertFalse(MessageDecoder.decodeFrame(part, message));
+			assertTrue(part.position() == 0);
+		}
+		ByteBuffer line = ByteBuffer.wrap("M;12".getBytes(StandardCharsets.UTF_8));
+		assertFalse(MessageDecoder.decodeLine(line, message));
+		assertTrue(line.position() == 0);
+	}
+
+	/**
+	 * Test that frames that are not valid and lines that are too long are refused.
+	 */
+	@Test
+	void invalidTest() {
+		byte[][] frames = {{1, 'Z'}, {0}, {2, 'M', (byte) 0x80}, {3, 'M', 5, 5},
+			{4, 'T', 7, 0, 0}, {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 1}};
+		for (byte[] frame : frames) {
+			try {
+				MessageDecoder.decodeFrame(ByteBuffer.wrap(frame), new Message());
+				assertFalse(Arrays.toString(frame), true);
+			} catch (IOException e) {
+				// Expected
+			}
+		}
+		try {
+			byte[] line = new byte[FrameCodec.MAX_LENGTH + 1];
+			MessageDecoder.decodeLine(ByteBuffer.wrap(line), new Message());
+			assertFalse(true);
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Test reading a line followed by frames from a stream, as after a handshake.
+	 */
+	@Test
+	void readerTest() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		FrameCodec.writeLine("H;1.1;Welcome;#", bytes);
+		FrameCodec.writeFrame("G;" + emptyBoard(19) + ";B", bytes);
+		FrameCodec.writeFrame("E;F;B;12.5;3.0", bytes);
+
+		MessageReader reader = new MessageReader(new ByteArrayInputStream(bytes.toByteArray()));
+		Message message = new Message();
+		assertTrue(reader.read(message, false) && message.toString().equals("H;1.1;Welcome;#"));
+		assertTrue(reader.read(message, true) && message.getBoardLength() == 361);
+		assertTrue(reader.read(message, true) && message.toString().equals("E;F;B;12.5;3.0"));
+		assertFalse(reader.read(message, true));
+	}
+
+	private static String emptyBoard(int boardDimension) {
+		char[] board = new char[boardDimension * boardDimension];
+		Arrays.fill(board, 'U');
+		return new String(board);
+	}
+}
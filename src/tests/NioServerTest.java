@@ -0,0 +1,93 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import server.Server;
+
+/**
+ * This class will test the event loop server with many clients that play at the same time.
+ */
+
+public class NioServerTest {
+	private final static ByteArrayOutputStream OUTCONTENT = new ByteArrayOutputStream();
+	private final static PrintStream ORIGINALOUT = System.out;
+
+	private static final int NUMBER_OF_GAMES = 100;
+
+	@BeforeAll
+	static public void setUpStream() {
+		System.setOut(new PrintStream(OUTCONTENT));
+	}
+
+	/**
+	 * Connect the players of many games before any game ends, let every first player place a
+	 * stone and then both players pass. Every player has to get the end of game message, while
+	 * the server uses no thread per client.
+	 */
+	@Test
+	void manyGamesTest() throws IOException {
+		Server testServer = new Server(Server.Mode.EVENT_LOOP);
+		testServer.setBoardDimension(5);
+		testServer.setWaitTime(10);
+		InetAddress addr = InetAddress.getLocalHost();
+		int port = 8890;
+		testServer.createSocket(port);
+		new Thread(testServer).start();
+		int threadsBefore = Thread.activeCount();
+
+		// Connect all players, two at a time so that they end up in the same game.
+		TestClient[] players = new TestClient[2 * NUMBER_OF_GAMES];
+		for (int game = 0; game < NUMBER_OF_GAMES; game++) {
+			players[2 * game] = new TestClient(addr, port, "H;1.0;Black" + game + ";B");
+			assertTrue(players[2 * game].readLine().startsWith("H;1.0;"));
+			players[2 * game + 1] = new TestClient(addr, port, "H;1.0;White" + game + ";B");
+			assertTrue(players[2 * game + 1].readLine().startsWith("H;1.0;"));
+		}
+		assertTrue(Thread.activeCount() < threadsBefore + 10);
+
+		// Play all games at the same time, one message per player per round.
+		for (TestClient player : players) {
+			assertTrue(player.readLine().startsWith("G;UUUUUUUUUUUUUUUUUUUUUUUUU;"));
+		}
+		for (int game = 0; game < NUMBER_OF_GAMES; game++) {
+			TestClient black = players[2 * game];
+			assertTrue(black.readLine().equals("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null"));
+			black.send("M;" + (game % 25));
+		}
+		for (int game = 0; game < NUMBER_OF_GAMES; game++) {
+			TestClient black = players[2 * game];
+			TestClient white = players[2 * game + 1];
+			assertTrue(black.readLine().startsWith("R;V;"));
+			assertTrue(white.readLine().endsWith(";" + (game % 25)));
+			white.send("M;P");
+			assertTrue(white.readLine().startsWith("R;V;"));
+			assertTrue(black.readLine().endsWith(";P"));
+			black.send("M;P");
+		}
+		for (int game = 0; game < NUMBER_OF_GAMES; game++) {
+			TestClient black = players[2 * game];
+			TestClient white = players[2 * game + 1];
+			assertTrue(black.readLine().startsWith("R;V;"));
+			assertTrue(black.readLine().startsWith("E;F;B;"));
+			assertTrue(white.readLine().startsWith("E;F;B;"));
+		}
+
+		for (TestClient player : players) {
+			player.close();
+		}
+	}
+
+	@AfterAll
+	static void restoreStream() {
+		System.setOut(ORIGINALOUT);
+	}
+}
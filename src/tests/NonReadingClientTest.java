@@ -0,0 +1,111 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import server.Server;
+
+/**
+ * This class will test that a client that never reads its messages does not hold up the
+ * server: its opponent keeps playing, and the timer still runs the delayed results and the
+ * heartbeat of the other games.
+ */
+
+public class NonReadingClientTest {
+	private final static ByteArrayOutputStream OUTCONTENT = new ByteArrayOutputStream();
+	private final static PrintStream ORIGINALOUT = System.out;
+
+	/** The size of the board, so that the boards of a few moves fill the socket buffers. */
+	private final static int BOARD_DIMENSION = 50;
+
+	/** The number of moves of the client that reads, enough for about 500 kB of boards. */
+	private final static int NUMBER_OF_MOVES = 100;
+
+	@BeforeAll
+	static public void setUpStream() {
+		System.setOut(new PrintStream(OUTCONTENT));
+	}
+
+	@Test
+	void threadPerClientTest() throws IOException {
+		nonReadingClientTest(Server.Mode.THREAD_PER_CLIENT, 8902);
+	}
+
+	@Test
+	void eventLoopTest() throws IOException {
+		nonReadingClientTest(Server.Mode.EVENT_LOOP, 8903);
+	}
+
+	/**
+	 * The first player only passes and never reads, so the socket to it fills up. The second
+	 * player still gets every turn and result, which come from the timer because of the wait
+	 * time. Then the players of a second game play a move, and the one that stops answering
+	 * the pings is evicted by the heartbeat in time.
+	 */
+	private void nonReadingClientTest(Server.Mode mode, int port) throws IOException {
+		Server testServer = new Server(mode);
+		testServer.setBoardDimension(BOARD_DIMENSION);
+		testServer.setWaitTime(10);
+		testServer.setHeartbeat(50, 300);
+		testServer.setBufferSizes(256, 4096);
+		InetAddress addr = InetAddress.getLocalHost();
+		testServer.createSocket(port);
+		new Thread(testServer).start();
+
+		TestClient slow = new TestClient(addr, port, "H;1.0;Slow;B");
+		TestClient fast = new TestClient(addr, port, "H;1.0;Fast");
+		assertTrue(fast.readLine().startsWith("H;1.0;"));
+		assertTrue(fast.readLine().startsWith("G;"));
+		for (int move = 0; move < NUMBER_OF_MOVES; move++) {
+			slow.send("M;P");
+			assertTrue(fast.readLine().startsWith("T;"));
+			fast.send("M;" + move);
+			assertTrue(fast.readLine().startsWith("R;V;"));
+		}
+
+		TestClient black = new TestClient(addr, port, "H;1.0;Black;B;A");
+		assertTrue(readAnsweringPings(black).endsWith(";A"));
+		TestClient white = new TestClient(addr, port, "H;1.0;White;B;A");
+		assertTrue(readAnsweringPings(white).endsWith(";A"));
+		assertTrue(readAnsweringPings(black).startsWith("G;"));
+		assertTrue(readAnsweringPings(black).startsWith("T;"));
+		black.send("M;0");
+		assertTrue(readAnsweringPings(black).startsWith("R;V;"));
+
+		long start = System.currentTimeMillis();
+		assertTrue(readAnsweringPings(white).startsWith("G;"));
+		assertTrue(readAnsweringPings(white).startsWith("T;"));
+		assertTrue(readAnsweringPings(white).startsWith("E;D;W;"));
+		assertTrue(System.currentTimeMillis() - start < 5000);
+
+		slow.close();
+		fast.close();
+		black.close();
+		white.close();
+	}
+
+	/**
+	 * Read the next line that is not a ping, and answer the pings before it.
+	 */
+	private String readAnsweringPings(TestClient client) throws IOException {
+		String line = client.readLine();
+		while (line.equals("A")) {
+			client.send("L");
+			line = client.readLine();
+		}
+		return line;
+	}
+
+	@AfterAll
+	static void restoreStream() {
+		System.setOut(ORIGINALOUT);
+	}
+}
@@ -0,0 +1,92 @@
+package tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import protocol.ProtocolMessages;
+import ruleimplementations.Bitboard;
+import ruleimplementations.BoardUpdater;
+import ruleimplementations.PositionHistory;
+import ruleimplementations.ZobristHash;
+
+/**
+ * This class will test the Zobrist hashes and the history of boards used for the superko rule.
+ */
+
+public class PositionHistoryTest {
+	
+	/**
+	 * Test whether the hash that is updated while placing and capturing stones is the same as 
+	 * the hash calculated from scratch.
+	 * 
+	 * WBUUU	 UBUUU
+	 * UUUUU	 BUUUU
+	 * UUUUU --> UUUUU
+	 * UUUUU	 UUUUU
+	 * UUUUU	 UUUUU
+	 */
+	@Test
+	void incrementalHashTest() {
+		ZobristHash zobristHash = ZobristHash.forDimension(5);
+		Bitboard bitboard = new Bitboard("WBUUUUUUUUUUUUUUUUUUUUUUU");
+		assertTrue(bitboard.getHash() == zobristHash.hash("WBUUUUUUUUUUUUUUUUUUUUUUU"));
+		
+		bitboard.set(5, ProtocolMessages.BLACK);
+		new BoardUpdater().determineNewBoard(bitboard, ProtocolMessages.BLACK);
+		assertTrue(bitboard.toString().equals("UBUUUBUUUUUUUUUUUUUUUUUUU"));
+		assertTrue(bitboard.getHash() == zobristHash.hash("UBUUUBUUUUUUUUUUUUUUUUUUU"));
+	}
+	
+	/**
+	 * Test whether boards are found back in the history, also after the hash table has grown.
+	 */
+	@Test
+	void containsTest() {
+		PositionHistory history = new PositionHistory();
+		String emptyBoard = "UUUUUUUUUUUUUUUUUUUUUUUUU";
+		assertFalse(history.contains(emptyBoard));
+		
+		for (int location = 0; location < emptyBoard.length(); location++) {
+			for (char color : new char[] {ProtocolMessages.BLACK, ProtocolMessages.WHITE}) {
+				history.add(emptyBoard.substring(0, location) + color 
+						+ emptyBoard.substring(location + 1));
+			}
+		}
+		assertTrue(history.size() == 50);
+		assertFalse(history.contains(emptyBoard));
+		assertTrue(history.contains("UUUUUUUUUUUUWUUUUUUUUUUUU"));
+		assertTrue(history.contains(new Bitboard("UUUUUUUUUUUUUUUUUUUUUUUUB")));
+		assertFalse(history.contains(new Bitboard("BUUUUUUUUUUUUUUUUUUUUUUUB")));
+	}
+	
+	/**
+	 * Test whether the packed boards are given back the same, for a board size of which the 
+	 * boards do not fill a whole number of longs.
+	 */
+	@Test
+	void packedBoardsTest() {
+		Random random = new Random(6);
+		char[] colors = {ProtocolMessages.BLACK, ProtocolMessages.WHITE, 
+			ProtocolMessages.UNOCCUPIED};
+		PositionHistory history = new PositionHistory();
+		String[] boards = new String[100];
+		for (int index = 0; index < boards.length; index++) {
+			char[] board = new char[19 * 19];
+			for (int location = 0; location < board.length; location++) {
+				board[location] = colors[random.nextInt(colors.length)];
+			}
+			boards[index] = new String(board);
+			history.add(boards[index]);
+		}
+		
+		for (int index = 0; index < boards.length; index++) {
+			assertTrue(history.get(index).equals(boards[index]));
+			assertTrue(history.contains(boards[index]));
+			assertTrue(history.contains(new Bitboard(boards[index])));
+		}
+	}
+}
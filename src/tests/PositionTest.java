@@ -0,0 +1,139 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import protocol.ProtocolMessages;
+import ruleimplementations.PlayResult;
+import ruleimplementations.Position;
+import ruleimplementations.PositionHistory;
+import ruleimplementations.RuleEngine;
+import ruleimplementations.ZobristHash;
+
+/**
+ * This class will test playing moves on a position and taking them back.
+ */
+
+public class PositionTest {
+	
+	/**
+	 * Test taking back a capture and a suicide.
+	 * 
+	 * UBUUU	 UBUUU
+	 * BWUUU	 BUBUU
+	 * UBUUU --> UBUUU (B captures W in 6 by playing 7, W plays 6 (suicide))
+	 * UUUUU	 UUUUU
+	 * UUUUU	 UUUUU
+	 */
+	@Test
+	void undoCaptureAndSuicideTest() {
+		String board = "UBUUUBWUUUUBUUUUUUUUUUUUU";
+		Position position = new Position(board, ProtocolMessages.BLACK);
+		
+		assertTrue(position.play(7) == 1);
+		assertTrue(position.toString().equals("UBUUUBUBUUUBUUUUUUUUUUUUU"));
+		assertTrue(position.getColorToMove() == ProtocolMessages.WHITE);
+		assertTrue(position.play(6) == 1);
+		assertTrue(position.toString().equals("UBUUUBUBUUUBUUUUUUUUUUUUU"));
+		
+		position.undo();
+		assertTrue(position.toString().equals("UBUUUBUBUUUBUUUUUUUUUUUUU"));
+		assertTrue(position.getColorToMove() == ProtocolMessages.WHITE);
+		position.undo();
+		assertTrue(position.toString().equals(board));
+		assertTrue(position.getColorToMove() == ProtocolMessages.BLACK);
+		assertTrue(position.getNumberOfMoves() == 0);
+	}
+	
+	/**
+	 * Test taking back a move that captures more stones than the journal of moves has room
+	 * for: the stones were on the board before the first move.
+	 */
+	@Test
+	void undoLargeCaptureTest() {
+		String board = "U" + "W".repeat(99);
+		Position position = new Position(board, ProtocolMessages.BLACK, 1);
+		
+		assertTrue(position.play(0) == 99);
+		assertTrue(position.toString().equals("B" + "U".repeat(99)));
+		position.undo();
+		assertTrue(position.toString().equals(board));
+	}
+	
+	/**
+	 * Test the reasons for rejecting a move, and that a rejected move leaves the position as it
+	 * was.
+	 * 
+	 * UBWUU
+	 * BWUWU
+	 * UBWUU (B captures W in 6 by playing 7, W may not capture back by playing 6 right away)
+	 * UUUUU
+	 * UUUUU
+	 */
+	@Test
+	void tryPlayTest() {
+		String board = "UBWUUBWUWUUBWUUUUUUUUUUUU";
+		Position position = new Position(board, ProtocolMessages.BLACK);
+		PositionHistory prevBoards = new PositionHistory();
+		prevBoards.add(board);
+		
+		assertTrue(position.tryPlay("x", ProtocolMessages.BLACK, prevBoards).getRejection() 
+				== PlayResult.Rejection.NOT_A_LOCATION);
+		assertTrue(position.tryPlay("25", ProtocolMessages.BLACK, prevBoards).getRejection() 
+				== PlayResult.Rejection.OFF_BOARD);
+		assertTrue(position.tryPlay("1", ProtocolMessages.BLACK, prevBoards).getRejection() 
+				== PlayResult.Rejection.OCCUPIED);
+		
+		PlayResult result = position.tryPlay("7", ProtocolMessages.BLACK, prevBoards);
+		assertTrue(result.isValid());
+		assertTrue(result.getNumberOfCapturedStones() == 1);
+		assertTrue(result.getBoard().equals("UBWUUBUBWUUBWUUUUUUUUUUUU"));
+		prevBoards.add(result.getBoard());
+		
+		result = position.tryPlay("6", ProtocolMessages.WHITE, prevBoards);
+		assertTrue(result.getRejection() == PlayResult.Rejection.REPEATED_BOARD);
+		assertTrue(result.getBoard() == null);
+		assertTrue(position.toString().equals("UBWUUBUBWUUBWUUUUUUUUUUUU"));
+	}
+	
+	/**
+	 * Play random games forward, compare every board with the rule engine, then take all moves
+	 * back and compare every board and hash with the boards on the way forward.
+	 */
+	@Test
+	void randomGamesTest() {
+		Random random = new Random(5);
+		RuleEngine ruleEngine = new RuleEngine();
+		
+		for (int game = 0; game < 20; game++) {
+			int boardDimension = 3 + game % 9;
+			ZobristHash zobristHash = ZobristHash.forDimension(boardDimension);
+			String board = "U".repeat(boardDimension * boardDimension);
+			Position position = new Position(board, ProtocolMessages.BLACK);
+			
+			int numberOfMoves = boardDimension * boardDimension * 2;
+			String[] boards = new String[numberOfMoves + 1];
+			boards[0] = board;
+			for (int move = 0; move < numberOfMoves; move++) {
+				int location = random.nextInt(board.length());
+				if (board.charAt(location) == ProtocolMessages.UNOCCUPIED) {
+					board = ruleEngine.placeStone(board, location, position.getColorToMove());
+					position.play(location);
+				} else {
+					position.pass();
+				}
+				assertTrue(position.toString().equals(board));
+				boards[move + 1] = board;
+			}
+			
+			for (int move = numberOfMoves; move > 0; move--) {
+				position.undo();
+				assertTrue(position.toString().equals(boards[move - 1]));
+				assertTrue(position.getHash() == zobristHash.hash(boards[move - 1]));
+			}
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import protocol.ProtocolMessages;
+import ruleimplementations.Position;
+import ruleimplementations.PositionHistory;
+import ruleimplementations.RuleEngine;
+import ruleimplementations.Score;
+
+/**
+ * This class will test whether one rule engine can be used by several threads at the same time.
+ */
+
+public class RuleEngineTest {
+
+	private static final int NUMBER_OF_THREADS = 4;
+	private static final int NUMBER_OF_BOARDS = 200;
+
+	/**
+	 * Score and play on random boards of different sizes from several threads with one shared
+	 * engine, and compare the results with those calculated by one thread.
+	 */
+	@Test
+	void sharedEngineTest() throws Exception {
+		RuleEngine ruleEngine = new RuleEngine();
+		Random random = new Random(3);
+		String[] boards = new String[NUMBER_OF_BOARDS];
+		Score[] expectedScores = new Score[NUMBER_OF_BOARDS];
+		String[] expectedBoards = new String[NUMBER_OF_BOARDS];
+		for (int index = 0; index < NUMBER_OF_BOARDS; index++) {
+			boards[index] = randomBoard(random, 5 + index % 15);
+			expectedScores[index] = ruleEngine.calculateScores(boards[index]);
+			expectedBoards[index] = ruleEngine.placeStone(boards[index],
+					boards[index].indexOf(ProtocolMessages.UNOCCUPIED), ProtocolMessages.BLACK);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+		List<Future<Boolean>> results = new ArrayList<>();
+		for (int thread = 0; thread < NUMBER_OF_THREADS; thread++) {
+			results.add(executor.submit(() -> {
+				boolean same = true;
+				for (int round = 0; round < 20; round++) {
+					for (int index = 0; index < NUMBER_OF_BOARDS; index++) {
+						String board = boards[index];
+						Score score = ruleEngine.calculateScores(board);
+						same &= score.getScoreBlack() == expectedScores[index].getScoreBlack();
+						same &= score.getScoreWhite() == expectedScores[index].getScoreWhite();
+						String newBoard = ruleEngine.placeStone(board,
+								board.indexOf(ProtocolMessages.UNOCCUPIED), ProtocolMessages.BLACK);
+						same &= newBoard.equals(expectedBoards[index]);
+					}
+				}
+				return same;
+			}));
+		}
+		for (Future<Boolean> result : results) {
+			assertTrue(result.get());
+		}
+		executor.shutdown();
+	}
+
+	/**
+	 * Play random games on small boards, where boards are often repeated, and compare the valid
+	 * moves found in one pass, for a board and for a position, with checking every location on
+	 * its own.
+	 */
+	@Test
+	void legalMovesTest() {
+		RuleEngine ruleEngine = new RuleEngine();
+		Random random = new Random(4);
+		
+		for (int game = 0; game < 30; game++) {
+			int boardDimension = 2 + game % 6;
+			String board = "U".repeat(boardDimension * boardDimension);
+			PositionHistory prevBoards = new PositionHistory();
+			prevBoards.add(board);
+			
+			for (int move = 0; move < boardDimension * boardDimension * 3; move++) {
+				char color = (move % 2 == 0) ? ProtocolMessages.BLACK : ProtocolMessages.WHITE;
+				BitSet legalMoves = ruleEngine.legalMoves(board, color, prevBoards);
+				for (int location = 0; location < board.length(); location++) {
+					assertTrue(legalMoves.get(location) 
+							== ruleEngine.isValidMove(board, location, color, prevBoards));
+				}
+				Position position = new Position(board, color);
+				assertTrue(ruleEngine.legalMoves(position, prevBoards).equals(legalMoves));
+				assertTrue(position.toString().equals(board));
+				if (legalMoves.isEmpty()) {
+					continue;
+				}
+				
+				int location = legalMoves.nextSetBit(random.nextInt(board.length()));
+				if (location == -1) {
+					location = legalMoves.nextSetBit(0);
+				}
+				board = ruleEngine.placeStone(board, location, color);
+				prevBoards.add(board);
+			}
+		}
+	}
+	
+	/**
+	 * Create a board with about a third of black stones, a third of white stones and a third
+	 * unoccupied locations, with at least one unoccupied location.
+	 */
+	private String randomBoard(Random random, int boardDimension) {
+		char[] board = new char[boardDimension * boardDimension];
+		for (int location = 0; location < board.length; location++) {
+			int kind = random.nextInt(3);
+			if (kind == 0) {
+				board[location] = ProtocolMessages.BLACK;
+			} else if (kind == 1) {
+				board[location] = ProtocolMessages.WHITE;
+			} else {
+				board[location] = ProtocolMessages.UNOCCUPIED;
+			}
+		}
+		board[random.nextInt(board.length)] = ProtocolMessages.UNOCCUPIED;
+		return new String(board);
+	}
+}
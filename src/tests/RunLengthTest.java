@@ -0,0 +1,155 @@
+package tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import client.ClientTUI;
+import client.ServerHandler;
+import protocol.EncodedBoard;
+import protocol.EncodedMessage;
+import protocol.FrameCodec;
+import protocol.Message;
+import protocol.MessageDecoder;
+import protocol.RunLength;
+import server.Server;
+
+/**
+ * This class will test writing boards as runs and reading them back, choosing them for large
+ * boards only, and a game on a large board between ServerHandlers that asked for them.
+ */
+
+public class RunLengthTest {
+	private final static ByteArrayOutputStream OUTCONTENT = new ByteArrayOutputStream();
+	private final static PrintStream ORIGINALOUT = System.out;
+
+	@BeforeAll
+	static public void setUpStream() {
+		System.setOut(new PrintStream(OUTCONTENT));
+	}
+
+	/**
+	 * Test that a board is written as runs and read back, and that runs that are not written
+	 * the same way are refused.
+	 */
+	@Test
+	void runsTest() {
+		char[] board = emptyBoard(19).toCharArray();
+		board[40] = 'B';
+		board[360] = 'W';
+		String runs = RunLength.append(new String(board), new StringBuilder()).toString();
+		assertTrue(runs.equals("*U40BU319W"));
+		assertTrue(Arrays.equals(RunLength.read(runs), board));
+
+		String[] invalid = {"*", "*U1", "*UU", "*U01", "*X", "*U4B0", "U4", "*U999999999"};
+		for (String text : invalid) {
+			assertTrue(text, RunLength.read(text) == null);
+		}
+	}
+
+	/**
+	 * Test that a large, sparse board is sent as runs to a client that asked for them, in a
+	 * line and in a frame, and that both are read back as the same whole board.
+	 */
+	@Test
+	void largeBoardTest() throws IOException {
+		String board = emptyBoard(49);
+		EncodedMessage turn = EncodedMessage.turn(new EncodedBoard(board), false, "P");
+		assertTrue(turn.toString().equals("T;" + board + ";P"));
+		assertTrue(text(turn.bytes(false, true)).equals("T;*U2401;P\n"));
+
+		Message message = new Message();
+		ByteBuffer frame = turn.bytes(true, true);
+		assertTrue(frame.remaining() < 10);
+		assertTrue(MessageDecoder.decodeFrame(frame, message));
+		assertTrue(message.isBoardRunLength() && message.getBoardLength() == 2401);
+		assertTrue(message.toString().equals("T;*U2401;P"));
+
+		byte[] bytes = FrameCodec.encode("G;*U2400B;W");
+		assertTrue(MessageDecoder.decodeFrame(ByteBuffer.wrap(bytes), message));
+		assertTrue(message.toString().equals("G;*U2400B;W"));
+	}
+
+	/**
+	 * Test that small boards, and boards of which the runs are not shorter, stay whole.
+	 */
+	@Test
+	void wholeBoardTest() {
+		String small = emptyBoard(9);
+		EncodedMessage result = EncodedMessage.result(new EncodedBoard(small), false);
+		assertTrue(text(result.bytes(false, true)).equals("R;V;" + small + "\n"));
+
+		char[] checkered = emptyBoard(19).toCharArray();
+		for (int location = 0; location < checkered.length; location += 2) {
+			checkered[location] = 'B';
+		}
+		EncodedBoard full = new EncodedBoard(new String(checkered));
+		assertFalse(full.prefersRuns(false) || full.prefersRuns(true));
+	}
+
+	/**
+	 * Play the start of a game on a 49 by 49 board, in which one player asked for runs and the
+	 * other did not.
+	 */
+	@Test
+	void largeGameTest() throws IOException {
+		Server testServer = new Server(Server.Mode.EVENT_LOOP);
+		testServer.setBoardDimension(49);
+		InetAddress addr = InetAddress.getLocalHost();
+		testServer.createSocket(8901);
+		new Thread(testServer).start();
+
+		ServerHandler black = new ServerHandler(new ClientTUI());
+		black.createConnection(addr, 8901);
+		black.doHandshake("Black", 'B');
+		ServerHandler white = new ServerHandler(new ClientTUI());
+		white.setAskForRunLength(false);
+		white.setAskForFrames(false);
+		white.createConnection(addr, 8901);
+		white.doHandshake("White", 'B');
+		assertTrue(black.getRunLength() && !white.getRunLength());
+
+		String board = emptyBoard(49);
+		Message start = black.readMessageFromServer();
+		assertTrue(start.isBoardRunLength() && start.toString().equals("G;*U2401;B"));
+		assertTrue(white.readLineFromServer().equals("G;" + board + ";W"));
+		assertTrue(black.readLineFromServer().equals("T;+;null"));
+		black.sendToGame("M;0");
+		assertTrue(black.readLineFromServer().equals("R;V;+B0"));
+		assertTrue(white.readLineFromServer().equals("T;+B0;0"));
+		white.sendToGame("Q");
+		assertTrue(white.readLineFromServer().startsWith("E;Q;B;"));
+		assertTrue(black.readLineFromServer().startsWith("E;Q;B;"));
+
+		black.closeConnection();
+		white.closeConnection();
+	}
+
+	private String text(ByteBuffer bytes) {
+		byte[] copy = new byte[bytes.remaining()];
+		bytes.get(copy);
+		return new String(copy, StandardCharsets.UTF_8);
+	}
+
+	private static String emptyBoard(int boardDimension) {
+		char[] board = new char[boardDimension * boardDimension];
+		Arrays.fill(board, 'U');
+		return new String(board);
+	}
+
+	@AfterAll
+	static void restoreStream() {
+		System.setOut(ORIGINALOUT);
+	}
+}
@@ -0,0 +1,56 @@
+package tests;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * A client that sends and receives the lines of the protocol, without a user interface, for
+ * the tests that start a server.
+ */
+
+public class TestClient {
+	private Socket sock;
+	private BufferedReader in;
+	private BufferedWriter out;
+
+	/**
+	 * Connect to a server and send a handshake.
+	 * 
+	 * @param addr, the address of the server
+	 * @param port, the port of the server
+	 * @param handshake, the handshake message
+	 */
+	public TestClient(InetAddress addr, int port, String handshake) throws IOException {
+		sock = new Socket(addr, port);
+		sock.setSoTimeout(10000);
+		in = new BufferedReader(new InputStreamReader(sock.getInputStream()));
+		out = new BufferedWriter(new OutputStreamWriter(sock.getOutputStream()));
+		send(handshake);
+	}
+
+	public void send(String message) throws IOException {
+		out.write(message);
+		out.newLine();
+		out.flush();
+	}
+
+	public String readLine() throws IOException {
+		return in.readLine();
+	}
+
+	/**
+	 * @return whether a received line can be read without waiting
+	 */
+	public boolean ready() throws IOException {
+		return in.ready();
+	}
+
+	public void close() throws IOException {
+		sock.close();
+	}
+}
@@ -0,0 +1,97 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import server.Server;
+import server.VirtualThreads;
+
+/**
+ * This class will test the server mode with a virtual thread per client. Before Java 21 there
+ * are no virtual threads, and the server uses platform threads.
+ */
+
+public class VirtualThreadsTest {
+	private final static ByteArrayOutputStream OUTCONTENT = new ByteArrayOutputStream();
+	private final static PrintStream ORIGINALOUT = System.out;
+
+	private static final int NUMBER_OF_GAMES = 3;
+
+	@BeforeAll
+	static public void setUpStream() {
+		System.setOut(new PrintStream(OUTCONTENT));
+	}
+
+	/**
+	 * Test that the factory either creates virtual threads that run, or is not available.
+	 */
+	@Test
+	void factoryTest() throws InterruptedException {
+		ThreadFactory factory = VirtualThreads.factory("test ");
+		if (factory == null) {
+			assertTrue(!VirtualThreads.isVirtual(Thread.currentThread()));
+			return;
+		}
+
+		AtomicBoolean ran = new AtomicBoolean(false);
+		Thread thread = factory.newThread(() -> ran.set(true));
+		assertTrue(VirtualThreads.isVirtual(thread));
+		assertTrue(thread.getName().equals("test 1"));
+		thread.start();
+		thread.join();
+		assertTrue(ran.get());
+	}
+
+	/**
+	 * Play some games on a server in the VIRTUAL_THREADS mode: every first player places a
+	 * stone, after which both players pass.
+	 */
+	@Test
+	void serverTest() throws IOException {
+		Server testServer = new Server(Server.Mode.VIRTUAL_THREADS);
+		testServer.setBoardDimension(5);
+		InetAddress addr = InetAddress.getLocalHost();
+		int port = 8892;
+		testServer.createSocket(port);
+		new Thread(testServer).start();
+
+		for (int game = 0; game < NUMBER_OF_GAMES; game++) {
+			TestClient black = new TestClient(addr, port, "H;1.0;Black" + game + ";B");
+			assertTrue(black.readLine().startsWith("H;1.0;"));
+			TestClient white = new TestClient(addr, port, "H;1.0;White" + game + ";B");
+			assertTrue(white.readLine().startsWith("H;1.0;"));
+
+			assertTrue(black.readLine().equals("G;UUUUUUUUUUUUUUUUUUUUUUUUU;B"));
+			assertTrue(white.readLine().equals("G;UUUUUUUUUUUUUUUUUUUUUUUUU;W"));
+			assertTrue(black.readLine().equals("T;UUUUUUUUUUUUUUUUUUUUUUUUU;null"));
+			black.send("M;" + game);
+			assertTrue(black.readLine().startsWith("R;V;"));
+			assertTrue(white.readLine().endsWith(";" + game));
+			white.send("M;P");
+			assertTrue(white.readLine().startsWith("R;V;"));
+			assertTrue(black.readLine().endsWith(";P"));
+			black.send("M;P");
+			assertTrue(black.readLine().startsWith("R;V;"));
+			assertTrue(black.readLine().startsWith("E;F;B;"));
+			assertTrue(white.readLine().startsWith("E;F;B;"));
+
+			black.close();
+			white.close();
+		}
+	}
+
+	@AfterAll
+	static void restoreStream() {
+		System.setOut(ORIGINALOUT);
+	}
+}